@@ -0,0 +1,50 @@
+/** A small statement language. Telling a declaration or an assignment from
+ *  an expression statement needs more than one token of lookahead,
+ *  and the left-recursive expr rule has precedence predicates, so SLL and
+ *  LL prediction do measurably different work.
+ */
+grammar Expr;
+
+prog
+	:	stat* EOF
+	;
+
+stat
+	:	ID ID ('=' expr)? ';'
+	|	ID '=' expr ';'
+	|	expr ';'
+	|	'if' '(' expr ')' stat ('else' stat)?
+	|	'{' stat* '}'
+	;
+
+expr
+	:	expr '.' ID
+	|	ID '(' args? ')'
+	|	'-' expr
+	|	expr ('*' | '/') expr
+	|	expr ('+' | '-') expr
+	|	expr ('<' | '==') expr
+	|	'(' expr ')'
+	|	ID
+	|	INT
+	;
+
+args
+	:	expr (',' expr)*
+	;
+
+ID
+	:	[a-zA-Z_] [a-zA-Z_0-9]*
+	;
+
+INT
+	:	[0-9]+
+	;
+
+COMMENT
+	:	'/*' .*? '*/' -> channel(HIDDEN)
+	;
+
+WS
+	:	[ \t\r\n]+ -> skip
+	;
@@ -0,0 +1,20 @@
+/** Identifiers made of any Unicode letter, so that the lexer DFA has
+ *  states with hundreds of edges on ranges above U+007F.
+ */
+lexer grammar IdentLexer;
+
+ID
+	:	[\p{L}_] [\p{L}\p{Nd}_]*
+	;
+
+INT
+	:	[0-9]+
+	;
+
+PUNCT
+	:	[.,;:=+\-*/(){}<>]
+	;
+
+WS
+	:	[ \t\r\n]+ -> skip
+	;
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmarks;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.TokenStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The grammars bundled with the benchmarks, with their sample inputs.
+ * Benchmarks take the grammar as a {@code @Param} named {@code grammar},
+ * so each result is reported per grammar.
+ *
+ * <ul>
+ * <li>{@link #JSON}: little prediction work; the sample has many non-ASCII
+ * and supplementary characters in its strings.</li>
+ * <li>{@link #EXPR}: a left-recursive expression grammar whose decisions
+ * need several tokens of lookahead and full-context prediction; the
+ * sample is ASCII.</li>
+ * </ul>
+ */
+public enum BenchmarkGrammar {
+	JSON("sample.json") {
+		@Override
+		public Lexer createLexer(CharStream input) {
+			return new JSONLexer(input);
+		}
+
+		@Override
+		public Parser createParser(TokenStream tokens) {
+			return new JSONParser(tokens);
+		}
+
+		@Override
+		public ParserRuleContext parse(Parser parser) {
+			return ((JSONParser)parser).json();
+		}
+
+		@Override
+		public String input(int copies) {
+			// one array holding the sample document copies times
+			StringBuilder buf = new StringBuilder("[\n");
+			for (int i = 0; i < copies; i++) {
+				if ( i > 0 ) buf.append(",\n");
+				buf.append(sample);
+			}
+			return buf.append("]\n").toString();
+		}
+	},
+
+	EXPR("sample.expr") {
+		@Override
+		public Lexer createLexer(CharStream input) {
+			return new ExprLexer(input);
+		}
+
+		@Override
+		public Parser createParser(TokenStream tokens) {
+			return new ExprParser(tokens);
+		}
+
+		@Override
+		public ParserRuleContext parse(Parser parser) {
+			return ((ExprParser)parser).prog();
+		}
+	};
+
+	protected final String sample;
+
+	BenchmarkGrammar(String sampleName) {
+		this.sample = load(sampleName);
+	}
+
+	public abstract Lexer createLexer(CharStream input);
+
+	public abstract Parser createParser(TokenStream tokens);
+
+	/** Invoke the start rule of {@code parser}. */
+	public abstract ParserRuleContext parse(Parser parser);
+
+	/** Return a valid input made of {@code copies} copies of the sample. */
+	public String input(int copies) {
+		StringBuilder buf = new StringBuilder(sample.length() * copies);
+		for (int i = 0; i < copies; i++) {
+			buf.append(sample);
+		}
+		return buf.toString();
+	}
+
+	static String load(String name) {
+		try (InputStream in = BenchmarkGrammar.class.getResourceAsStream(name)) {
+			if ( in==null ) {
+				throw new IllegalStateException("Missing benchmark input "+name);
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[4096];
+			int n;
+			while ( (n = in.read(buf))>0 ) {
+				out.write(buf, 0, n);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Cannot read benchmark input "+name, ex);
+		}
+	}
+}
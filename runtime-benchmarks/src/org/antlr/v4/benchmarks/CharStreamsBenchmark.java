@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmarks;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding UTF-8 input into a {@link CharStream} with
+ * {@link CharStreams}. The {@code JSON} sample has non-ASCII and
+ * supplementary characters, the {@code EXPR} sample is ASCII.
+ * {@link CharStreams#fromPathMapped} decodes lazily, so that benchmark
+ * also reads every code point.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CharStreamsBenchmark {
+	@Param({"JSON", "EXPR"})
+	public BenchmarkGrammar grammar;
+
+	@Param({"200"})
+	public int copies;
+
+	private String text;
+	private byte[] bytes;
+	private Path file;
+
+	@Setup
+	public void setUp() throws IOException {
+		text = grammar.input(copies);
+		bytes = text.getBytes(StandardCharsets.UTF_8);
+		file = Files.createTempFile("antlr-benchmark", ".txt");
+		Files.write(file, bytes);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Benchmark
+	public CharStream fromString() {
+		return CharStreams.fromString(text);
+	}
+
+	@Benchmark
+	public CharStream fromStream() throws IOException {
+		return CharStreams.fromStream(new ByteArrayInputStream(bytes));
+	}
+
+	@Benchmark
+	public CharStream fromPath() throws IOException {
+		return CharStreams.fromPath(file);
+	}
+
+	@Benchmark
+	public int fromPathMapped() throws IOException {
+		CharStream input = CharStreams.fromPathMapped(file);
+		int sum = 0;
+		for (int c = input.LA(1); c!=IntStream.EOF; c = input.LA(1)) {
+			sum += c;
+			input.consume();
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmarks;
+
+import org.antlr.v4.benchmarks.direct.IdentLexer;
+import org.antlr.v4.benchmarks.direct.JSONLexer;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways of running the precomputed DFA of a lexer generated
+ * with {@code -direct-lexer}: with {@code dispatch=switch} the generated
+ * scanner picks the next state with a {@code switch} on the input, with
+ * {@code dispatch=edges} a plain {@link LexerATNSimulator} follows
+ * {@link org.antlr.v4.runtime.dfa.DFAState#edges} of the same DFA.
+ *
+ * <p>With {@code grammar=IDENT} the input is made of identifiers in many
+ * scripts, so the scanner mostly looks up code points above U+007F in its
+ * range tables rather than in its {@code switch}.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DirectLexerBenchmark {
+	@Param({"switch", "edges"})
+	public String dispatch;
+
+	@Param({"JSON", "IDENT"})
+	public String grammar;
+
+	@Param({"200"})
+	public int copies;
+
+	private CharStream input;
+	private Lexer lexer;
+
+	@Setup
+	public void setUp() {
+		if ( grammar.equals("IDENT") ) {
+			String sample = BenchmarkGrammar.load("sample.ident");
+			StringBuilder buf = new StringBuilder(sample.length() * copies);
+			for (int i = 0; i < copies; i++) {
+				buf.append(sample);
+			}
+			input = CharStreams.fromString(buf.toString());
+			lexer = new IdentLexer(input);
+		}
+		else {
+			input = CharStreams.fromString(BenchmarkGrammar.JSON.input(copies));
+			lexer = new JSONLexer(input);
+		}
+		lexer.removeErrorListeners();
+		if ( dispatch.equals("edges") ) {
+			LexerATNSimulator scanner = lexer.getInterpreter();
+			lexer.setInterpreter(new LexerATNSimulator(lexer, lexer.getATN(), scanner.decisionToDFA, new PredictionContextCache()));
+		}
+		lex();
+	}
+
+	@Benchmark
+	public int lex() {
+		input.seek(0);
+		lexer.setInputStream(input);
+		int count = 0;
+		while ( lexer.nextToken().getType()!=Token.EOF ) {
+			count++;
+		}
+		return count;
+	}
+}
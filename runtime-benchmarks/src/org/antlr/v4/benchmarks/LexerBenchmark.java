@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmarks;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link org.antlr.v4.runtime.atn.LexerATNSimulator#match} by
+ * pulling every token from a lexer. With {@code dfa=cold} the lexer DFA is
+ * cleared before each invocation, so the ATN simulation which builds it is
+ * measured as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+	@Param({"JSON", "EXPR"})
+	public BenchmarkGrammar grammar;
+
+	@Param({"warm", "cold"})
+	public String dfa;
+
+	@Param({"200"})
+	public int copies;
+
+	private CharStream input;
+	private Lexer lexer;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		input = CharStreams.fromString(grammar.input(copies));
+		lexer = grammar.createLexer(input);
+		lexer.removeErrorListeners();
+		// leave the DFA warm for dfa=warm
+		lex();
+	}
+
+	@Setup(Level.Invocation)
+	public void resetDFA() {
+		if ( dfa.equals("cold") ) {
+			lexer.getInterpreter().clearDFA();
+		}
+	}
+
+	@Benchmark
+	public int lex() {
+		input.seek(0);
+		lexer.setInputStream(input);
+		int count = 0;
+		while ( lexer.nextToken().getType()!=Token.EOF ) {
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmarks;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.IterativeParseTreeWalker;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures walking a parse tree with {@link ParseTreeWalker#DEFAULT} or an
+ * {@link IterativeParseTreeWalker}, using a listener which only counts
+ * the events.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseTreeWalkerBenchmark {
+	@Param({"JSON", "EXPR"})
+	public BenchmarkGrammar grammar;
+
+	@Param({"recursive", "iterative"})
+	public String walker;
+
+	@Param({"200"})
+	public int copies;
+
+	private ParseTree tree;
+	private ParseTreeWalker treeWalker;
+
+	@Setup
+	public void setUp() {
+		CommonTokenStream tokens = new CommonTokenStream(grammar.createLexer(CharStreams.fromString(grammar.input(copies))));
+		Parser parser = grammar.createParser(tokens);
+		tree = grammar.parse(parser);
+		treeWalker = walker.equals("iterative") ? new IterativeParseTreeWalker() : ParseTreeWalker.DEFAULT;
+	}
+
+	@Benchmark
+	public int walk() {
+		CountingListener listener = new CountingListener();
+		treeWalker.walk(listener, tree);
+		return listener.events;
+	}
+
+	private static final class CountingListener implements ParseTreeListener {
+		int events;
+
+		@Override
+		public void visitTerminal(TerminalNode node) {
+			events++;
+		}
+
+		@Override
+		public void visitErrorNode(ErrorNode node) {
+			events++;
+		}
+
+		@Override
+		public void enterEveryRule(ParserRuleContext ctx) {
+			events++;
+		}
+
+		@Override
+		public void exitEveryRule(ParserRuleContext ctx) {
+			events++;
+		}
+	}
+}
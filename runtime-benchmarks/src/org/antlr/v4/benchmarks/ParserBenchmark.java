@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmarks;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link org.antlr.v4.runtime.atn.ParserATNSimulator#adaptivePredict}
+ * by parsing a pre-lexed token stream without building a parse tree.
+ * {@code mode} selects {@link PredictionMode#SLL} or {@link PredictionMode#LL};
+ * with {@code dfa=cold} the parser DFA is cleared before each invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+	@Param({"JSON", "EXPR"})
+	public BenchmarkGrammar grammar;
+
+	@Param({"SLL", "LL"})
+	public PredictionMode mode;
+
+	@Param({"warm", "cold"})
+	public String dfa;
+
+	@Param({"200"})
+	public int copies;
+
+	private CommonTokenStream tokens;
+	private Parser parser;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		tokens = new CommonTokenStream(grammar.createLexer(CharStreams.fromString(grammar.input(copies))));
+		tokens.fill();
+		parser = grammar.createParser(tokens);
+		parser.removeErrorListeners();
+		parser.setBuildParseTree(false);
+		parser.getInterpreter().setPredictionMode(mode);
+		// leave the DFA warm for dfa=warm
+		parse();
+	}
+
+	@Setup(Level.Invocation)
+	public void resetDFA() {
+		if ( dfa.equals("cold") ) {
+			parser.getInterpreter().clearDFA();
+		}
+	}
+
+	@Benchmark
+	public ParserRuleContext parse() {
+		tokens.seek(0);
+		parser.setTokenStream(tokens);
+		return grammar.parse(parser);
+	}
+}
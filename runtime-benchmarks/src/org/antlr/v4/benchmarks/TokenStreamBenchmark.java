@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmarks;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CommonTokenStream#fill} with a warm lexer DFA, i.e., the
+ * cost of lexing plus creating and buffering the tokens.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenStreamBenchmark {
+	@Param({"JSON", "EXPR"})
+	public BenchmarkGrammar grammar;
+
+	@Param({"200"})
+	public int copies;
+
+	private CharStream input;
+	private Lexer lexer;
+
+	@Setup
+	public void setUp() {
+		input = CharStreams.fromString(grammar.input(copies));
+		lexer = grammar.createLexer(input);
+		lexer.removeErrorListeners();
+		fill();
+	}
+
+	@Benchmark
+	public CommonTokenStream fill() {
+		input.seek(0);
+		lexer.setInputStream(input);
+		CommonTokenStream tokens = new CommonTokenStream(lexer);
+		tokens.fill();
+		return tokens;
+	}
+}
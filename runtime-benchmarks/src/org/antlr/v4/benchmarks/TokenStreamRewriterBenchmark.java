@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.benchmarks;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.TokenStreamRewriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TokenStreamRewriter#getText()} over a whole token
+ * stream. One token in every {@code stride} is edited, cycling through
+ * replace, insert before, insert after and delete.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenStreamRewriterBenchmark {
+	@Param({"JSON", "EXPR"})
+	public BenchmarkGrammar grammar;
+
+	@Param({"3", "30", "300"})
+	public int stride;
+
+	@Param({"200"})
+	public int copies;
+
+	private TokenStreamRewriter rewriter;
+
+	@Setup
+	public void setUp() {
+		CommonTokenStream tokens = new CommonTokenStream(grammar.createLexer(CharStreams.fromString(grammar.input(copies))));
+		tokens.fill();
+		rewriter = new TokenStreamRewriter(tokens);
+		// leave out EOF
+		for (int i = 0; i < tokens.size() - 1; i += stride) {
+			switch ( (i / stride) % 4 ) {
+				case 0:
+					rewriter.replace(i, "<replaced>");
+					break;
+				case 1:
+					rewriter.insertBefore(i, "<before>");
+					break;
+				case 2:
+					rewriter.insertAfter(i, "<after>");
+					break;
+				default:
+					rewriter.delete(i);
+					break;
+			}
+		}
+	}
+
+	@Benchmark
+	public String getText() {
+		return rewriter.getText();
+	}
+}
@@ -8,6 +8,7 @@ package org.antlr.v4.test.runtime.java;
 
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.misc.Interval;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -226,4 +227,70 @@ public class TestCharStreams {
 		assertEquals("hello \uD83C\uDF0E", s.toString());
 		assertEquals(p.toString(), s.getSourceName());
 	}
+
+	@Test
+	public void fromSMPUTF8PathMappedHasExpectedSize() throws Exception {
+		Path p = folder.newFile().toPath();
+		Files.write(p, "hello \uD83C\uDF0E".getBytes(StandardCharsets.UTF_8));
+		CharStream s = CharStreams.fromPathMapped(p);
+		assertEquals(7, s.size());
+		assertEquals(0, s.index());
+		assertEquals("hello \uD83C\uDF0E", s.toString());
+		assertEquals(p.toString(), s.getSourceName());
+	}
+
+	@Test
+	public void fromUTF8PathMappedSeeksAcrossIndexCheckpoints() throws Exception {
+		Path p = folder.newFile().toPath();
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			text.append("\u00E9\u4E2D\uD83C\uDF0E");
+		}
+		Files.write(p, text.toString().getBytes(StandardCharsets.UTF_8));
+		CharStream s = CharStreams.fromPathMapped(p);
+		s.seek(250);
+		assertEquals(0x4E2D, s.LA(1));
+		assertEquals(0x1F30E, s.LA(2));
+		s.consume();
+		assertEquals(0x4E2D, s.LA(-1));
+		s.seek(4);
+		assertEquals(0x4E2D, s.LA(1));
+		assertEquals("\u4E2D\uD83C\uDF0E", s.getText(Interval.of(4, 5)));
+		assertEquals(300, s.size());
+	}
+
+	@Test
+	public void fromInvalidUTF8BytesPathMappedReplacesWithSubstChar() throws Exception {
+		Path p = folder.newFile().toPath();
+		byte[] toWrite = new byte[] { (byte)0xCA, (byte)0xFE, (byte)0xFE, (byte)0xED };
+		Files.write(p, toWrite);
+		CharStream s = CharStreams.fromPathMapped(p);
+		assertEquals(4, s.size());
+		assertEquals("\uFFFD\uFFFD\uFFFD\uFFFD", s.toString());
+	}
+
+	@Test
+	public void fromTruncatedUTF8SequencesPathMappedReplacesEachSequence() throws Exception {
+		Path p = folder.newFile().toPath();
+		byte[] toWrite = new byte[] {
+			(byte)0xE2, (byte)0x82, 'a',
+			(byte)0xF0, (byte)0x9F, (byte)0x8C, 'b',
+			(byte)0xE2
+		};
+		Files.write(p, toWrite);
+		CharStream s = CharStreams.fromPathMapped(p);
+		assertEquals(5, s.size());
+		assertEquals("\uFFFDa\uFFFDb\uFFFD", s.toString());
+		assertEquals(CharStreams.fromPath(p).toString(), s.toString());
+	}
+
+	@Test
+	public void fromPathMappedWithLatin1() throws Exception {
+		Path p = folder.newFile().toPath();
+		Files.write(p, "hello \u00CA\u00FE".getBytes(StandardCharsets.ISO_8859_1));
+		CharStream s = CharStreams.fromPathMapped(p, StandardCharsets.ISO_8859_1);
+		assertEquals(8, s.size());
+		assertEquals(0, s.index());
+		assertEquals("hello \u00CA\u00FE", s.toString());
+	}
 }
@@ -95,6 +95,29 @@ public final class CharStreams {
 		}
 	}
 
+	/**
+	 * Creates a {@link CharStream} which maps the UTF-8 encoded file at
+	 * {@code path} into memory instead of reading it onto the heap.
+	 *
+	 * @see MappedCharStream
+	 * @since 4.9
+	 */
+	public static CharStream fromPathMapped(Path path) throws IOException {
+		return fromPathMapped(path, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Creates a {@link CharStream} which maps the file at {@code path}
+	 * into memory instead of reading it onto the heap. The {@code charset}
+	 * must be UTF-8, ISO-8859-1 or US-ASCII.
+	 *
+	 * @see MappedCharStream
+	 * @since 4.9
+	 */
+	public static CharStream fromPathMapped(Path path, Charset charset) throws IOException {
+		return MappedCharStream.fromPath(path, charset);
+	}
+
 	/**
 	 * Creates a {@link CharStream} given a string containing a
 	 * path to a UTF-8 file on disk.
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.IntervalSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A view of the tokens {@code start..stop} of a fully lexed token list,
+ * followed by an EOF token with index {@code stop + 1}. Only tokens on
+ * {@code channel} are visible, unless {@code channel} is negative.
+ */
+final class ChunkTokenStream implements TokenStream {
+	private final TokenSource tokenSource;
+	private final List<Token> tokens;
+	private final int start;
+	private final int stop;
+	private final int channel;
+	private final Token eof;
+
+	/** Index of the LT(1) token. */
+	private int p;
+
+	ChunkTokenStream(TokenSource tokenSource, List<Token> tokens, int start, int stop, int channel) {
+		this.tokenSource = tokenSource;
+		this.tokens = tokens;
+		this.start = start;
+		this.stop = stop;
+		this.channel = channel;
+
+		Token next = tokens.get(stop + 1);
+		if ( next.getType()==Token.EOF ) {
+			this.eof = next;
+		}
+		else {
+			CommonToken eof = new CommonToken(next);
+			eof.setType(Token.EOF);
+			eof.setText("<EOF>");
+			eof.setChannel(Token.DEFAULT_CHANNEL);
+			eof.setStopIndex(next.getStartIndex() - 1);
+			this.eof = eof;
+		}
+
+		this.p = nextOnChannel(start);
+	}
+
+	/**
+	 * Split the fully lexed {@code tokens} after each sync token at nesting
+	 * depth 0, counting only tokens on {@code channel} unless it is negative.
+	 * Return the ranges of token indexes which hold at least one such token.
+	 */
+	static List<Interval> split(List<Token> tokens, int channel, IntervalSet syncTokens,
+								IntervalSet openTokens, IntervalSet closeTokens)
+	{
+		List<Interval> chunks = new ArrayList<Interval>();
+		int start = 0;
+		int depth = 0;
+		boolean hasTokens = false;
+		for (int i = 0; i < tokens.size(); i++) {
+			Token t = tokens.get(i);
+			if ( t.getType()==Token.EOF ) {
+				if ( hasTokens ) chunks.add(Interval.of(start, i - 1));
+				break;
+			}
+
+			if ( channel>=0 && t.getChannel()!=channel ) continue;
+			hasTokens = true;
+			if ( openTokens.contains(t.getType()) ) depth++;
+			else if ( closeTokens.contains(t.getType()) && depth>0 ) depth--;
+			else if ( depth==0 && syncTokens.contains(t.getType()) ) {
+				chunks.add(Interval.of(start, i));
+				start = i + 1;
+				hasTokens = false;
+			}
+		}
+
+		return chunks;
+	}
+
+	private boolean isOnChannel(int i) {
+		return i > stop || channel < 0 || tokens.get(i).getChannel() == channel;
+	}
+
+	private int nextOnChannel(int i) {
+		while (i <= stop && !isOnChannel(i)) i++;
+		return Math.min(i, stop + 1);
+	}
+
+	private int previousOnChannel(int i) {
+		while (i >= start && !isOnChannel(i)) i--;
+		return i;
+	}
+
+	@Override
+	public Token get(int i) {
+		if ( i < 0 || i > stop + 1 ) {
+			throw new IndexOutOfBoundsException("token index "+i+" out of range 0.."+(stop + 1));
+		}
+		return i > stop ? eof : tokens.get(i);
+	}
+
+	@Override
+	public Token LT(int k) {
+		if ( k==0 ) return null;
+		int i = p;
+		if ( k<0 ) {
+			for (int n = 0; n < -k; n++) {
+				i = previousOnChannel(i - 1);
+				if ( i<start ) return null;
+			}
+			return tokens.get(i);
+		}
+
+		for (int n = 1; n < k && i <= stop; n++) {
+			i = nextOnChannel(i + 1);
+		}
+		return get(i);
+	}
+
+	@Override
+	public int LA(int i) {
+		Token t = LT(i);
+		return t!=null ? t.getType() : Token.INVALID_TYPE;
+	}
+
+	@Override
+	public void consume() {
+		if ( p > stop ) {
+			throw new IllegalStateException("cannot consume EOF");
+		}
+		p = nextOnChannel(p + 1);
+	}
+
+	@Override
+	public int mark() {
+		return -1;
+	}
+
+	@Override
+	public void release(int marker) {
+	}
+
+	@Override
+	public int index() {
+		return p;
+	}
+
+	@Override
+	public void seek(int index) {
+		p = nextOnChannel(Math.max(start, Math.min(index, stop + 1)));
+	}
+
+	@Override
+	public int size() {
+		return stop + 2;
+	}
+
+	@Override
+	public TokenSource getTokenSource() {
+		return tokenSource;
+	}
+
+	@Override
+	public String getSourceName() {
+		return tokenSource.getSourceName();
+	}
+
+	@Override
+	public String getText() {
+		return getText(Interval.of(start, stop));
+	}
+
+	@Override
+	public String getText(Interval interval) {
+		int a = Math.max(interval.a, 0);
+		int b = Math.min(interval.b, stop);
+		StringBuilder buf = new StringBuilder();
+		for (int i = a; i <= b; i++) {
+			buf.append(tokens.get(i).getText());
+		}
+		return buf.toString();
+	}
+
+	@Override
+	public String getText(RuleContext ctx) {
+		return getText(ctx.getSourceInterval());
+	}
+
+	@Override
+	public String getText(Token start, Token stop) {
+		if ( start!=null && stop!=null ) {
+			return getText(Interval.of(start.getTokenIndex(), stop.getTokenIndex()));
+		}
+
+		return "";
+	}
+}
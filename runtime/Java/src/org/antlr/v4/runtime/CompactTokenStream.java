@@ -0,0 +1,591 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A buffered {@link TokenStream} which keeps the tokens in parallel
+ * {@code int} arrays instead of keeping the {@link Token} objects from the
+ * token source, using about 24 bytes per token. It filters on a channel
+ * like {@link CommonTokenStream} does and can be used by any parser in its
+ * place.
+ *
+ * <p>The token objects returned by {@link #get}, {@link #LT} and the other
+ * methods are read-only views created on demand. Asking twice for the same
+ * token may return two different but {@link Object#equals equal} views; a
+ * parse tree keeps the views of its terminals, and through them, this
+ * stream. Use {@link #getType(int)} and the similar methods to read tokens
+ * without creating views.</p>
+ *
+ * <p>Only the fields of {@link Token} are kept; other state of custom token
+ * classes is lost. The text of a token is kept only if it differs from its
+ * input text, e.g., if it was changed by {@link Lexer#setText}, so the
+ * input must stay available, as it does for {@link CommonTokenFactory#DEFAULT}
+ * tokens.</p>
+ *
+ * @since 4.9
+ */
+public class CompactTokenStream implements TokenStream {
+	/** Number of recently created views kept for reuse; a power of 2. */
+	private static final int VIEW_CACHE_SIZE = 64;
+
+	/**
+	 * The {@link TokenSource} from which tokens for this stream are fetched.
+	 */
+	protected TokenSource tokenSource;
+
+	/** The channel to use for filtering tokens. */
+	protected final int channel;
+
+	private int[] types;
+	private int[] channels;
+	private int[] starts;
+	private int[] stops;
+	private int[] lines;
+	private int[] charPositions;
+	private int size;
+
+	/** The explicit text of the tokens which have one. */
+	private final Map<Integer, String> texts = new HashMap<Integer, String>();
+
+	/** Token source and input of the tokens starting at the matching
+	 *  index in {@link #sourceStarts}; almost always a single entry.
+	 */
+	private final List<Pair<TokenSource, CharStream>> sources = new ArrayList<Pair<TokenSource, CharStream>>();
+	private int[] sourceStarts = new int[1];
+
+	private final TokenView[] views = new TokenView[VIEW_CACHE_SIZE];
+
+	/** The index of the current token, or -1 before the first token has
+	 *  been fetched.
+	 */
+	private int p = -1;
+
+	private boolean fetchedEOF;
+
+	public CompactTokenStream(TokenSource tokenSource) {
+		this(tokenSource, Token.DEFAULT_CHANNEL);
+	}
+
+	public CompactTokenStream(TokenSource tokenSource, int channel) {
+		if (tokenSource == null) {
+			throw new NullPointerException("tokenSource cannot be null");
+		}
+		this.tokenSource = tokenSource;
+		this.channel = channel;
+		allocate(128);
+	}
+
+	private void allocate(int capacity) {
+		types = new int[capacity];
+		channels = new int[capacity];
+		starts = new int[capacity];
+		stops = new int[capacity];
+		lines = new int[capacity];
+		charPositions = new int[capacity];
+	}
+
+	@Override
+	public TokenSource getTokenSource() {
+		return tokenSource;
+	}
+
+	/** Reset this token stream by setting its token source. */
+	public void setTokenSource(TokenSource tokenSource) {
+		this.tokenSource = tokenSource;
+		size = 0;
+		texts.clear();
+		sources.clear();
+		Arrays.fill(views, null);
+		p = -1;
+		fetchedEOF = false;
+	}
+
+	@Override
+	public int index() {
+		return p;
+	}
+
+	@Override
+	public int mark() {
+		return 0;
+	}
+
+	@Override
+	public void release(int marker) {
+		// no resources to release
+	}
+
+	@Override
+	public void seek(int index) {
+		lazyInit();
+		p = nextTokenOnChannel(index);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void consume() {
+		boolean skipEofCheck;
+		if (p >= 0) {
+			skipEofCheck = fetchedEOF ? p < size - 1 : p < size;
+		}
+		else {
+			// not yet initialized
+			skipEofCheck = false;
+		}
+
+		if (!skipEofCheck && LA(1) == EOF) {
+			throw new IllegalStateException("cannot consume EOF");
+		}
+
+		if (sync(p + 1)) {
+			p = nextTokenOnChannel(p + 1);
+		}
+	}
+
+	/** Make sure index {@code i} has a token.
+	 *
+	 * @return {@code true} if a token is located at index {@code i}, otherwise
+	 *    {@code false}.
+	 */
+	protected boolean sync(int i) {
+		assert i >= 0;
+		int n = i - size + 1; // how many more elements we need?
+		if ( n > 0 ) {
+			int fetched = fetch(n);
+			return fetched >= n;
+		}
+
+		return true;
+	}
+
+	/** Add {@code n} tokens to the buffer.
+	 *
+	 * @return The actual number of tokens added to the buffer.
+	 */
+	protected int fetch(int n) {
+		if (fetchedEOF) {
+			return 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			Token t = tokenSource.nextToken();
+			add(t);
+			if ( t.getType()==Token.EOF ) {
+				fetchedEOF = true;
+				return i + 1;
+			}
+		}
+
+		return n;
+	}
+
+	private void add(Token t) {
+		if (size == types.length) {
+			int capacity = size + (size >> 1);
+			types = Arrays.copyOf(types, capacity);
+			channels = Arrays.copyOf(channels, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			stops = Arrays.copyOf(stops, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+			charPositions = Arrays.copyOf(charPositions, capacity);
+		}
+
+		int i = size;
+		types[i] = t.getType();
+		channels[i] = t.getChannel();
+		starts[i] = t.getStartIndex();
+		stops[i] = t.getStopIndex();
+		lines[i] = t.getLine();
+		charPositions[i] = t.getCharPositionInLine();
+
+		Pair<TokenSource, CharStream> source;
+		String text;
+		if (t instanceof CommonToken) {
+			source = ((CommonToken)t).source;
+			text = ((CommonToken)t).text;
+		}
+		else {
+			source = new Pair<TokenSource, CharStream>(t.getTokenSource(), t.getInputStream());
+			text = t.getText();
+			if (text != null && source.b != null && text.equals(getInputText(source.b, starts[i], stops[i]))) {
+				text = null;
+			}
+		}
+
+		if (text != null) {
+			texts.put(i, text);
+		}
+
+		Pair<TokenSource, CharStream> last = sources.isEmpty() ? null : sources.get(sources.size() - 1);
+		if (last == null || last.a != source.a || last.b != source.b) {
+			if (sources.size() == sourceStarts.length) {
+				sourceStarts = Arrays.copyOf(sourceStarts, sourceStarts.length * 2);
+			}
+			sourceStarts[sources.size()] = i;
+			sources.add(source);
+		}
+
+		size++;
+	}
+
+	/** Get all tokens from the token source until EOF. */
+	public void fill() {
+		lazyInit();
+		final int blockSize = 1000;
+		while (true) {
+			int fetched = fetch(blockSize);
+			if (fetched < blockSize) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public Token get(int i) {
+		if ( i < 0 || i >= size ) {
+			throw new IndexOutOfBoundsException("token index "+i+" out of range 0.."+(size-1));
+		}
+
+		TokenView view = views[i & (VIEW_CACHE_SIZE - 1)];
+		if (view == null || view.index != i) {
+			view = new TokenView(this, i);
+			views[i & (VIEW_CACHE_SIZE - 1)] = view;
+		}
+		return view;
+	}
+
+	@Override
+	public Token LT(int k) {
+		int i = lookahead(k);
+		return i >= 0 ? get(i) : null;
+	}
+
+	@Override
+	public int LA(int k) {
+		int i = lookahead(k);
+		return i >= 0 ? types[i] : Token.INVALID_TYPE;
+	}
+
+	/** Return the index of the token {@link #LT LT(k)}, or -1 if there is
+	 *  none.
+	 */
+	private int lookahead(int k) {
+		lazyInit();
+		if ( k == 0 ) return -1;
+		if ( k < 0 ) {
+			if ( p + k < 0 ) return -1;
+
+			int i = p;
+			int n = 1;
+			// find -k good tokens looking backwards
+			while ( n <= -k && i > 0 ) {
+				// skip off-channel tokens
+				i = previousTokenOnChannel(i - 1);
+				n++;
+			}
+			return i;
+		}
+
+		int i = p;
+		int n = 1; // we know tokens[p] is a good one
+		// find k good tokens
+		while ( n < k ) {
+			// skip off-channel tokens, but make sure to not look past EOF
+			if (sync(i + 1)) {
+				i = nextTokenOnChannel(i + 1);
+			}
+			n++;
+		}
+		return i;
+	}
+
+	private void lazyInit() {
+		if (p == -1) {
+			sync(0);
+			p = nextTokenOnChannel(0);
+		}
+	}
+
+	/**
+	 * Given a starting index, return the index of the next token on channel.
+	 * Return {@code i} if token {@code i} is on channel. Return the index of
+	 * the EOF token if there are no tokens on channel between {@code i} and
+	 * EOF.
+	 */
+	private int nextTokenOnChannel(int i) {
+		sync(i);
+		if (i >= size) {
+			return size - 1;
+		}
+
+		while ( channels[i]!=channel ) {
+			if ( types[i]==Token.EOF ) {
+				return i;
+			}
+
+			i++;
+			sync(i);
+		}
+
+		return i;
+	}
+
+	/**
+	 * Given a starting index, return the index of the previous token on
+	 * channel. Return {@code i} if token {@code i} is on channel. Return -1
+	 * if there are no tokens on channel between {@code i} and 0.
+	 */
+	private int previousTokenOnChannel(int i) {
+		sync(i);
+		if (i >= size) {
+			// the EOF token is on every channel
+			return size - 1;
+		}
+
+		while (i >= 0) {
+			if (types[i] == Token.EOF || channels[i] == channel) {
+				return i;
+			}
+
+			i--;
+		}
+
+		return i;
+	}
+
+	/** Return the type of token {@code i} without creating a view. */
+	public int getType(int i) {
+		checkIndex(i);
+		return types[i];
+	}
+
+	/** Return the channel of token {@code i} without creating a view. */
+	public int getChannel(int i) {
+		checkIndex(i);
+		return channels[i];
+	}
+
+	/** Return the start index of token {@code i} without creating a view. */
+	public int getStartIndex(int i) {
+		checkIndex(i);
+		return starts[i];
+	}
+
+	/** Return the stop index of token {@code i} without creating a view. */
+	public int getStopIndex(int i) {
+		checkIndex(i);
+		return stops[i];
+	}
+
+	/** Return the line of token {@code i} without creating a view. */
+	public int getLine(int i) {
+		checkIndex(i);
+		return lines[i];
+	}
+
+	/** Return the position in the line of token {@code i} without creating
+	 *  a view.
+	 */
+	public int getCharPositionInLine(int i) {
+		checkIndex(i);
+		return charPositions[i];
+	}
+
+	/** Return the text of token {@code i} without creating a view. */
+	public String getText(int i) {
+		checkIndex(i);
+		String text = texts.get(i);
+		if (text != null) {
+			return text;
+		}
+
+		CharStream input = getSource(i).b;
+		if (input == null) return null;
+		return getInputText(input, starts[i], stops[i]);
+	}
+
+	private void checkIndex(int i) {
+		if ( i < 0 || i >= size ) {
+			throw new IndexOutOfBoundsException("token index "+i+" out of range 0.."+(size-1));
+		}
+	}
+
+	private Pair<TokenSource, CharStream> getSource(int i) {
+		int n = sources.size();
+		if (n == 1) {
+			return sources.get(0);
+		}
+
+		int k = Arrays.binarySearch(sourceStarts, 0, n, i);
+		return sources.get(k >= 0 ? k : -k - 2);
+	}
+
+	/** Same as {@link CommonToken#getText} for a token without explicit
+	 *  text.
+	 */
+	private static String getInputText(CharStream input, int start, int stop) {
+		int n = input.size();
+		if ( start<n && stop<n) {
+			return input.getText(Interval.of(start,stop));
+		}
+		else {
+			return "<EOF>";
+		}
+	}
+
+	@Override
+	public String getSourceName() {
+		return tokenSource.getSourceName();
+	}
+
+	/** Get the text of all tokens in this buffer. */
+	@Override
+	public String getText() {
+		return getText(Interval.of(0,size()-1));
+	}
+
+	@Override
+	public String getText(Interval interval) {
+		int start = interval.a;
+		int stop = interval.b;
+		if ( start<0 || stop<0 ) return "";
+		fill();
+		if ( stop>=size ) stop = size-1;
+
+		StringBuilder buf = new StringBuilder();
+		for (int i = start; i <= stop; i++) {
+			if ( types[i]==Token.EOF ) break;
+			buf.append(getText(i));
+		}
+		return buf.toString();
+	}
+
+	@Override
+	public String getText(RuleContext ctx) {
+		return getText(ctx.getSourceInterval());
+	}
+
+	@Override
+	public String getText(Token start, Token stop) {
+		if ( start!=null && stop!=null ) {
+			return getText(Interval.of(start.getTokenIndex(), stop.getTokenIndex()));
+		}
+
+		return "";
+	}
+
+	/** A read-only view of one token in a {@link CompactTokenStream}. */
+	private static final class TokenView implements Token {
+		private final CompactTokenStream stream;
+		private final int index;
+
+		TokenView(CompactTokenStream stream, int index) {
+			this.stream = stream;
+			this.index = index;
+		}
+
+		@Override
+		public String getText() {
+			return stream.getText(index);
+		}
+
+		@Override
+		public int getType() {
+			return stream.types[index];
+		}
+
+		@Override
+		public int getLine() {
+			return stream.lines[index];
+		}
+
+		@Override
+		public int getCharPositionInLine() {
+			return stream.charPositions[index];
+		}
+
+		@Override
+		public int getChannel() {
+			return stream.channels[index];
+		}
+
+		@Override
+		public int getTokenIndex() {
+			return index;
+		}
+
+		@Override
+		public int getStartIndex() {
+			return stream.starts[index];
+		}
+
+		@Override
+		public int getStopIndex() {
+			return stream.stops[index];
+		}
+
+		@Override
+		public TokenSource getTokenSource() {
+			return stream.getSource(index).a;
+		}
+
+		@Override
+		public CharStream getInputStream() {
+			return stream.getSource(index).b;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof TokenView)) {
+				return false;
+			}
+
+			TokenView other = (TokenView)obj;
+			return stream == other.stream && index == other.index;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(stream) * 31 + index;
+		}
+
+		/** Same format as {@link CommonToken#toString()}. */
+		@Override
+		public String toString() {
+			String channelStr = "";
+			if ( getChannel()>0 ) {
+				channelStr=",channel="+getChannel();
+			}
+			String txt = getText();
+			if ( txt!=null ) {
+				txt = txt.replace("\n","\\n");
+				txt = txt.replace("\r","\\r");
+				txt = txt.replace("\t","\\t");
+			}
+			else {
+				txt = "<no text>";
+			}
+			return "[@"+index+","+getStartIndex()+":"+getStopIndex()+"='"+txt+"',<"+getType()+">"+channelStr+","+getLine()+":"+getCharPositionInLine()+"]";
+		}
+	}
+}
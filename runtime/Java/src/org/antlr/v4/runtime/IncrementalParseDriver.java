@@ -0,0 +1,351 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.IntervalSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses a document again after an edit, re-lexing and re-parsing only the
+ * parts the edit can affect, for editors and language servers.
+ *
+ * <p>The tokens are kept in an {@link IncrementalTokenStream}, which lexes
+ * again only from the first token whose match looked at an edited
+ * character until the lexer is back in step with the previous tokens.</p>
+ *
+ * <p>Like {@link ParallelParseDriver}, the tokens are split after each sync
+ * token which is not nested inside a pair of nesting tokens, and each chunk
+ * is parsed by {@link #parseChunk} on its own, followed by an EOF token.
+ * A chunk therefore depends on nothing but its own tokens, and a chunk
+ * whose tokens were all reused is not parsed again: its previous tree is
+ * added to the new root. Chunks which had syntax errors are always parsed
+ * again, so the parser's error listeners see all syntax errors of the
+ * document after each call. Errors of the lexer are recorded, and the ones
+ * in reused parts of the document are reported again, shifted.</p>
+ *
+ * <p>Character offsets of edits are code point indexes, like the indexes of
+ * a {@link CodePointCharStream}. The lexer must meet the requirements of
+ * {@link IncrementalTokenStream}. A driver keeps one lexer and one parser
+ * and is not thread-safe.</p>
+ *
+ * <pre>
+ * IncrementalParseDriver&lt;MyParser&gt; driver = new IncrementalParseDriver&lt;MyParser&gt;(MyParser.SEMI) {
+ *     protected Lexer createLexer(CharStream input) { return new MyLexer(input); }
+ *     protected MyParser createParser(TokenStream input) { return new MyParser(input); }
+ *     protected ParserRuleContext parseChunk(MyParser parser) { return parser.statement(); }
+ * };
+ * IncrementalParseDriver.Result result = driver.parse(text);
+ * ...
+ * result = driver.reparse(result, offset, removedLength, insertedText);
+ * </pre>
+ *
+ * @since 4.9
+ */
+public abstract class IncrementalParseDriver<P extends Parser> {
+	protected final IntervalSet syncTokens;
+	protected final IntervalSet openTokens = new IntervalSet();
+	protected final IntervalSet closeTokens = new IntervalSet();
+
+	private Lexer lexer;
+	private ProxyErrorListener lexerListeners;
+	private P parser;
+
+	public IncrementalParseDriver(int... syncTokenTypes) {
+		this.syncTokens = new IntervalSet(syncTokenTypes);
+	}
+
+	/** Create a lexer for {@code input}. The lexer is reused for later
+	 *  inputs with {@link Lexer#setInputStream}.
+	 */
+	protected abstract Lexer createLexer(CharStream input);
+
+	/** Create a parser for {@code input}. The parser is reused for later
+	 *  chunks with {@link Parser#setInputStream}.
+	 */
+	protected abstract P createParser(TokenStream input);
+
+	/** Parse one chunk, e.g., by calling the rule for a single statement. */
+	protected abstract ParserRuleContext parseChunk(P parser);
+
+	/** Create the context which the chunk results are added to. */
+	protected ParserRuleContext createRootContext() {
+		return new ParserRuleContext();
+	}
+
+	/** Sync tokens between {@code open} and a matching {@code close} token
+	 *  do not split the input.
+	 */
+	public void addNestingTokens(int open, int close) {
+		openTokens.add(open);
+		closeTokens.add(close);
+	}
+
+	/** Lex and parse all of {@code text}. */
+	public Result parse(String text) {
+		CharStream input = CharStreams.fromString(text);
+		Lexer lexer = getLexer(input);
+		LexerErrorRecorder recorder = new LexerErrorRecorder();
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(recorder);
+		IncrementalTokenStream tokens = new IncrementalTokenStream(lexer);
+		try {
+			tokens.fill();
+		}
+		finally {
+			lexer.removeErrorListeners();
+			lexer.addErrorListener(lexerListeners);
+		}
+
+		Result result = new Result(text, input.size(), tokens);
+		result.relexedTokens = tokens.size();
+		for (LexerError error : recorder.errors) {
+			result.report(lexerListeners, lexer, error);
+		}
+
+		parseChunks(null, result, 0, tokens.size());
+		return result;
+	}
+
+	/**
+	 * Parse the text of {@code previous} after replacing
+	 * {@code removedLength} code points at {@code start} by
+	 * {@code insertedText}.
+	 *
+	 * <p>The tokens and trees of {@code previous} are moved into the new
+	 * result and may be changed, so {@code previous} cannot be used
+	 * afterwards.</p>
+	 */
+	public Result reparse(Result previous, int start, int removedLength, String insertedText) {
+		if ( previous.consumed ) {
+			throw new IllegalStateException("the result was already reparsed");
+		}
+		if ( start<0 || removedLength<0 || start + removedLength > previous.size ) {
+			throw new IndexOutOfBoundsException("edit "+start+".."+(start + removedLength)+" out of range 0.."+previous.size);
+		}
+
+		String old = previous.text;
+		int a = old.offsetByCodePoints(0, start);
+		int b = old.offsetByCodePoints(a, removedLength);
+		String text = old.substring(0, a) + insertedText + old.substring(b);
+		CharStream input = CharStreams.fromString(text);
+		int delta = input.size() - previous.size;
+		previous.consumed = true;
+
+		IncrementalTokenStream tokens = previous.tokens;
+		Lexer lexer = tokens.lexer;
+		LexerErrorRecorder recorder = new LexerErrorRecorder();
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(recorder);
+		try {
+			tokens.relex(input, start, removedLength, removedLength + delta);
+		}
+		finally {
+			lexer.removeErrorListeners();
+			lexer.addErrorListener(lexerListeners);
+		}
+
+		// report the lexer errors in input order, shifting the kept ones
+		Result result = new Result(text, input.size(), tokens);
+		result.relexedTokens = tokens.relexStop - tokens.relexStart;
+		int restart = tokens.lexStart.get(tokens.relexStart);
+		for (LexerError error : previous.lexerErrors) {
+			if ( error.index >= restart ) break;
+			result.report(lexerListeners, lexer, error);
+		}
+		for (LexerError error : recorder.errors) {
+			result.report(lexerListeners, lexer, error);
+		}
+		if ( tokens.resumeIndex>=0 ) {
+			for (LexerError error : previous.lexerErrors) {
+				if ( error.index < tokens.resumeIndex ) continue;
+				int column = error.charPositionInLine;
+				if ( error.line==tokens.shiftedLine ) column += tokens.columnDelta;
+				result.report(lexerListeners, lexer, new LexerError(error.index + delta, error.line + tokens.lineDelta,
+																	column, error.msg, error.e));
+			}
+		}
+
+		int tailStart = tokens.resumeIndex>=0 ? tokens.relexStop : tokens.size();
+		parseChunks(previous, result, tokens.relexStart, tailStart);
+		return result;
+	}
+
+	/** Parse the chunks of {@code result}, reusing the trees of chunks of
+	 *  {@code previous} made of the kept tokens {@code 0..keep-1} or
+	 *  {@code tailStart..}.
+	 */
+	private void parseChunks(Result previous, Result result, int keep, int tailStart) {
+		Map<Token, Chunk> oldChunks = new IdentityHashMap<Token, Chunk>();
+		if ( previous!=null ) {
+			for (Chunk chunk : previous.chunks) {
+				if ( !chunk.hasErrors ) oldChunks.put(chunk.first, chunk);
+			}
+		}
+
+		List<Token> tokens = result.tokens.getTokens();
+		ParserRuleContext root = createRootContext();
+		root.start = tokens.get(0);
+		root.stop = tokens.get(tokens.size() - 1);
+		int channel = result.tokens.channel;
+		for (Interval range : ChunkTokenStream.split(tokens, channel, syncTokens, openTokens, closeTokens)) {
+			Token first = tokens.get(range.a);
+			Token last = tokens.get(range.b);
+			boolean reused = range.b < keep || range.a >= tailStart;
+			Chunk chunk = reused ? oldChunks.get(first) : null;
+			if ( chunk==null || chunk.last!=last ) {
+				chunk = parse(result.tokens.getTokenSource(), tokens, range, channel);
+				result.reparsedChunks++;
+			}
+
+			result.chunks.add(chunk);
+			if ( chunk.tree!=null ) {
+				chunk.tree.parent = root;
+				root.addChild(chunk.tree);
+			}
+		}
+
+		result.tree = root;
+	}
+
+	private Lexer getLexer(CharStream input) {
+		if ( lexer==null ) {
+			lexer = createLexer(input);
+			lexerListeners = new ProxyErrorListener(new ArrayList<ANTLRErrorListener>(lexer.getErrorListeners()));
+		}
+		else {
+			lexer.setInputStream(input);
+		}
+
+		return lexer;
+	}
+
+	private Chunk parse(TokenSource tokenSource, List<Token> tokens, Interval range, int channel) {
+		ChunkTokenStream chunk = new ChunkTokenStream(tokenSource, tokens, range.a, range.b, channel);
+		if ( parser==null ) {
+			parser = createParser(chunk);
+		}
+		else {
+			parser.setInputStream(chunk);
+		}
+
+		ParserRuleContext tree = parseChunk(parser);
+		return new Chunk(tokens.get(range.a), tokens.get(range.b), tree, parser.getNumberOfSyntaxErrors() > 0);
+	}
+
+	/**
+	 * The tokens and tree of one version of a document, along with what
+	 * {@link #reparse} needs to know about how they were made.
+	 */
+	public static final class Result {
+		private final String text;
+		private final int size;
+
+		final IncrementalTokenStream tokens;
+		final List<LexerError> lexerErrors = new ArrayList<LexerError>();
+		final List<Chunk> chunks = new ArrayList<Chunk>();
+
+		ParserRuleContext tree;
+		int relexedTokens;
+		int reparsedChunks;
+		boolean consumed;
+
+		Result(String text, int size, IncrementalTokenStream tokens) {
+			this.text = text;
+			this.size = size;
+			this.tokens = tokens;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		/** Return all tokens, on all channels, ending with EOF. */
+		public List<Token> getTokens() {
+			return Collections.unmodifiableList(tokens.getTokens());
+		}
+
+		/** Return the root context; its children are the chunk trees. */
+		public ParserRuleContext getTree() {
+			return tree;
+		}
+
+		/** Return the number of tokens the lexer matched for this result. */
+		public int getRelexedTokenCount() {
+			return relexedTokens;
+		}
+
+		/** Return the number of chunks parsed for this result. */
+		public int getReparsedChunkCount() {
+			return reparsedChunks;
+		}
+
+		/** Return the number of chunk trees taken over from the previous
+		 *  result.
+		 */
+		public int getReusedChunkCount() {
+			return chunks.size() - reparsedChunks;
+		}
+
+		void report(ProxyErrorListener listeners, Lexer lexer, LexerError error) {
+			lexerErrors.add(error);
+			listeners.syntaxError(lexer, null, error.line, error.charPositionInLine, error.msg, error.e);
+		}
+	}
+
+	static final class Chunk {
+		final Token first;
+		final Token last;
+		final ParserRuleContext tree;
+		final boolean hasErrors;
+
+		Chunk(Token first, Token last, ParserRuleContext tree, boolean hasErrors) {
+			this.first = first;
+			this.last = last;
+			this.tree = tree;
+			this.hasErrors = hasErrors;
+		}
+	}
+
+	static final class LexerError {
+		/** The input index of the start of the token which failed. */
+		final int index;
+		final int line;
+		final int charPositionInLine;
+		final String msg;
+		final RecognitionException e;
+
+		LexerError(int index, int line, int charPositionInLine, String msg, RecognitionException e) {
+			this.index = index;
+			this.line = line;
+			this.charPositionInLine = charPositionInLine;
+			this.msg = msg;
+			this.e = e;
+		}
+	}
+
+	/** Holds back lexer errors until they can be reported in input
+	 *  order.
+	 */
+	private static final class LexerErrorRecorder extends BaseErrorListener {
+		final List<LexerError> errors = new ArrayList<LexerError>();
+
+		@Override
+		public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol,
+								int line, int charPositionInLine,
+								String msg, RecognitionException e)
+		{
+			int index = ((Lexer)recognizer)._tokenStartCharIndex;
+			errors.add(new LexerError(index, line, charPositionInLine, msg, e));
+		}
+	}
+}
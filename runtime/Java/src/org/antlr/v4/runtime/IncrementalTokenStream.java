@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.IntegerList;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link CommonTokenStream} which can lex its input again after an edit
+ * without lexing all of it.
+ *
+ * <p>Before each token, the stream records a checkpoint: the input index,
+ * line, column, mode and mode stack of the lexer. It also records the
+ * highest input index the lexer looked at for the token. After an edit,
+ * {@link #relex} restarts the lexer from the checkpoint of the first token
+ * whose match looked at an edited character. It stops as soon as, past the
+ * edit, the lexer is about to start a token at the shifted position of a
+ * previous token, with the same mode and mode stack. From there on, the
+ * previous tokens are kept, with their character indexes, token indexes,
+ * lines and columns shifted.</p>
+ *
+ * <p>The lexer must create {@link CommonToken}s, and its actions must not
+ * keep state other than the mode and the mode stack. Errors of the lexer
+ * are only reported for the tokens which are lexed again.</p>
+ *
+ * <pre>
+ * IncrementalTokenStream tokens = new IncrementalTokenStream(new MyLexer(CharStreams.fromString(text)));
+ * tokens.fill();
+ * ...
+ * tokens.relex(CharStreams.fromString(newText), offset, removedLength, insertedLength);
+ * </pre>
+ *
+ * @since 4.9
+ */
+public class IncrementalTokenStream extends CommonTokenStream {
+	/** The id of the state of a lexer in the default mode with an empty
+	 *  mode stack.
+	 */
+	private static final int DEFAULT_STATE = 0;
+
+	protected Lexer lexer;
+	private LookaheadTrackingStream input;
+
+	/** The input index at which the lexer started each token. */
+	final IntegerList lexStart = new IntegerList();
+	/** One past the highest input index the lexer looked at for each
+	 *  token.
+	 */
+	final IntegerList lexEnd = new IntegerList();
+	final IntegerList lexLine = new IntegerList();
+	final IntegerList lexColumn = new IntegerList();
+	/** The mode state the lexer started each token in, as an index into
+	 *  {@link #states}.
+	 */
+	final IntegerList lexState = new IntegerList();
+
+	private final List<int[]> states = new ArrayList<int[]>();
+	private final Map<IntegerList, Integer> stateIds = new HashMap<IntegerList, Integer>();
+
+	/** The tokens {@code relexStart..relexStop-1} were lexed by the last
+	 *  call to {@link #relex}.
+	 */
+	int relexStart;
+	int relexStop;
+	/** The input index, before the last edit, from which the previous
+	 *  tokens were kept; {@code -1} if the lexer ran to the end.
+	 */
+	int resumeIndex = -1;
+	int lineDelta;
+	int columnDelta;
+	/** The line, before the last edit, whose columns were shifted by
+	 *  {@link #columnDelta}.
+	 */
+	int shiftedLine;
+
+	public IncrementalTokenStream(Lexer lexer) {
+		this(lexer, Token.DEFAULT_CHANNEL);
+	}
+
+	public IncrementalTokenStream(Lexer lexer, int channel) {
+		super(lexer, channel);
+		attach(lexer);
+	}
+
+	/** The token source must be a {@link Lexer}. */
+	@Override
+	public void setTokenSource(TokenSource tokenSource) {
+		if ( !(tokenSource instanceof Lexer) ) {
+			throw new IllegalArgumentException("IncrementalTokenStream requires a Lexer");
+		}
+
+		super.setTokenSource(tokenSource);
+		lexStart.clear();
+		lexEnd.clear();
+		lexLine.clear();
+		lexColumn.clear();
+		lexState.clear();
+		attach((Lexer)tokenSource);
+	}
+
+	/** Let the lexer read through a stream which tracks its lookahead,
+	 *  keeping the lexer's position and state.
+	 */
+	private void attach(Lexer lexer) {
+		this.lexer = lexer;
+		this.input = new LookaheadTrackingStream(lexer.getInputStream());
+		lexer._input = input;
+		lexer._tokenFactorySourcePair = new Pair<TokenSource, CharStream>(lexer, input);
+		if ( states.isEmpty() ) {
+			intern(new int[] {Lexer.DEFAULT_MODE});
+		}
+	}
+
+	@Override
+	protected int fetch(int n) {
+		if ( fetchedEOF ) {
+			return 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			if ( lex(stateId()) ) {
+				return i + 1;
+			}
+		}
+
+		return n;
+	}
+
+	/** Lex one token and record its checkpoint; return whether it is EOF. */
+	private boolean lex(int state) {
+		int start = input.index();
+		int line = lexer.getLine();
+		int column = lexer.getCharPositionInLine();
+		input.lookahead = start;
+		Token t = lexer.nextToken();
+		if ( !(t instanceof CommonToken) ) {
+			throw new IllegalStateException("IncrementalTokenStream requires a lexer which creates CommonTokens");
+		}
+
+		((CommonToken)t).setTokenIndex(tokens.size());
+		tokens.add(t);
+		lexStart.add(start);
+		lexEnd.add(input.lookahead + 1);
+		lexLine.add(line);
+		lexColumn.add(column);
+		lexState.add(state);
+		if ( t.getType()==Token.EOF ) {
+			fetchedEOF = true;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Lex the input again after an edit and replace the tokens of this
+	 * stream. The stream is filled first, and is reset to the first token
+	 * afterwards.
+	 *
+	 * @param input the whole input after the edit
+	 * @param start the index of the first edited code point
+	 * @param removedLength the number of code points removed at {@code start}
+	 * @param insertedLength the number of code points inserted at
+	 * {@code start}
+	 * @return all tokens of the stream
+	 */
+	public List<Token> relex(CharStream input, int start, int removedLength, int insertedLength) {
+		fill();
+		int oldSize = this.input.size();
+		if ( start<0 || removedLength<0 || start + removedLength > oldSize ) {
+			throw new IndexOutOfBoundsException("edit "+start+".."+(start + removedLength)+" out of range 0.."+oldSize);
+		}
+		int delta = insertedLength - removedLength;
+		if ( input.size()!=oldSize + delta ) {
+			throw new IllegalArgumentException("the input has "+input.size()+" code points instead of "+(oldSize + delta));
+		}
+
+		// keep the tokens whose match did not look at the edit
+		int keep = 0;
+		while ( lexEnd.get(keep) <= start ) keep++;
+
+		List<Token> oldTokens = tokens;
+		IntegerList oldStart = new IntegerList(lexStart);
+		IntegerList oldEnd = new IntegerList(lexEnd);
+		IntegerList oldLine = new IntegerList(lexLine);
+		IntegerList oldColumn = new IntegerList(lexColumn);
+		IntegerList oldState = new IntegerList(lexState);
+		int n = oldTokens.size();
+		tokens = new ArrayList<Token>(oldTokens.subList(0, keep));
+		lexStart.removeRange(keep, n);
+		lexEnd.removeRange(keep, n);
+		lexLine.removeRange(keep, n);
+		lexColumn.removeRange(keep, n);
+		lexState.removeRange(keep, n);
+
+		lexer.setInputStream(input);
+		attach(lexer);
+		this.input.seek(oldStart.get(keep));
+		lexer.setLine(oldLine.get(keep));
+		lexer.setCharPositionInLine(oldColumn.get(keep));
+		lexer.setModeState(states.get(oldState.get(keep)));
+		for (Token t : tokens) {
+			((CommonToken)t).source = lexer._tokenFactorySourcePair;
+		}
+
+		// lex until the lexer is back in step with the previous tokens
+		relexStart = keep;
+		resumeIndex = -1;
+		fetchedEOF = false;
+		int editEnd = start + insertedLength;
+		int resume = -1;
+		while ( true ) {
+			int state = stateId();
+			int index = this.input.index();
+			if ( index>=editEnd ) {
+				int i = oldStart.binarySearch(keep, n, index - delta);
+				if ( i>=0 && oldState.get(i)==state ) {
+					resume = i;
+					break;
+				}
+			}
+
+			if ( lex(state) ) break;
+		}
+
+		relexStop = tokens.size();
+		if ( resume>=0 ) {
+			resumeIndex = oldStart.get(resume);
+			shiftedLine = oldLine.get(resume);
+			lineDelta = lexer.getLine() - shiftedLine;
+			columnDelta = lexer.getCharPositionInLine() - oldColumn.get(resume);
+			for (int i = resume; i < n; i++) {
+				CommonToken t = (CommonToken)oldTokens.get(i);
+				int line = oldLine.get(i);
+				int column = oldColumn.get(i);
+				if ( line==shiftedLine ) column += columnDelta;
+				if ( t.getLine()==shiftedLine ) {
+					t.setCharPositionInLine(t.getCharPositionInLine() + columnDelta);
+				}
+				t.setLine(t.getLine() + lineDelta);
+				t.setStartIndex(t.getStartIndex() + delta);
+				t.setStopIndex(t.getStopIndex() + delta);
+				t.setTokenIndex(tokens.size());
+				t.source = lexer._tokenFactorySourcePair;
+
+				tokens.add(t);
+				lexStart.add(oldStart.get(i) + delta);
+				lexEnd.add(oldEnd.get(i) + delta);
+				lexLine.add(line + lineDelta);
+				lexColumn.add(column);
+				lexState.add(oldState.get(i));
+			}
+			fetchedEOF = true;
+		}
+
+		p = -1;
+		return tokens;
+	}
+
+	/** Return the token indexes of the tokens lexed by the last call to
+	 *  {@link #relex}.
+	 */
+	public Interval getRelexedInterval() {
+		return Interval.of(relexStart, relexStop - 1);
+	}
+
+	/** Return the id of the lexer's current mode state. */
+	private int stateId() {
+		if ( lexer._mode==Lexer.DEFAULT_MODE && lexer._modeStack.isEmpty() ) {
+			return DEFAULT_STATE;
+		}
+
+		return intern(lexer.getModeState());
+	}
+
+	private int intern(int[] state) {
+		IntegerList key = new IntegerList(state.length);
+		key.addAll(state);
+		Integer id = stateIds.get(key);
+		if ( id==null ) {
+			id = states.size();
+			states.add(state);
+			stateIds.put(key, id);
+		}
+
+		return id;
+	}
+
+	/** Records the highest index the lexer looks at, in {@link #lookahead}. */
+	private static final class LookaheadTrackingStream implements CharStream {
+		final CharStream input;
+		int lookahead;
+
+		LookaheadTrackingStream(CharStream input) {
+			this.input = input;
+		}
+
+		@Override
+		public int LA(int i) {
+			if ( i>0 ) {
+				lookahead = Math.max(lookahead, Math.min(input.index() + i - 1, input.size()));
+			}
+			return input.LA(i);
+		}
+
+		@Override
+		public void consume() {
+			input.consume();
+		}
+
+		@Override
+		public int mark() {
+			return input.mark();
+		}
+
+		@Override
+		public void release(int marker) {
+			input.release(marker);
+		}
+
+		@Override
+		public int index() {
+			return input.index();
+		}
+
+		@Override
+		public void seek(int index) {
+			input.seek(index);
+		}
+
+		@Override
+		public int size() {
+			return input.size();
+		}
+
+		@Override
+		public String getSourceName() {
+			return input.getSourceName();
+		}
+
+		@Override
+		public String getText(Interval interval) {
+			return input.getText(interval);
+		}
+	}
+}
@@ -195,6 +195,37 @@ public abstract class Lexer extends Recognizer<Integer, LexerATNSimulator>
 		return _mode;
 	}
 
+	/**
+	 * Return the mode stack, bottom first, followed by the current mode.
+	 * Along with the input index, line and column, this is the state the
+	 * lexer carries from one token to the next, unless actions keep state
+	 * of their own.
+	 *
+	 * @since 4.9
+	 */
+	public int[] getModeState() {
+		int[] state = new int[_modeStack.size() + 1];
+		for (int i = 0; i < _modeStack.size(); i++) {
+			state[i] = _modeStack.get(i);
+		}
+		state[_modeStack.size()] = _mode;
+		return state;
+	}
+
+	/**
+	 * Restore the mode and the mode stack from a state returned by
+	 * {@link #getModeState}.
+	 *
+	 * @since 4.9
+	 */
+	public void setModeState(int[] state) {
+		_modeStack.clear();
+		for (int i = 0; i < state.length - 1; i++) {
+			_modeStack.push(state[i]);
+		}
+		_mode = state[state.length - 1];
+	}
+
 	@Override
 	public void setTokenFactory(TokenFactory<?> factory) {
 		this._factory = factory;
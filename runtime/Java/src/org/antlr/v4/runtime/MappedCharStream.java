@@ -0,0 +1,403 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link CharStream} which reads a file through a {@link java.nio.MappedByteBuffer}
+ * instead of decoding it onto the heap. The operating system pages the file
+ * in as the lexer reaches it, and {@link #getText} only copies the requested
+ * interval.
+ *
+ * <p>ISO-8859-1 and US-ASCII files map each byte to one code point, so
+ * {@link #seek} is constant time. UTF-8 files are decoded as they are read,
+ * from a sparse index from code point index to byte offset which is built
+ * in one pass over the file when the stream is created. It takes 3 bytes
+ * per 16 code points, and {@link #seek}, {@link #getText} and {@link #LA}
+ * with a negative argument decode at most {@code 7} code points to find a
+ * position.</p>
+ *
+ * <p>Like the streams returned by {@link CharStreams#fromPath},
+ * {@link #getText} and {@link #size} only read state which does not change
+ * after the stream is created, so they may be called from several threads.
+ * The other methods move the position of the stream and are not
+ * thread-safe.</p>
+ *
+ * <p>Each malformed UTF-8 sequence decodes to one U+FFFD, as with the JDK
+ * decoder used by {@link CharStreams#fromPath}; each byte above
+ * {@code 0x7F} in a US-ASCII file decodes to U+FFFD. Files must be smaller
+ * than 2GB.</p>
+ *
+ * <p>Use {@link CharStreams#fromPathMapped} to create instances. See
+ * {@link CharStreams} about mixing stream implementations in one
+ * process.</p>
+ *
+ * @since 4.9
+ */
+public abstract class MappedCharStream implements CharStream {
+	protected final ByteBuffer bytes;
+	protected final int byteLength;
+	protected final String name;
+
+	/** Index of the current code point. */
+	protected int position;
+
+	private MappedCharStream(ByteBuffer bytes, String name) {
+		this.bytes = bytes;
+		this.byteLength = bytes.limit();
+		this.name = name;
+	}
+
+	/**
+	 * Map the file at {@code path}, which holds text in {@code charset}.
+	 *
+	 * @throws IllegalArgumentException if {@code charset} is not UTF-8,
+	 * ISO-8859-1 or US-ASCII
+	 */
+	static MappedCharStream fromPath(Path path, Charset charset) throws IOException {
+		if ( !charset.equals(StandardCharsets.UTF_8) &&
+			 !charset.equals(StandardCharsets.ISO_8859_1) &&
+			 !charset.equals(StandardCharsets.US_ASCII) )
+		{
+			throw new IllegalArgumentException("Cannot map input with charset "+charset.name());
+		}
+
+		ByteBuffer bytes;
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if ( size>Integer.MAX_VALUE ) {
+				throw new IOException(String.format("inputSize %d larger than max %d", size, Integer.MAX_VALUE));
+			}
+			// the mapping stays valid after the channel is closed
+			bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+
+		if ( charset.equals(StandardCharsets.UTF_8) ) {
+			return new UTF8Stream(bytes, path.toString());
+		}
+		return new SingleByteStream(bytes, path.toString(), charset.equals(StandardCharsets.US_ASCII));
+	}
+
+	@Override
+	public final int index() {
+		return position;
+	}
+
+	/** mark/release do nothing; the whole file is mapped */
+	@Override
+	public final int mark() {
+		return -1;
+	}
+
+	@Override
+	public final void release(int marker) {
+	}
+
+	@Override
+	public final String getSourceName() {
+		if (name == null || name.isEmpty()) {
+			return UNKNOWN_SOURCE_NAME;
+		}
+
+		return name;
+	}
+
+	@Override
+	public final String toString() {
+		return getText(Interval.of(0, size() - 1));
+	}
+
+	/** ISO-8859-1 or US-ASCII input; byte {@code i} is code point {@code i}. */
+	private static final class SingleByteStream extends MappedCharStream {
+		private final boolean ascii;
+
+		private SingleByteStream(ByteBuffer bytes, String name, boolean ascii) {
+			super(bytes, name);
+			this.ascii = ascii;
+		}
+
+		@Override
+		public void consume() {
+			if (byteLength - position == 0) {
+				assert LA(1) == IntStream.EOF;
+				throw new IllegalStateException("cannot consume EOF");
+			}
+			position = position + 1;
+		}
+
+		@Override
+		public int LA(int i) {
+			int offset;
+			switch (Integer.signum(i)) {
+				case -1:
+					offset = position + i;
+					if (offset < 0) {
+						return IntStream.EOF;
+					}
+					return get(offset);
+				case 0:
+					// Undefined
+					return 0;
+				case 1:
+					offset = position + i - 1;
+					if (offset >= byteLength) {
+						return IntStream.EOF;
+					}
+					return get(offset);
+			}
+			throw new UnsupportedOperationException("Not reached");
+		}
+
+		private int get(int offset) {
+			int c = bytes.get(offset) & 0xFF;
+			return ascii && c > 0x7F ? 0xFFFD : c;
+		}
+
+		@Override
+		public int size() {
+			return byteLength;
+		}
+
+		@Override
+		public void seek(int index) {
+			position = index;
+		}
+
+		@Override
+		public String getText(Interval interval) {
+			int startIdx = Math.min(interval.a, byteLength);
+			int len = Math.min(interval.b - interval.a + 1, byteLength - startIdx);
+			StringBuilder buf = new StringBuilder(Math.max(len, 0));
+			for (int i = 0; i < len; i++) {
+				buf.append((char)get(startIdx + i));
+			}
+			return buf.toString();
+		}
+	}
+
+	/** UTF-8 input, decoded on demand. */
+	private static final class UTF8Stream extends MappedCharStream {
+		/** One index entry per {@code 1 << CHECKPOINT_SHIFT} code points. */
+		private static final int CHECKPOINT_SHIFT = 6;
+		private static final int CHECKPOINT_MASK = (1 << CHECKPOINT_SHIFT) - 1;
+
+		/** One step per {@code 1 << STEP_SHIFT} code points. */
+		private static final int STEP_SHIFT = 3;
+		private static final int STEP_MASK = (1 << STEP_SHIFT) - 1;
+
+		/** {@code checkpoints[k]} is the byte offset of code point
+		 *  {@code k << CHECKPOINT_SHIFT}.
+		 */
+		private final int[] checkpoints;
+
+		/** {@code steps[j]} is the byte offset of code point
+		 *  {@code j << STEP_SHIFT} minus that of the checkpoint before it,
+		 *  unsigned. The 56 code points between them take at most 224
+		 *  bytes, so the difference fits in a byte.
+		 */
+		private final byte[] steps;
+
+		/** Number of code points. */
+		private final int size;
+
+		/** Byte offset of the code point at {@link #position}. */
+		private int bytePosition;
+
+		private UTF8Stream(ByteBuffer bytes, String name) {
+			super(bytes, name);
+			// there are at most as many code points as bytes
+			int[] checkpoints = new int[(byteLength >> CHECKPOINT_SHIFT) + 1];
+			byte[] steps = new byte[(byteLength >> STEP_SHIFT) + 1];
+			int cp = 0;
+			int offset = 0;
+			while (true) {
+				if ((cp & STEP_MASK) == 0) {
+					if ((cp & CHECKPOINT_MASK) == 0) {
+						checkpoints[cp >> CHECKPOINT_SHIFT] = offset;
+					}
+					steps[cp >> STEP_SHIFT] = (byte)(offset - checkpoints[cp >> CHECKPOINT_SHIFT]);
+				}
+
+				if (offset >= byteLength) {
+					break;
+				}
+
+				offset += length(decode(offset));
+				cp++;
+			}
+
+			this.checkpoints = checkpoints;
+			this.steps = steps;
+			this.size = cp;
+		}
+
+		@Override
+		public void consume() {
+			if (bytePosition >= byteLength) {
+				assert LA(1) == IntStream.EOF;
+				throw new IllegalStateException("cannot consume EOF");
+			}
+
+			bytePosition += length(decode(bytePosition));
+			position = position + 1;
+		}
+
+		@Override
+		public int LA(int i) {
+			int offset;
+			switch (Integer.signum(i)) {
+				case -1:
+					if (position + i < 0) {
+						return IntStream.EOF;
+					}
+					offset = byteOffset(position + i);
+					break;
+				case 0:
+					// Undefined
+					return 0;
+				default:
+					if (i > STEP_MASK) {
+						offset = byteOffset(position + i - 1);
+						break;
+					}
+
+					offset = bytePosition;
+					for (int k = 1; k < i && offset < byteLength; k++) {
+						offset += length(decode(offset));
+					}
+					break;
+			}
+
+			if (offset >= byteLength) {
+				return IntStream.EOF;
+			}
+			return codePoint(decode(offset));
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public void seek(int index) {
+			bytePosition = byteOffset(index);
+			position = index;
+		}
+
+		/** Only reads the index and the mapped bytes, so it may be called
+		 *  from several threads.
+		 */
+		@Override
+		public String getText(Interval interval) {
+			if (interval.b < interval.a) {
+				return "";
+			}
+
+			int start = byteOffset(interval.a);
+			int stop = byteOffset(interval.b + 1);
+			StringBuilder buf = new StringBuilder(stop - start);
+			for (int offset = start; offset < stop; ) {
+				int decoded = decode(offset);
+				buf.appendCodePoint(codePoint(decoded));
+				offset += length(decoded);
+			}
+			return buf.toString();
+		}
+
+		/** Return the byte offset of code point {@code index}, or the length
+		 *  of the input if {@code index} is at or past the end.
+		 */
+		private int byteOffset(int index) {
+			if (index >= size) {
+				return byteLength;
+			}
+			if (index <= 0) {
+				return 0;
+			}
+
+			int offset = checkpoints[index >> CHECKPOINT_SHIFT] + (steps[index >> STEP_SHIFT] & 0xFF);
+			for (int cp = index & ~STEP_MASK; cp < index; cp++) {
+				offset += length(decode(offset));
+			}
+			return offset;
+		}
+
+		private static int codePoint(int decoded) {
+			return decoded & 0xFFFFFF;
+		}
+
+		private static int length(int decoded) {
+			return decoded >>> 24;
+		}
+
+		/** Decode the code point starting at {@code offset}. Return it in
+		 *  the low 24 bits and its length in bytes in the high 8 bits. Like
+		 *  the JDK decoder, a malformed sequence is the longest prefix of a
+		 *  valid sequence, or one byte, and decodes to U+FFFD.
+		 */
+		private int decode(int offset) {
+			int b0 = bytes.get(offset) & 0xFF;
+			if (b0 < 0x80) {
+				return (1 << 24) | b0;
+			}
+
+			if (b0 < 0xC2 || b0 > 0xF4) {
+				return (1 << 24) | 0xFFFD;
+			}
+
+			if (b0 < 0xE0) {
+				int b1 = continuation(offset + 1, 0x80, 0xBF);
+				if (b1 < 0) return (1 << 24) | 0xFFFD;
+				return (2 << 24) | ((b0 & 0x1F) << 6) | b1;
+			}
+
+			if (b0 < 0xF0) {
+				// exclude overlong forms; a surrogate is malformed as a whole
+				int b1 = continuation(offset + 1, b0 == 0xE0 ? 0xA0 : 0x80, 0xBF);
+				if (b1 < 0) return (1 << 24) | 0xFFFD;
+				int b2 = continuation(offset + 2, 0x80, 0xBF);
+				if (b2 < 0) return (2 << 24) | 0xFFFD;
+				int c = ((b0 & 0x0F) << 12) | (b1 << 6) | b2;
+				return (3 << 24) | (Character.isSurrogate((char)c) ? 0xFFFD : c);
+			}
+
+			// exclude overlong forms and code points above U+10FFFF
+			int b1 = continuation(offset + 1, b0 == 0xF0 ? 0x90 : 0x80, b0 == 0xF4 ? 0x8F : 0xBF);
+			if (b1 < 0) return (1 << 24) | 0xFFFD;
+			int b2 = continuation(offset + 2, 0x80, 0xBF);
+			if (b2 < 0) return (2 << 24) | 0xFFFD;
+			int b3 = continuation(offset + 3, 0x80, 0xBF);
+			if (b3 < 0) return (3 << 24) | 0xFFFD;
+			return (4 << 24) | ((b0 & 0x07) << 18) | (b1 << 12) | (b2 << 6) | b3;
+		}
+
+		/** Return the low six bits of the byte at {@code offset} if it is in
+		 *  {@code min..max}, otherwise -1.
+		 */
+		private int continuation(int offset, int min, int max) {
+			if (offset >= byteLength) {
+				return -1;
+			}
+
+			int b = bytes.get(offset) & 0xFF;
+			if (b < min || b > max) {
+				return -1;
+			}
+			return b & 0x3F;
+		}
+	}
+}
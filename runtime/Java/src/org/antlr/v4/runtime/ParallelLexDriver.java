@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.Pair;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Lexes a large, fully buffered {@link CharStream} on several threads.
+ * The input is cut into segments just after a newline, and each segment is
+ * lexed by its own lexer starting in {@link Lexer#DEFAULT_MODE} with an
+ * empty mode stack. The tokens are then merged into one list with global
+ * {@link Token#getTokenIndex token indexes} and {@link Token#getLine lines};
+ * segments start at the beginning of a line, so
+ * {@link Token#getCharPositionInLine} is already correct.
+ *
+ * <p>A segment does not always start at a token boundary in the default
+ * mode, e.g., when a block comment or string spans the newline. The
+ * merge therefore lets the lexer of the previous segment run on past its
+ * end until it reaches a position after a token where the next segment's
+ * lexer was also between tokens, in the default mode with an empty mode
+ * stack. Tokens up to that point come from the previous lexer; if no such
+ * point exists the next segment's tokens are discarded entirely. Lexer
+ * errors are reported to the lexer's original listeners, in input order,
+ * for the tokens which are kept.</p>
+ *
+ * <p>The input's {@link CharStream#getText} must be safe to call from
+ * several threads. It is for all streams created by {@link CharStreams},
+ * including the memory-mapped ones of {@link CharStreams#fromPathMapped},
+ * but not for an {@link UnbufferedCharStream}, which cannot be split anyway.
+ * Lexer actions may not keep state other than the mode and mode stack, and
+ * the tokens must implement {@link WritableToken}, as {@link CommonToken}
+ * does. The result can be parsed with
+ * {@code new CommonTokenStream(new ListTokenSource(tokens))}.</p>
+ *
+ * @since 4.9
+ */
+public abstract class ParallelLexDriver<L extends Lexer> {
+	/** Create a lexer for {@code input}. */
+	protected abstract L createLexer(CharStream input);
+
+	/**
+	 * Lex all of {@code input} in up to {@code segments} segments, running
+	 * them on {@code executor} (e.g., a {@link java.util.concurrent.ForkJoinPool}).
+	 * The returned list ends with the EOF token.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the
+	 * segments to be lexed
+	 */
+	public List<Token> tokenize(final CharStream input, ExecutorService executor, int segments)
+		throws InterruptedException
+	{
+		if ( segments < 1 ) {
+			throw new IllegalArgumentException("segments must be at least 1.");
+		}
+
+		List<Callable<Segment>> tasks = new ArrayList<Callable<Segment>>();
+		int size = input.size();
+		int start = 0;
+		for (int i = 1; i <= segments && start < size; i++) {
+			int end = i == segments ? size : findSplit(input, (int)((long)size * i / segments));
+			if ( end <= start ) continue;
+
+			final int segmentStart = start;
+			final int segmentEnd = end;
+			tasks.add(new Callable<Segment>() {
+				@Override
+				public Segment call() {
+					return lex(input, segmentStart, segmentEnd);
+				}
+			});
+			start = end;
+		}
+
+		if ( tasks.isEmpty() ) {
+			// empty input
+			tasks.add(new Callable<Segment>() {
+				@Override
+				public Segment call() {
+					return lex(input, 0, 0);
+				}
+			});
+		}
+
+		List<Segment> lexed = new ArrayList<Segment>(tasks.size());
+		try {
+			for (Future<Segment> future : executor.invokeAll(tasks)) {
+				lexed.add(future.get());
+			}
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if ( cause instanceof RuntimeException ) throw (RuntimeException)cause;
+			if ( cause instanceof Error ) throw (Error)cause;
+			throw new IllegalStateException(cause);
+		}
+
+		return merge(lexed);
+	}
+
+	/** Return the index just after the first newline at or after
+	 *  {@code index}, or the size of the input if there is none.
+	 */
+	private static int findSplit(CharStream input, int index) {
+		InputCursor cursor = new InputCursor(input, index);
+		while ( cursor.LA(1) != IntStream.EOF ) {
+			int c = cursor.LA(1);
+			cursor.consume();
+			if ( c == '\n' ) break;
+		}
+		return cursor.index();
+	}
+
+	private Segment lex(CharStream input, int start, int end) {
+		InputCursor cursor = new InputCursor(input, start);
+		L lexer = createLexer(cursor);
+		// tokens read their text from the input rather than the cursor
+		lexer._tokenFactorySourcePair = new Pair<TokenSource, CharStream>(lexer, input);
+		ErrorRecorder recorder = new ErrorRecorder(lexer.getErrorListeners());
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(recorder);
+
+		Segment segment = new Segment(lexer, recorder);
+		segment.boundaries.put(start, 0);
+		while ( true ) {
+			Token t = lexer.nextToken();
+			if ( t.getType() == Token.EOF || t.getStartIndex() >= end ) {
+				segment.pending = t;
+				break;
+			}
+
+			segment.tokens.add(t);
+			segment.lastBoundary = cursor.index();
+			if ( isBetweenModes(lexer) ) {
+				segment.boundaries.put(cursor.index(), segment.tokens.size());
+			}
+		}
+
+		// the lines before the last token, plus the newlines from it to the end
+		int from = start;
+		if ( !segment.tokens.isEmpty() ) {
+			Token last = segment.tokens.get(segment.tokens.size() - 1);
+			from = last.getStartIndex();
+			segment.newlines = last.getLine() - 1;
+		}
+		InputCursor rest = new InputCursor(input, from);
+		for (int i = from; i < end; i++) {
+			if ( rest.LA(1) == '\n' ) segment.newlines++;
+			rest.consume();
+		}
+
+		return segment;
+	}
+
+	private static boolean isBetweenModes(Lexer lexer) {
+		return lexer._mode == Lexer.DEFAULT_MODE && lexer._modeStack.isEmpty();
+	}
+
+	private static List<Token> merge(List<Segment> segments) {
+		int[] lineOffsets = new int[segments.size()];
+		for (int k = 1; k < segments.size(); k++) {
+			lineOffsets[k] = lineOffsets[k - 1] + segments.get(k - 1).newlines;
+		}
+
+		List<Token> tokens = new ArrayList<Token>();
+		Segment current = segments.get(0);
+		int lineOffset = 0;
+		int acceptedFrom = 0;
+		add(tokens, current.tokens, 0, lineOffset);
+		Token t = current.pending;
+		int next = 1;
+		while ( t.getType() != Token.EOF ) {
+			add(tokens, t, lineOffset);
+			int position = current.lexer.getInputStream().index();
+			while ( next < segments.size() && position > segments.get(next).lastBoundary ) {
+				next++;
+			}
+
+			if ( next < segments.size() && isBetweenModes(current.lexer) ) {
+				Segment candidate = segments.get(next);
+				Integer resume = candidate.boundaries.get(position);
+				if ( resume != null ) {
+					// both lexers agree from here on; switch to the next segment
+					current.recorder.replay(acceptedFrom, position, lineOffset);
+					current = candidate;
+					lineOffset = lineOffsets[next];
+					acceptedFrom = position;
+					add(tokens, current.tokens, resume, lineOffset);
+					t = current.pending;
+					next++;
+					continue;
+				}
+			}
+
+			t = current.lexer.nextToken();
+		}
+
+		add(tokens, t, lineOffset);
+		current.recorder.replay(acceptedFrom, Integer.MAX_VALUE, lineOffset);
+		return tokens;
+	}
+
+	private static void add(List<Token> tokens, List<Token> segmentTokens, int from, int lineOffset) {
+		for (int i = from; i < segmentTokens.size(); i++) {
+			add(tokens, segmentTokens.get(i), lineOffset);
+		}
+	}
+
+	private static void add(List<Token> tokens, Token t, int lineOffset) {
+		WritableToken token = (WritableToken)t;
+		token.setTokenIndex(tokens.size());
+		token.setLine(token.getLine() + lineOffset);
+		tokens.add(token);
+	}
+
+	private static final class Segment {
+		final Lexer lexer;
+		final ErrorRecorder recorder;
+		final List<Token> tokens = new ArrayList<Token>();
+
+		/** Maps a char index after a token, where the lexer was in the
+		 *  default mode with an empty mode stack, to the number of tokens
+		 *  before it.
+		 */
+		final Map<Integer, Integer> boundaries = new HashMap<Integer, Integer>();
+		int lastBoundary = -1;
+
+		/** The first token starting at or after the end of the segment. */
+		Token pending;
+
+		/** The number of newlines in the segment. */
+		int newlines;
+
+		Segment(Lexer lexer, ErrorRecorder recorder) {
+			this.lexer = lexer;
+			this.recorder = recorder;
+		}
+	}
+
+	/** Holds back the errors of one lexer until it is known which of its
+	 *  tokens are kept.
+	 */
+	private static final class ErrorRecorder extends BaseErrorListener {
+		private final ProxyErrorListener delegate;
+		private final List<SyntaxError> errors = new ArrayList<SyntaxError>();
+
+		ErrorRecorder(List<? extends ANTLRErrorListener> delegates) {
+			this.delegate = new ProxyErrorListener(new ArrayList<ANTLRErrorListener>(delegates));
+		}
+
+		@Override
+		public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol,
+								int line, int charPositionInLine,
+								String msg, RecognitionException e)
+		{
+			int index = ((Lexer)recognizer)._tokenStartCharIndex;
+			errors.add(new SyntaxError(index, recognizer, offendingSymbol, line, charPositionInLine, msg, e));
+		}
+
+		/** Report the errors at char indexes {@code from..to-1}. */
+		void replay(int from, int to, int lineOffset) {
+			for (SyntaxError error : errors) {
+				if ( error.index < from || error.index >= to ) continue;
+				delegate.syntaxError(error.recognizer, error.offendingSymbol,
+									 error.line + lineOffset, error.charPositionInLine,
+									 error.msg, error.e);
+			}
+		}
+	}
+
+	/** A lexer error, with the char index of the token it was reported for. */
+	private static final class SyntaxError {
+		final int index;
+		final Recognizer<?, ?> recognizer;
+		final Object offendingSymbol;
+		final int line;
+		final int charPositionInLine;
+		final String msg;
+		final RecognitionException e;
+
+		SyntaxError(int index, Recognizer<?, ?> recognizer, Object offendingSymbol,
+					int line, int charPositionInLine, String msg, RecognitionException e)
+		{
+			this.index = index;
+			this.recognizer = recognizer;
+			this.offendingSymbol = offendingSymbol;
+			this.line = line;
+			this.charPositionInLine = charPositionInLine;
+			this.msg = msg;
+			this.e = e;
+		}
+	}
+
+	/**
+	 * A cursor with its own position over a shared input. Code points are
+	 * fetched in blocks with {@link CharStream#getText}, which does not
+	 * change the position of the input.
+	 */
+	private static final class InputCursor implements CharStream {
+		private static final int BLOCK_SIZE = 4096;
+
+		private final CharStream input;
+		private final int size;
+		private int position;
+
+		private int[] block = new int[0];
+		private int blockStart;
+
+		InputCursor(CharStream input, int position) {
+			this.input = input;
+			this.size = input.size();
+			this.position = position;
+		}
+
+		@Override
+		public int LA(int i) {
+			int index;
+			if ( i > 0 ) index = position + i - 1;
+			else if ( i < 0 ) index = position + i;
+			else return 0; // undefined
+
+			if ( index < 0 || index >= size ) return IntStream.EOF;
+			if ( index < blockStart || index >= blockStart + block.length ) {
+				load(index);
+			}
+			return block[index - blockStart];
+		}
+
+		private void load(int index) {
+			// keep a little before index for LA(-i) and the lexer's seek back
+			int start = Math.max(0, index - 64);
+			int stop = Math.min(size, start + BLOCK_SIZE) - 1;
+			String text = input.getText(Interval.of(start, stop));
+			int[] codePoints = new int[stop - start + 1];
+			int n = 0;
+			for (int i = 0; i < text.length() && n < codePoints.length; ) {
+				int c = text.codePointAt(i);
+				codePoints[n++] = c;
+				i += Character.charCount(c);
+			}
+			block = codePoints;
+			blockStart = start;
+		}
+
+		@Override
+		public void consume() {
+			if ( position >= size ) {
+				throw new IllegalStateException("cannot consume EOF");
+			}
+			position++;
+		}
+
+		@Override
+		public int index() {
+			return position;
+		}
+
+		@Override
+		public void seek(int index) {
+			position = index;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public int mark() {
+			return -1;
+		}
+
+		@Override
+		public void release(int marker) {
+		}
+
+		@Override
+		public String getText(Interval interval) {
+			return input.getText(interval);
+		}
+
+		@Override
+		public String getSourceName() {
+			return input.getSourceName();
+		}
+	}
+}
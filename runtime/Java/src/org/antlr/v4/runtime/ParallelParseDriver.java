@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.IntervalSet;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Parses an input made of independent top-level constructs (statements,
+ * records) on several threads. The token stream is split after each sync
+ * token (e.g., {@code ';'}) which is not nested inside a pair of nesting
+ * tokens (e.g., {@code '{' '}'}), each chunk is parsed by
+ * {@link #parseChunk} on a parser from a pool, and the results are added,
+ * in input order, as children of the context returned by
+ * {@link #createRootContext}.
+ *
+ * <p>Chunk parsers read the tokens of the original stream, so token indexes
+ * and {@link ParserRuleContext#start}/{@link ParserRuleContext#stop} are the
+ * same as in a sequential parse. Each chunk ends with an EOF token at the
+ * position of the next chunk's first token. Errors reported while parsing
+ * a chunk are held back and passed to the error listeners the parser was
+ * created with, in input order, once every chunk is parsed. The parser of a
+ * chunk with errors is not reused until they are passed on, and its
+ * context, state and input position are set back to what they were when
+ * each error was reported, so listeners may inspect the parser as usual.
+ * {@link #getNumberOfSyntaxErrors} returns the total for all chunks.</p>
+ *
+ * <p>Generated parsers of one grammar share their DFA cache, so all chunks
+ * warm up the same {@code decisionToDFA}. A {@link ParserInterpreter}
+ * creates its own cache unless it is given one.</p>
+ *
+ * <pre>
+ * ParallelParseDriver&lt;MyParser&gt; driver = new ParallelParseDriver&lt;MyParser&gt;(MyParser.SEMI) {
+ *     protected MyParser createParser(TokenStream input) { return new MyParser(input); }
+ *     protected ParserRuleContext parseChunk(MyParser parser) { return parser.statement(); }
+ * };
+ * driver.addNestingTokens(MyParser.LBRACE, MyParser.RBRACE);
+ * ParserRuleContext tree = driver.parse(tokens, executor);
+ * </pre>
+ *
+ * @since 4.9
+ */
+public abstract class ParallelParseDriver<P extends Parser> {
+	protected final IntervalSet syncTokens;
+	protected final IntervalSet openTokens = new IntervalSet();
+	protected final IntervalSet closeTokens = new IntervalSet();
+
+	private final Queue<PooledParser<P>> parsers = new ConcurrentLinkedQueue<PooledParser<P>>();
+
+	private volatile int syntaxErrors;
+
+	public ParallelParseDriver(int... syncTokenTypes) {
+		this.syncTokens = new IntervalSet(syncTokenTypes);
+	}
+
+	/** Create a parser for {@code input}. Parsers are reused for later
+	 *  chunks with {@link Parser#setInputStream}.
+	 */
+	protected abstract P createParser(TokenStream input);
+
+	/** Parse one chunk, e.g., by calling the rule for a single statement. */
+	protected abstract ParserRuleContext parseChunk(P parser);
+
+	/** Create the context which the chunk results are added to. */
+	protected ParserRuleContext createRootContext() {
+		return new ParserRuleContext();
+	}
+
+	/** Return the number of syntax errors reported by the chunk parsers
+	 *  during the last call to {@link #parse}.
+	 */
+	public int getNumberOfSyntaxErrors() {
+		return syntaxErrors;
+	}
+
+	/** Sync tokens between {@code open} and a matching {@code close} token
+	 *  do not split the input.
+	 */
+	public void addNestingTokens(int open, int close) {
+		openTokens.add(open);
+		closeTokens.add(close);
+	}
+
+	/**
+	 * Parse all tokens of {@code tokens}, running the chunks on
+	 * {@code executor}.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the
+	 * chunks to be parsed
+	 */
+	public ParserRuleContext parse(BufferedTokenStream tokens, ExecutorService executor)
+		throws InterruptedException
+	{
+		tokens.fill();
+		int channel = tokens instanceof CommonTokenStream ? ((CommonTokenStream)tokens).channel : -1;
+		List<Token> all = tokens.getTokens();
+		List<Callable<ChunkResult<P>>> tasks = new ArrayList<Callable<ChunkResult<P>>>();
+		for (Interval range : ChunkTokenStream.split(all, channel, syncTokens, openTokens, closeTokens)) {
+			final ChunkTokenStream chunk = new ChunkTokenStream(tokens.getTokenSource(), all, range.a, range.b, channel);
+			tasks.add(new Callable<ChunkResult<P>>() {
+				@Override
+				public ChunkResult<P> call() {
+					return parse(chunk);
+				}
+			});
+		}
+
+		List<ChunkResult<P>> results = new ArrayList<ChunkResult<P>>(tasks.size());
+		try {
+			for (Future<ChunkResult<P>> future : executor.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if ( cause instanceof RuntimeException ) throw (RuntimeException)cause;
+			if ( cause instanceof Error ) throw (Error)cause;
+			throw new IllegalStateException(cause);
+		}
+
+		ParserRuleContext root = createRootContext();
+		root.start = all.get(0);
+		root.stop = all.get(all.size() - 1);
+		int errors = 0;
+		for (ChunkResult<P> result : results) {
+			errors += result.syntaxErrors;
+			if ( result.parser!=null ) {
+				try {
+					for (Runnable event : result.errors) {
+						event.run();
+					}
+				}
+				finally {
+					parsers.add(result.parser);
+				}
+			}
+
+			if ( result.tree!=null ) {
+				result.tree.parent = root;
+				root.addChild(result.tree);
+			}
+		}
+
+		syntaxErrors = errors;
+		return root;
+	}
+
+	private ChunkResult<P> parse(ChunkTokenStream chunk) {
+		PooledParser<P> pooled = parsers.poll();
+		if ( pooled==null ) {
+			pooled = new PooledParser<P>(createParser(chunk));
+		}
+		else {
+			pooled.parser.setInputStream(chunk);
+		}
+
+		ErrorRecorder recorder = new ErrorRecorder(pooled.parser, pooled.listeners);
+		pooled.parser.removeErrorListeners();
+		pooled.parser.addErrorListener(recorder);
+		boolean keep = false;
+		try {
+			ParserRuleContext tree = parseChunk(pooled.parser);
+			// the listeners may inspect the parser when the errors are replayed
+			keep = !recorder.events.isEmpty();
+			return new ChunkResult<P>(tree, pooled.parser.getNumberOfSyntaxErrors(),
+									  recorder.events, keep ? pooled : null);
+		}
+		finally {
+			if ( !keep ) parsers.add(pooled);
+		}
+	}
+
+	/** A parser along with the error listeners it was created with. */
+	private static final class PooledParser<P extends Parser> {
+		final P parser;
+		final List<ANTLRErrorListener> listeners;
+
+		PooledParser(P parser) {
+			this.parser = parser;
+			this.listeners = new ArrayList<ANTLRErrorListener>(parser.getErrorListeners());
+		}
+	}
+
+	private static final class ChunkResult<P extends Parser> {
+		final ParserRuleContext tree;
+		final int syntaxErrors;
+		final List<Runnable> errors;
+		/** The parser which reported {@link #errors}, or {@code null} if it
+		 *  is back in the pool.
+		 */
+		final PooledParser<P> parser;
+
+		ChunkResult(ParserRuleContext tree, int syntaxErrors, List<Runnable> errors, PooledParser<P> parser) {
+			this.tree = tree;
+			this.syntaxErrors = syntaxErrors;
+			this.errors = errors;
+			this.parser = parser;
+		}
+	}
+
+	/** Holds back the errors of one chunk until they can be reported in
+	 *  input order.
+	 */
+	private static final class ErrorRecorder implements ANTLRErrorListener {
+		final Parser parser;
+		final ProxyErrorListener proxy;
+		final List<Runnable> events = new ArrayList<Runnable>();
+
+		ErrorRecorder(Parser parser, List<ANTLRErrorListener> delegates) {
+			this.parser = parser;
+			this.proxy = new ProxyErrorListener(delegates);
+		}
+
+		/** Record {@code event} along with the parser's position, which is
+		 *  restored before the event is passed on.
+		 */
+		private void record(final Runnable event) {
+			final ParserRuleContext ctx = parser.getContext();
+			final int state = parser.getState();
+			final int index = parser.getInputStream().index();
+			events.add(new Runnable() {
+				@Override
+				public void run() {
+					parser.setContext(ctx);
+					parser.setState(state);
+					parser.getInputStream().seek(index);
+					event.run();
+				}
+			});
+		}
+
+		@Override
+		public void syntaxError(final Recognizer<?, ?> recognizer, final Object offendingSymbol,
+								final int line, final int charPositionInLine,
+								final String msg, final RecognitionException e)
+		{
+			record(new Runnable() {
+				@Override
+				public void run() {
+					proxy.syntaxError(recognizer, offendingSymbol, line, charPositionInLine, msg, e);
+				}
+			});
+		}
+
+		@Override
+		public void reportAmbiguity(final Parser recognizer, final DFA dfa,
+									final int startIndex, final int stopIndex, final boolean exact,
+									final BitSet ambigAlts, final ATNConfigSet configs)
+		{
+			record(new Runnable() {
+				@Override
+				public void run() {
+					proxy.reportAmbiguity(recognizer, dfa, startIndex, stopIndex, exact, ambigAlts, configs);
+				}
+			});
+		}
+
+		@Override
+		public void reportAttemptingFullContext(final Parser recognizer, final DFA dfa,
+												final int startIndex, final int stopIndex,
+												final BitSet conflictingAlts, final ATNConfigSet configs)
+		{
+			record(new Runnable() {
+				@Override
+				public void run() {
+					proxy.reportAttemptingFullContext(recognizer, dfa, startIndex, stopIndex, conflictingAlts, configs);
+				}
+			});
+		}
+
+		@Override
+		public void reportContextSensitivity(final Parser recognizer, final DFA dfa,
+											 final int startIndex, final int stopIndex,
+											 final int prediction, final ATNConfigSet configs)
+		{
+			record(new Runnable() {
+				@Override
+				public void run() {
+					proxy.reportContextSensitivity(recognizer, dfa, startIndex, stopIndex, prediction, configs);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime;
+
+import org.antlr.v4.runtime.tree.ChildList;
+import org.antlr.v4.runtime.tree.ErrorNodeImpl;
+import org.antlr.v4.runtime.tree.TerminalNodeImpl;
+
+import java.util.Arrays;
+
+/**
+ * Allocates the nodes of parse trees which are released all at once, for
+ * applications which parse, extract a few values and discard the tree.
+ * Nodes handed out since the last {@link #release} are reused by the
+ * allocations after it, so parsing many inputs with one arena allocates
+ * only as many nodes as the largest tree has.
+ *
+ * <p>A parser given an arena with {@link Parser#setParseTreeArena} takes
+ * terminal nodes, error nodes and the {@link ParserRuleContext#children}
+ * lists from it; a {@link ParserInterpreter} also takes its rule contexts
+ * from it. The contexts of a generated parser are instances of generated
+ * classes and are still allocated by the parser.</p>
+ *
+ * <p>After {@link #release}, the trees built with this arena must no longer
+ * be used: their nodes are cleared and become parts of the next trees. An
+ * arena is not thread-safe; use one per parser.</p>
+ *
+ * @since 4.9
+ */
+public class ParseTreeArena {
+	private final Pool<TerminalNodeImpl> terminalNodes = new Pool<TerminalNodeImpl>() {
+		@Override
+		protected TerminalNodeImpl create() {
+			return new TerminalNodeImpl(null);
+		}
+
+		@Override
+		protected void reset(TerminalNodeImpl node) {
+			node.symbol = null;
+			node.parent = null;
+		}
+	};
+
+	private final Pool<ErrorNodeImpl> errorNodes = new Pool<ErrorNodeImpl>() {
+		@Override
+		protected ErrorNodeImpl create() {
+			return new ErrorNodeImpl(null);
+		}
+
+		@Override
+		protected void reset(ErrorNodeImpl node) {
+			node.symbol = null;
+			node.parent = null;
+		}
+	};
+
+	private final Pool<ChildList> childLists = new Pool<ChildList>() {
+		@Override
+		protected ChildList create() {
+			return new ChildList();
+		}
+
+		@Override
+		protected void reset(ChildList list) {
+			list.clear();
+		}
+	};
+
+	private final Pool<InterpreterRuleContext> contexts = new Pool<InterpreterRuleContext>() {
+		@Override
+		protected InterpreterRuleContext create() {
+			return new InterpreterRuleContext();
+		}
+
+		@Override
+		protected void reset(InterpreterRuleContext ctx) {
+			ctx.parent = null;
+			ctx.invokingState = -1;
+			ctx.ruleIndex = -1;
+			ctx.children = null;
+			ctx.start = null;
+			ctx.stop = null;
+			ctx.exception = null;
+		}
+	};
+
+	public TerminalNodeImpl newTerminalNode(Token symbol) {
+		TerminalNodeImpl node = terminalNodes.next();
+		node.symbol = symbol;
+		return node;
+	}
+
+	public ErrorNodeImpl newErrorNode(Token symbol) {
+		ErrorNodeImpl node = errorNodes.next();
+		node.symbol = symbol;
+		return node;
+	}
+
+	/** Return an empty list for the children of a context. */
+	public ChildList newChildList() {
+		return childLists.next();
+	}
+
+	public InterpreterRuleContext newInterpreterRuleContext(ParserRuleContext parent,
+															int invokingStateNumber,
+															int ruleIndex)
+	{
+		InterpreterRuleContext ctx = contexts.next();
+		ctx.parent = parent;
+		ctx.invokingState = invokingStateNumber;
+		ctx.ruleIndex = ruleIndex;
+		return ctx;
+	}
+
+	/** Return the number of objects handed out since the last {@link #release}. */
+	public int size() {
+		return terminalNodes.used + errorNodes.used + childLists.used + contexts.used;
+	}
+
+	/** Return the number of objects this arena holds for reuse. */
+	public int getCapacity() {
+		return terminalNodes.size + errorNodes.size + childLists.size + contexts.size;
+	}
+
+	/**
+	 * Release all objects handed out since the last call, clearing their
+	 * references to tokens and other nodes.
+	 */
+	public void release() {
+		terminalNodes.release();
+		errorNodes.release();
+		childLists.release();
+		contexts.release();
+	}
+
+	/** Release all objects and drop them, so this arena holds no memory. */
+	public void clear() {
+		release();
+		terminalNodes.clear();
+		errorNodes.clear();
+		childLists.clear();
+		contexts.clear();
+	}
+
+	/** The objects of one type; those below {@link #used} are in use. */
+	private static abstract class Pool<T> {
+		Object[] items = new Object[16];
+		int size;
+		int used;
+
+		@SuppressWarnings("unchecked")
+		T next() {
+			if (used < size) {
+				return (T)items[used++];
+			}
+
+			T item = create();
+			if (size == items.length) {
+				items = Arrays.copyOf(items, size * 2);
+			}
+
+			items[size++] = item;
+			used = size;
+			return item;
+		}
+
+		@SuppressWarnings("unchecked")
+		void release() {
+			for (int i = 0; i < used; i++) {
+				reset((T)items[i]);
+			}
+
+			used = 0;
+		}
+
+		void clear() {
+			items = new Object[16];
+			size = 0;
+		}
+
+		protected abstract T create();
+
+		protected abstract void reset(T item);
+	}
+}
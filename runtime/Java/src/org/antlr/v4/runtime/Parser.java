@@ -18,10 +18,13 @@ import org.antlr.v4.runtime.atn.RuleTransition;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.IntegerStack;
 import org.antlr.v4.runtime.misc.IntervalSet;
+import org.antlr.v4.runtime.tree.ChildList;
 import org.antlr.v4.runtime.tree.ErrorNode;
 import org.antlr.v4.runtime.tree.ErrorNodeImpl;
 import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeSink;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.TerminalFreeParseListener;
 import org.antlr.v4.runtime.tree.TerminalNode;
 import org.antlr.v4.runtime.tree.TerminalNodeImpl;
 import org.antlr.v4.runtime.tree.pattern.ParseTreePattern;
@@ -73,7 +76,10 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 
 		@Override
 		public void exitEveryRule(ParserRuleContext ctx) {
-			if (ctx.children instanceof ArrayList) {
+			if (ctx.children instanceof ChildList) {
+				((ChildList)ctx.children).trimToSize();
+			}
+			else if (ctx.children instanceof ArrayList) {
 				((ArrayList<?>)ctx.children).trimToSize();
 			}
 		}
@@ -127,6 +133,44 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	 */
 	protected boolean _buildParseTrees = true;
 
+	/**
+	 * The rule whose contexts are handed to {@link #_streamingSink} and
+	 * released, or -1 if the parser is not in streaming mode.
+	 *
+	 * @see #setStreamingRule
+	 */
+	protected int _streamingRuleIndex = -1;
+
+	protected ParseTreeSink _streamingSink;
+
+	/** The parent of the last context emitted in streaming mode, and the
+	 *  number of children it kept then. The children it gains after that
+	 *  are removed with its next emitted context.
+	 */
+	private ParserRuleContext _streamingParent;
+	private int _streamingKeep;
+
+	/**
+	 * The arena which allocates the nodes of the parse tree, or {@code null}.
+	 *
+	 * @see #setParseTreeArena
+	 */
+	protected ParseTreeArena _arena;
+
+	/**
+	 * Receives the events of the parse without tree nodes, or {@code null}.
+	 *
+	 * @see #setTerminalFreeParseListener
+	 */
+	protected TerminalFreeParseListener _terminalFreeListener;
+
+	/**
+	 * The context of the last finished invocation of each rule, kept for
+	 * reuse while the parse only reports to {@link #_terminalFreeListener}.
+	 *
+	 * @see #reuseContext
+	 */
+	private ParserRuleContext[] _reusableContexts;
 
 	/**
 	 * When {@link #setTrace}{@code (true)} is called, a reference to the
@@ -154,6 +198,12 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	/** Indicates parser has match()ed EOF token. See {@link #exitRule()}. */
 	protected boolean matchedEOF;
 
+	/** Whether the last {@link #parseTwoStage} call fell back to LL. */
+	private boolean _twoStageFallback;
+
+	/** The number of {@link #parseTwoStage} calls which fell back to LL. */
+	private int _twoStageFallbackCount;
+
 	public Parser(TokenStream input) {
 		setInputStream(input);
 	}
@@ -163,6 +213,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		if ( getInputStream()!=null ) getInputStream().seek(0);
 		_errHandler.reset(this);
 		_ctx = null;
+		_streamingParent = null;
 		_syntaxErrors = 0;
 		matchedEOF = false;
 		setTrace(false);
@@ -305,6 +356,223 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	}
 
 
+	/**
+	 * Allocate the terminal nodes, error nodes and children lists of the
+	 * parse tree from {@code arena}, or from the heap if it is {@code null}.
+	 * The trees built with an arena must not be used after
+	 * {@link ParseTreeArena#release}, which recycles their nodes for the next
+	 * parse.
+	 *
+	 * @since 4.9
+	 */
+	public void setParseTreeArena(ParseTreeArena arena) {
+		_arena = arena;
+	}
+
+	/**
+	 * @return The arena which allocates the nodes of the parse tree, or
+	 * {@code null} if they are allocated from the heap.
+	 * @since 4.9
+	 */
+	public ParseTreeArena getParseTreeArena() {
+		return _arena;
+	}
+
+	/**
+	 * Deliver the events of the parse to {@code listener}, or stop if it is
+	 * {@code null}. Unlike a parse listener, {@code listener} gets rule
+	 * indexes and tokens rather than nodes, so with
+	 * {@link #setBuildParseTree setBuildParseTree(false)} and no parse
+	 * listeners the parser creates no terminal nodes. Generated rules without
+	 * attributes, labels or actions then also reuse the context of their
+	 * previous invocation, so a context such a rule returns is only valid
+	 * until the rule is invoked again; the same holds for the context of a
+	 * {@link RecognitionException} passed to the error listeners.
+	 *
+	 * @since 4.9
+	 */
+	public void setTerminalFreeParseListener(TerminalFreeParseListener listener) {
+		_terminalFreeListener = listener;
+	}
+
+	/**
+	 * @return The listener which receives the events of the parse, or
+	 * {@code null}.
+	 * @since 4.9
+	 */
+	public TerminalFreeParseListener getTerminalFreeParseListener() {
+		return _terminalFreeListener;
+	}
+
+	/** Give {@code ctx} a children list from the arena before its first
+	 *  child is added.
+	 */
+	protected final void allocateChildren(ParserRuleContext ctx) {
+		if ( _arena!=null && ctx.children==null ) {
+			ctx.children = _arena.newChildList();
+		}
+	}
+
+	/**
+	 * Parse in streaming mode: each completed context of rule
+	 * {@code ruleIndex} which is not nested in another context of the same
+	 * rule is passed to {@code sink} and then removed from the parse tree.
+	 * The children its parent gained since the previous record, such as the
+	 * separator tokens of {@code r (',' r)*}, are removed with it; the
+	 * children before the first record and after the last stay in the tree.
+	 * Use this with an {@link UnbufferedTokenStream} to parse an unbounded
+	 * sequence of records in bounded memory; the token buffer then only
+	 * holds the lookahead which is still in use.
+	 *
+	 * @param ruleIndex The rule to emit, or -1 to leave streaming mode
+	 * @param sink Receives the completed contexts
+	 * @since 4.9
+	 */
+	public void setStreamingRule(int ruleIndex, ParseTreeSink sink) {
+		if ( ruleIndex>=0 && sink==null ) {
+			throw new NullPointerException("sink");
+		}
+
+		_streamingRuleIndex = ruleIndex;
+		_streamingSink = ruleIndex>=0 ? sink : null;
+		_streamingParent = null;
+	}
+
+	/**
+	 * @return The rule emitted in streaming mode, or -1 if the parser is not
+	 * in streaming mode.
+	 * @since 4.9
+	 */
+	public int getStreamingRule() {
+		return _streamingRuleIndex;
+	}
+
+	/** Emit and release {@code ctx} if it is a top-level context of the
+	 *  streaming rule, with the children its parent gained since the
+	 *  previous one.
+	 */
+	protected void emitStreamingContext(ParserRuleContext ctx) {
+		if ( ctx.getRuleIndex()!=_streamingRuleIndex ) return;
+		ParserRuleContext parent = ctx.getParent();
+		for (ParserRuleContext p = parent; p!=null; p = p.getParent()) {
+			if ( p.getRuleIndex()==_streamingRuleIndex ) return;
+		}
+
+		_streamingSink.emit(ctx);
+		if ( parent==null ) return;
+		int n = parent.getChildCount();
+		if ( n==0 || parent.getChild(n - 1)!=ctx ) return; // not in the tree
+
+		int keep = parent==_streamingParent ? Math.min(_streamingKeep, n - 1) : n - 1;
+		while ( n>keep ) {
+			parent.removeLastChild();
+			n--;
+		}
+
+		_streamingParent = parent;
+		_streamingKeep = keep;
+	}
+
+	/**
+	 * Parse with two-stage prediction. {@code rule} is first invoked with
+	 * {@link PredictionMode#SLL} and an error strategy which stops at the
+	 * first syntax error without reporting it. Only if that fails is the
+	 * input rewound to where it started, and {@code rule} invoked again with
+	 * the original prediction mode ({@link PredictionMode#LL} if it was SLL)
+	 * and error strategy. SLL prediction succeeds for most inputs and is much
+	 * faster; LL prediction then only runs for inputs which need it, and
+	 * errors are reported as in a normal parse.
+	 *
+	 * <p>Both stages read the same token stream; the tokens read by the first
+	 * stage are kept with {@link TokenStream#mark} and not fetched again. The
+	 * first stage stops with a preallocated exception which has no stack
+	 * trace, unlike {@link BailErrorStrategy}.</p>
+	 *
+	 * <p>Parse listeners and the streaming sink (see
+	 * {@link #setStreamingRule}) also receive the events of a first stage
+	 * which fails. Use {@link #isTwoStageFallback} to find out which stage
+	 * produced the result.</p>
+	 *
+	 * <pre>
+	 * ParserRuleContext tree = parser.parseTwoStage(new Parser.StartRule&lt;ParserRuleContext&gt;() {
+	 *     public ParserRuleContext invoke() { return parser.compilationUnit(); }
+	 * });
+	 * </pre>
+	 *
+	 * @param rule Invokes a rule of this parser
+	 * @return The result of {@code rule}
+	 * @since 4.9
+	 */
+	public <T> T parseTwoStage(StartRule<T> rule) {
+		ParserATNSimulator interpreter = getInterpreter();
+		PredictionMode mode = interpreter.getPredictionMode();
+		ANTLRErrorStrategy errHandler = _errHandler;
+		TokenStream input = _input;
+		int marker = input.mark();
+		int startIndex = input.index();
+		int state = getState();
+		ParserRuleContext ctx = _ctx;
+		int childCount = ctx!=null && ctx.children!=null ? ctx.children.size() : 0;
+		int precedenceDepth = _precedenceStack.size();
+		boolean matched = matchedEOF;
+		try {
+			_twoStageFallback = false;
+			interpreter.setPredictionMode(PredictionMode.SLL);
+			_errHandler = TwoStageBailErrorStrategy.INSTANCE;
+			try {
+				return rule.invoke();
+			}
+			catch (TwoStageBailException ex) {
+				// fall back to LL below
+			}
+
+			_twoStageFallback = true;
+			_twoStageFallbackCount++;
+
+			// undo the first stage
+			input.seek(startIndex);
+			setState(state);
+			_ctx = ctx;
+			if ( ctx!=null && ctx.children!=null ) {
+				while ( ctx.children.size()>childCount ) {
+					ctx.children.remove(ctx.children.size() - 1);
+				}
+			}
+			while ( _precedenceStack.size()>precedenceDepth ) {
+				_precedenceStack.pop();
+			}
+			matchedEOF = matched;
+
+			interpreter.setPredictionMode(mode==PredictionMode.SLL ? PredictionMode.LL : mode);
+			_errHandler = errHandler;
+			errHandler.reset(this);
+			return rule.invoke();
+		}
+		finally {
+			interpreter.setPredictionMode(mode);
+			_errHandler = errHandler;
+			input.release(marker);
+		}
+	}
+
+	/**
+	 * @return {@code true} if the last call of {@link #parseTwoStage} had to
+	 * parse again with LL prediction.
+	 * @since 4.9
+	 */
+	public boolean isTwoStageFallback() {
+		return _twoStageFallback;
+	}
+
+	/**
+	 * @return The number of calls of {@link #parseTwoStage} which had to
+	 * parse again with LL prediction.
+	 * @since 4.9
+	 */
+	public int getTwoStageFallbackCount() {
+		return _twoStageFallbackCount;
+	}
+
 	public List<ParseTreeListener> getParseListeners() {
 		List<ParseTreeListener> listeners = _parseListeners;
 		if (listeners == null) {
@@ -410,6 +678,60 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		}
 	}
 
+	/** Whether no tree is built and no listener but
+	 *  {@link #_terminalFreeListener} sees the contexts, so a context is
+	 *  dead once its rule returns.
+	 */
+	protected boolean isContextReuseEnabled() {
+		return _terminalFreeListener != null && !_buildParseTrees &&
+			_parseListeners == null && _streamingRuleIndex < 0;
+	}
+
+	/**
+	 * Called by generated parsers upon entry to a rule whose context holds
+	 * no attributes or labels. Returns the context of an earlier invocation
+	 * of rule {@code ruleIndex}, cleared and attached to {@code parent}, or
+	 * {@code null} if the rule must create a new context.
+	 *
+	 * @see #releaseContext
+	 * @since 4.9
+	 */
+	protected final ParserRuleContext reuseContext(int ruleIndex, ParserRuleContext parent, int invokingState) {
+		ParserRuleContext[] contexts = _reusableContexts;
+		if ( contexts == null || !isContextReuseEnabled() ) return null;
+		ParserRuleContext ctx = contexts[ruleIndex];
+		if ( ctx == null ) return null;
+		contexts[ruleIndex] = null; // a recursive invocation needs its own
+		ctx.parent = parent;
+		ctx.invokingState = invokingState;
+		ctx.children = null;
+		ctx.start = null;
+		ctx.stop = null;
+		ctx.exception = null;
+		return ctx;
+	}
+
+	/**
+	 * Called by generated parsers after {@link #exitRule} of a rule which
+	 * took its context from {@link #reuseContext}. Keeps {@code ctx} for the
+	 * next invocation of rule {@code ruleIndex}.
+	 *
+	 * @since 4.9
+	 */
+	protected final void releaseContext(int ruleIndex, ParserRuleContext ctx) {
+		if ( !isContextReuseEnabled() ) return;
+		if ( _reusableContexts == null ) {
+			_reusableContexts = new ParserRuleContext[getRuleNames().length];
+		}
+		_reusableContexts[ruleIndex] = ctx;
+	}
+
+	/** Notify {@link #_terminalFreeListener} that {@link #_ctx} ends. */
+	protected void fireTerminalFreeExitRule() {
+		Token stop = _ctx.stop;
+		_terminalFreeListener.exitRule(_ctx.getRuleIndex(), stop != null ? stop.getTokenIndex() : -1);
+	}
+
 	/**
 	 * Gets the number of syntax errors reported during parsing. This value is
 	 * incremented each time {@link #notifyErrorListeners} is called.
@@ -573,6 +895,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		boolean hasListener = _parseListeners != null && !_parseListeners.isEmpty();
 		if (_buildParseTrees || hasListener) {
 			if ( _errHandler.inErrorRecoveryMode(this) ) {
+				allocateChildren(_ctx);
 				ErrorNode node = _ctx.addErrorNode(createErrorNode(_ctx,o));
 				if (_parseListeners != null) {
 					for (ParseTreeListener listener : _parseListeners) {
@@ -581,6 +904,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 				}
 			}
 			else {
+				allocateChildren(_ctx);
 				TerminalNode node = _ctx.addChild(createTerminalNode(_ctx,o));
 				if (_parseListeners != null) {
 					for (ParseTreeListener listener : _parseListeners) {
@@ -589,6 +913,14 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 				}
 			}
 		}
+		if (_terminalFreeListener != null) {
+			if ( _errHandler.inErrorRecoveryMode(this) ) {
+				_terminalFreeListener.visitErrorToken(o);
+			}
+			else {
+				_terminalFreeListener.visitTerminal(o);
+			}
+		}
 		return o;
 	}
 
@@ -598,6 +930,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	 * @since 4.7
 	 */
 	public TerminalNode createTerminalNode(ParserRuleContext parent, Token t) {
+		if ( _arena!=null ) return _arena.newTerminalNode(t);
 		return new TerminalNodeImpl(t);
 	}
 
@@ -607,6 +940,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	 * @since 4.7
 	 */
 	public ErrorNode createErrorNode(ParserRuleContext parent, Token t) {
+		if ( _arena!=null ) return _arena.newErrorNode(t);
 		return new ErrorNodeImpl(t);
 	}
 
@@ -614,6 +948,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		ParserRuleContext parent = (ParserRuleContext)_ctx.parent;
 		// add current context to parent if we have a parent
 		if ( parent!=null )	{
+			allocateChildren(parent);
 			parent.addChild(_ctx);
 		}
 	}
@@ -628,6 +963,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		_ctx.start = _input.LT(1);
 		if (_buildParseTrees) addContextToParseTree();
         if ( _parseListeners != null) triggerEnterRuleEvent();
+		if ( _terminalFreeListener != null ) _terminalFreeListener.enterRule(ruleIndex, _ctx.start.getTokenIndex());
 	}
 
     public void exitRule() {
@@ -640,12 +976,16 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		}
         // trigger event on _ctx, before it reverts to parent
         if ( _parseListeners != null) triggerExitRuleEvent();
+		if ( _terminalFreeListener != null ) fireTerminalFreeExitRule();
 		setState(_ctx.invokingState);
+		ParserRuleContext exited = _ctx;
 		_ctx = (ParserRuleContext)_ctx.parent;
+		if ( _streamingRuleIndex>=0 ) emitStreamingContext(exited);
     }
 
 	public void enterOuterAlt(ParserRuleContext localctx, int altNum) {
 		localctx.setAltNumber(altNum);
+		if ( _terminalFreeListener != null ) _terminalFreeListener.enterAlt(localctx.getRuleIndex(), altNum);
 		// if we have new localctx, make sure we replace existing ctx
 		// that is previous child of parse tree
 		if ( _buildParseTrees && _ctx != localctx ) {
@@ -689,6 +1029,7 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		if (_parseListeners != null) {
 			triggerEnterRuleEvent(); // simulates rule entry for left-recursive rules
 		}
+		if ( _terminalFreeListener != null ) _terminalFreeListener.enterRule(ruleIndex, _ctx.start.getTokenIndex());
 	}
 
 	/** Like {@link #enterRule} but for recursive rules.
@@ -703,12 +1044,14 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		_ctx = localctx;
 		_ctx.start = previous.start;
 		if (_buildParseTrees) {
+			allocateChildren(_ctx);
 			_ctx.addChild(previous);
 		}
 
 		if ( _parseListeners != null ) {
 			triggerEnterRuleEvent(); // simulates rule entry for left-recursive rules
 		}
+		if ( _terminalFreeListener != null ) _terminalFreeListener.enterRule(ruleIndex, _ctx.start.getTokenIndex());
 	}
 
 	public void unrollRecursionContexts(ParserRuleContext _parentctx) {
@@ -717,9 +1060,10 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 		ParserRuleContext retctx = _ctx; // save current ctx (return value)
 
 		// unroll so _ctx is as it was before call to recursive method
-		if ( _parseListeners != null ) {
+		if ( _parseListeners != null || _terminalFreeListener != null ) {
 			while ( _ctx != _parentctx ) {
-				triggerExitRuleEvent();
+				if ( _parseListeners != null ) triggerExitRuleEvent();
+				if ( _terminalFreeListener != null ) fireTerminalFreeExitRule();
 				_ctx = (ParserRuleContext)_ctx.parent;
 			}
 		}
@@ -732,8 +1076,11 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 
 		if (_buildParseTrees && _parentctx != null) {
 			// add return ctx into invoking rule's tree
+			allocateChildren(_parentctx);
 			_parentctx.addChild(retctx);
 		}
+
+		if ( _streamingRuleIndex>=0 ) emitStreamingContext(retctx);
 	}
 
 	public ParserRuleContext getInvokingContext(int ruleIndex) {
@@ -946,5 +1293,64 @@ public abstract class Parser extends Recognizer<Token, ParserATNSimulator> {
 	public boolean isTrace() {
 		return _tracer != null;
 	}
-}
 
+	/**
+	 * An invocation of a rule, usually the start rule, for
+	 * {@link #parseTwoStage}.
+	 *
+	 * @since 4.9
+	 */
+	public interface StartRule<T> {
+		T invoke();
+	}
+
+	/** Stops the first stage of {@link #parseTwoStage} at the first error. */
+	private static final class TwoStageBailErrorStrategy implements ANTLRErrorStrategy {
+		static final TwoStageBailErrorStrategy INSTANCE = new TwoStageBailErrorStrategy();
+
+		@Override
+		public void reset(Parser recognizer) {
+		}
+
+		@Override
+		public Token recoverInline(Parser recognizer) {
+			throw TwoStageBailException.INSTANCE;
+		}
+
+		@Override
+		public void recover(Parser recognizer, RecognitionException e) {
+			throw TwoStageBailException.INSTANCE;
+		}
+
+		@Override
+		public void sync(Parser recognizer) {
+		}
+
+		@Override
+		public boolean inErrorRecoveryMode(Parser recognizer) {
+			return false;
+		}
+
+		@Override
+		public void reportMatch(Parser recognizer) {
+		}
+
+		@Override
+		public void reportError(Parser recognizer, RecognitionException e) {
+			throw TwoStageBailException.INSTANCE;
+		}
+	}
+
+	/** Unwinds the first stage of {@link #parseTwoStage}; it is thrown often,
+	 *  so it is preallocated. It has no stack trace and suppression is
+	 *  disabled, so the shared instance never changes.
+	 */
+	@SuppressWarnings("serial")
+	private static final class TwoStageBailException extends RuntimeException {
+		static final TwoStageBailException INSTANCE = new TwoStageBailException();
+
+		private TwoStageBailException() {
+			super(null, null, false, false);
+		}
+	}
+}
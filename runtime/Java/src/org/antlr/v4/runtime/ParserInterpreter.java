@@ -327,6 +327,9 @@ public class ParserInterpreter extends Parser {
 		int invokingStateNumber,
 		int ruleIndex)
 	{
+		if ( _arena!=null ) {
+			return _arena.newInterpreterRuleContext(parent, invokingStateNumber, ruleIndex);
+		}
 		return new InterpreterRuleContext(parent, invokingStateNumber, ruleIndex);
 	}
 
@@ -6,6 +6,7 @@
 package org.antlr.v4.runtime;
 
 import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.tree.ChildList;
 import org.antlr.v4.runtime.tree.ErrorNode;
 import org.antlr.v4.runtime.tree.ErrorNodeImpl;
 import org.antlr.v4.runtime.tree.ParseTree;
@@ -99,7 +100,7 @@ public class ParserRuleContext extends RuleContext {
 
 		// copy any error nodes to alt label node
 		if ( ctx.children!=null ) {
-			this.children = new ArrayList<>();
+			this.children = new ChildList();
 			// reset parent pointer for any error nodes
 			for (ParseTree child : ctx.children) {
 				if ( child instanceof ErrorNode ) {
@@ -130,7 +131,7 @@ public class ParserRuleContext extends RuleContext {
 	 *  @since 4.7
 	 */
 	public <T extends ParseTree> T addAnyChild(T t) {
-		if ( children==null ) children = new ArrayList<>();
+		if ( children==null ) children = new ChildList();
 		children.add(t);
 		return t;
 	}
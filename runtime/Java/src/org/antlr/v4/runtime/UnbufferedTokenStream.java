@@ -64,6 +64,13 @@ public class UnbufferedTokenStream<T extends Token> implements TokenStream {
 	 */
 	protected int currentTokenIndex = 0;
 
+	/**
+	 * The capacity of {@link #tokens tokens} when the stream was created.
+	 * The buffer shrinks back to this size once a long lookahead is
+	 * released.
+	 */
+	private final int initialBufferSize;
+
 	public UnbufferedTokenStream(TokenSource tokenSource) {
 		this(tokenSource, 256);
 	}
@@ -71,6 +78,7 @@ public class UnbufferedTokenStream<T extends Token> implements TokenStream {
 	public UnbufferedTokenStream(TokenSource tokenSource, int bufferSize) {
 		this.tokenSource = tokenSource;
 		tokens = new Token[bufferSize];
+		initialBufferSize = bufferSize;
 		n = 0;
 		fill(1); // prime the pump
 	}
@@ -226,8 +234,15 @@ public class UnbufferedTokenStream<T extends Token> implements TokenStream {
 				// Copy tokens[p]..tokens[n-1] to tokens[0]..tokens[(n-1)-p], reset ptrs
 				// p is last valid token; move nothing if p==n as we have no valid char
 				System.arraycopy(tokens, p, tokens, 0, n - p); // shift n-p tokens from p to 0
+				int oldN = n;
 				n = n - p;
 				p = 0;
+				// drop references to the released tokens
+				Arrays.fill(tokens, n, oldN, null);
+			}
+
+			if ( tokens.length > initialBufferSize && n <= initialBufferSize / 2 ) {
+				tokens = Arrays.copyOf(tokens, initialBufferSize);
 			}
 
 			lastTokenBufferStart = lastToken;
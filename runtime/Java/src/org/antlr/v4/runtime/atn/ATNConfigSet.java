@@ -73,9 +73,22 @@ public class ATNConfigSet implements Set<ATNConfig> {
 	/**
 	 * All configs but hashed by (s, i, _, pi) not including context. Wiped out
 	 * when we go readonly as this set becomes a DFA state.
+	 *
+	 * <p>This is {@code null} for sets which use the default equality of
+	 * {@link ConfigHashSet}; those are indexed by {@link #configIndex}
+	 * instead. Subclasses which compare configurations differently assign
+	 * their own lookup here. Use {@link #getConfigLookup} to read it.</p>
 	 */
 	public AbstractConfigHashSet configLookup;
 
+	/**
+	 * The positions in {@link #configs} by (s, i, _, pi) while
+	 * {@link #configLookup} is {@code null}. Created on first use unless a
+	 * {@link ParserATNSimulator} lends a recycled one; wiped out when we go
+	 * readonly.
+	 */
+	ConfigIndex configIndex;
+
 	/** Track the elements as they are added to the set; supports get(i) */
 	public final ArrayList<ATNConfig> configs = new ArrayList<ATNConfig>(7);
 
@@ -103,7 +116,6 @@ public class ATNConfigSet implements Set<ATNConfig> {
 	private int cachedHashCode = -1;
 
 	public ATNConfigSet(boolean fullCtx) {
-		configLookup = new ConfigHashSet();
 		this.fullCtx = fullCtx;
 	}
 	public ATNConfigSet() { this(true); }
@@ -143,7 +155,14 @@ public class ATNConfigSet implements Set<ATNConfig> {
 		if (config.getOuterContextDepth() > 0) {
 			dipsIntoOuterContext = true;
 		}
-		ATNConfig existing = configLookup.getOrAdd(config);
+		ATNConfig existing;
+		if ( configLookup!=null ) {
+			existing = configLookup.getOrAdd(config);
+		}
+		else {
+			int position = getConfigIndex().getOrAdd(config, configs.size());
+			existing = position<0 ? config : configs.get(position);
+		}
 		if ( existing==config ) { // we added this new one
 			cachedHashCode = -1;
 			configs.add(config);  // track order here
@@ -210,7 +229,7 @@ public class ATNConfigSet implements Set<ATNConfig> {
 
 	public void optimizeConfigs(ATNSimulator interpreter) {
 		if ( readonly ) throw new IllegalStateException("This set is readonly");
-		if ( configLookup.isEmpty() ) return;
+		if ( configs.isEmpty() ) return;
 
 		for (ATNConfig config : configs) {
 //			int before = PredictionContext.getAllContextNodes(config.context).size();
@@ -274,19 +293,27 @@ public class ATNConfigSet implements Set<ATNConfig> {
 
 	@Override
 	public boolean contains(Object o) {
-		if (configLookup == null) {
+		if (readonly) {
 			throw new UnsupportedOperationException("This method is not implemented for readonly sets.");
 		}
 
-		return configLookup.contains(o);
+		if (configLookup != null) {
+			return configLookup.contains(o);
+		}
+
+		return o instanceof ATNConfig && getConfigIndex().get((ATNConfig)o) >= 0;
 	}
 
 	public boolean containsFast(ATNConfig obj) {
-		if (configLookup == null) {
+		if (readonly) {
 			throw new UnsupportedOperationException("This method is not implemented for readonly sets.");
 		}
 
-		return configLookup.containsFast(obj);
+		if (configLookup != null) {
+			return configLookup.containsFast(obj);
+		}
+
+		return getConfigIndex().get(obj) >= 0;
 	}
 
 	@Override
@@ -299,7 +326,12 @@ public class ATNConfigSet implements Set<ATNConfig> {
 		if ( readonly ) throw new IllegalStateException("This set is readonly");
 		configs.clear();
 		cachedHashCode = -1;
-		configLookup.clear();
+		if ( configLookup!=null ) {
+			configLookup.clear();
+		}
+		else if ( configIndex!=null ) {
+			configIndex.clear();
+		}
 	}
 
 	public boolean isReadonly() {
@@ -309,6 +341,42 @@ public class ATNConfigSet implements Set<ATNConfig> {
 	public void setReadonly(boolean readonly) {
 		this.readonly = readonly;
 		configLookup = null; // can't mod, no need for lookup cache
+		configIndex = null;
+	}
+
+	/**
+	 * Return {@link #configLookup}, or {@code null} if the set is readonly.
+	 * A set indexed by {@link #configIndex} gets a {@link ConfigHashSet} of
+	 * its configurations, which it keeps using from then on.
+	 *
+	 * @since 4.9
+	 */
+	public AbstractConfigHashSet getConfigLookup() {
+		if ( configLookup==null && !readonly ) {
+			ConfigHashSet lookup = new ConfigHashSet();
+			for (ATNConfig c : configs) {
+				lookup.getOrAdd(c);
+			}
+
+			configLookup = lookup;
+			configIndex = null;
+		}
+
+		return configLookup;
+	}
+
+	/** Return {@link #configIndex}, indexing {@link #configs} if the set
+	 *  has none, such as after its simulator took it back.
+	 */
+	ConfigIndex getConfigIndex() {
+		if ( configIndex==null ) {
+			configIndex = new ConfigIndex();
+			for (int i = 0; i < configs.size(); i++) {
+				configIndex.getOrAdd(configs.get(i), i);
+			}
+		}
+
+		return configIndex;
 	}
 
 	@Override
@@ -326,12 +394,12 @@ public class ATNConfigSet implements Set<ATNConfig> {
 
 	@Override
 	public ATNConfig[] toArray() {
-		return configLookup.toArray();
+		return configs.toArray(new ATNConfig[configs.size()]);
 	}
 
 	@Override
 	public <T> T[] toArray(T[] a) {
-		return configLookup.toArray(a);
+		return configs.toArray(a);
 	}
 
 	@Override
@@ -97,13 +97,11 @@ public abstract class ATNSimulator {
 	public PredictionContext getCachedContext(PredictionContext context) {
 		if ( sharedContextCache==null ) return context;
 
-		synchronized (sharedContextCache) {
-			IdentityHashMap<PredictionContext, PredictionContext> visited =
-				new IdentityHashMap<PredictionContext, PredictionContext>();
-			return PredictionContext.getCachedContext(context,
-													  sharedContextCache,
-													  visited);
-		}
+		IdentityHashMap<PredictionContext, PredictionContext> visited =
+			new IdentityHashMap<PredictionContext, PredictionContext>();
+		return PredictionContext.getCachedContext(context,
+												  sharedContextCache,
+												  visited);
 	}
 
 	/**
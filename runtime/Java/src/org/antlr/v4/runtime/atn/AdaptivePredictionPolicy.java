@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Chooses per decision between two-stage SLL/LL prediction and going
+ * straight to full-context LL prediction. A {@link ParserATNSimulator} in
+ * {@link PredictionMode#LL} or {@link PredictionMode#LL_EXACT_AMBIG_DETECTION}
+ * first predicts with SLL and falls back to LL on a conflict. For a decision
+ * which conflicts on most inputs the SLL pass is wasted, so once such a
+ * decision has been seen {@link #getMinPredictions} times and at least
+ * {@link #getFullContextThreshold} of those predictions fell back, the
+ * policy tells the simulator to skip SLL for it. Set it with
+ * {@link ParserATNSimulator#setAdaptivePolicy}.
+ *
+ * <p>Both paths predict the same alternatives for valid input. A decision
+ * predicted with LL alone is still predicted with SLL first once every
+ * {@link #getProbeInterval} predictions, and the counts of a decision are
+ * halved once it has been predicted with SLL {@link #DECAY_INTERVAL} times,
+ * so older predictions weigh less and the statistics follow a change in the
+ * input. Since LL prediction does not know where SLL would have
+ * conflicted, a syntax error may be reported at a different token, and
+ * {@link ParserATNSimulator#reportContextSensitivity} is called for inputs
+ * which are not context-sensitive; use no policy while collecting
+ * diagnostics.</p>
+ *
+ * <p>What the policy learned can be saved with {@link #write} and loaded
+ * into another process with {@link #read}, so that its parsers do not have
+ * to learn it again. The policy is thread-safe, so one instance can serve
+ * all parsers of a grammar.</p>
+ *
+ * @since 4.9
+ */
+public class AdaptivePredictionPolicy {
+	/** "APOL" */
+	public static final int MAGIC = 0x41504F4C;
+	public static final int VERSION = 1;
+
+	public static final int DEFAULT_MIN_PREDICTIONS = 100;
+	public static final double DEFAULT_FULL_CONTEXT_THRESHOLD = 0.5;
+	public static final int DEFAULT_PROBE_INTERVAL = 1024;
+	/** The number of SLL predictions of a decision after which its counts
+	 *  are halved, or twice {@link #getMinPredictions} if that is larger.
+	 */
+	public static final int DECAY_INTERVAL = 4096;
+
+	/** Predictions which started with SLL. */
+	private static final int PREDICTIONS = 0;
+	/** Predictions which fell back from SLL to LL. */
+	private static final int FALLBACKS = 1;
+	/** Predictions which skipped SLL. */
+	private static final int FULL_CONTEXT_PREDICTIONS = 2;
+
+	/** Longs per decision; 8 longs fill a cache line. */
+	private static final int ROW = 8;
+
+	private final int numDecisions;
+	private final AtomicLongArray counts;
+
+	private volatile int minPredictions = DEFAULT_MIN_PREDICTIONS;
+	private volatile double fullContextThreshold = DEFAULT_FULL_CONTEXT_THRESHOLD;
+	private volatile int probeInterval = DEFAULT_PROBE_INTERVAL;
+
+	/**
+	 * @param numDecisions the number of decisions of the parser
+	 */
+	public AdaptivePredictionPolicy(int numDecisions) {
+		if ( numDecisions<0 ) {
+			throw new IllegalArgumentException("numDecisions cannot be negative.");
+		}
+
+		this.numDecisions = numDecisions;
+		this.counts = new AtomicLongArray(numDecisions * ROW);
+	}
+
+	public int getNumberOfDecisions() {
+		return numDecisions;
+	}
+
+	/** Return how many SLL predictions of a decision are needed before it
+	 *  may be predicted with LL alone.
+	 */
+	public int getMinPredictions() {
+		return minPredictions;
+	}
+
+	public void setMinPredictions(int minPredictions) {
+		if ( minPredictions<0 ) {
+			throw new IllegalArgumentException("minPredictions cannot be negative.");
+		}
+		this.minPredictions = minPredictions;
+	}
+
+	/** Return the fraction of SLL predictions of a decision which must fall
+	 *  back to LL before it is predicted with LL alone.
+	 */
+	public double getFullContextThreshold() {
+		return fullContextThreshold;
+	}
+
+	/**
+	 * @param threshold a fraction between 0 and 1; {@code 0} predicts every
+	 * decision with LL alone after {@link #getMinPredictions}, and a value
+	 * above 1 never does
+	 */
+	public void setFullContextThreshold(double threshold) {
+		if ( !(threshold>=0) ) {
+			throw new IllegalArgumentException("The threshold cannot be negative.");
+		}
+		this.fullContextThreshold = threshold;
+	}
+
+	/** Return how often a decision predicted with LL alone is still
+	 *  predicted with SLL first, or {@code 0} if it never is.
+	 */
+	public int getProbeInterval() {
+		return probeInterval;
+	}
+
+	public void setProbeInterval(int probeInterval) {
+		if ( probeInterval<0 ) {
+			throw new IllegalArgumentException("probeInterval cannot be negative.");
+		}
+		this.probeInterval = probeInterval;
+	}
+
+	/** Return the number of predictions of {@code decision} which started
+	 *  with SLL, halved every {@link #DECAY_INTERVAL} predictions.
+	 */
+	public long getPredictions(int decision) {
+		return counts.get(row(decision) + PREDICTIONS);
+	}
+
+	/** Return the number of predictions of {@code decision} which fell
+	 *  back from SLL to LL, halved along with {@link #getPredictions}.
+	 */
+	public long getFallbacks(int decision) {
+		return counts.get(row(decision) + FALLBACKS);
+	}
+
+	/** Return the number of predictions of {@code decision} which skipped
+	 *  SLL.
+	 */
+	public long getFullContextPredictions(int decision) {
+		return counts.get(row(decision) + FULL_CONTEXT_PREDICTIONS);
+	}
+
+	/** Return whether the statistics of {@code decision} call for predicting
+	 *  it with LL alone.
+	 */
+	public boolean isFullContextDecision(int decision) {
+		int row = row(decision);
+		long predictions = counts.get(row + PREDICTIONS);
+		if ( predictions==0 || predictions<minPredictions ) {
+			return false;
+		}
+
+		return counts.get(row + FALLBACKS) >= fullContextThreshold * predictions;
+	}
+
+	/** Set all counters to zero, so every decision is predicted with SLL
+	 *  first until the policy has learned it again.
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+	}
+
+	/**
+	 * Return whether the simulator should predict {@code decision} with LL
+	 * alone. Called once for each prediction which is allowed to fall back
+	 * to LL; if it returns {@code false}, the simulator calls
+	 * {@link #recordPrediction} when the prediction is done.
+	 */
+	boolean predictWithFullContext(int decision) {
+		if ( decision<0 || decision>=numDecisions || !isFullContextDecision(decision) ) {
+			return false;
+		}
+
+		long n = counts.incrementAndGet(row(decision) + FULL_CONTEXT_PREDICTIONS);
+		int probeInterval = this.probeInterval;
+		return probeInterval==0 || n % probeInterval!=0;
+	}
+
+	/** Record a prediction of {@code decision} which started with SLL. */
+	void recordPrediction(int decision, boolean fallback) {
+		if ( decision<0 || decision>=numDecisions ) {
+			return;
+		}
+
+		int row = row(decision);
+		if ( fallback ) {
+			counts.getAndIncrement(row + FALLBACKS);
+		}
+
+		long predictions = counts.incrementAndGet(row + PREDICTIONS);
+		if ( predictions>=Math.max(DECAY_INTERVAL, 2L * minPredictions) ) {
+			// only the thread which halves the predictions halves the fallbacks
+			if ( counts.compareAndSet(row + PREDICTIONS, predictions, predictions / 2) ) {
+				long fallbacks;
+				do {
+					fallbacks = counts.get(row + FALLBACKS);
+				} while ( !counts.compareAndSet(row + FALLBACKS, fallbacks, fallbacks / 2) );
+			}
+		}
+	}
+
+	/** Write the statistics and settings of this policy, learned for
+	 *  {@code atn}, to {@code output}. The stream is flushed but not closed.
+	 */
+	public void write(ATN atn, OutputStream output) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(DFASnapshot.getChecksum(atn));
+		out.writeInt(minPredictions);
+		out.writeDouble(fullContextThreshold);
+		out.writeInt(probeInterval);
+		out.writeInt(numDecisions);
+		for (int d = 0; d < numDecisions; d++) {
+			int row = d * ROW;
+			out.writeLong(counts.get(row + PREDICTIONS));
+			out.writeLong(counts.get(row + FALLBACKS));
+			out.writeLong(counts.get(row + FULL_CONTEXT_PREDICTIONS));
+		}
+		out.flush();
+	}
+
+	/**
+	 * Return a policy with the statistics and settings read from
+	 * {@code input}.
+	 *
+	 * @throws IOException if {@code input} does not hold a policy written
+	 * for {@code atn}, or could not be read.
+	 */
+	public static AdaptivePredictionPolicy read(ATN atn, InputStream input) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+		if ( in.readInt()!=MAGIC ) {
+			throw new IOException("Not an adaptive prediction policy.");
+		}
+
+		int version = in.readInt();
+		if ( version!=VERSION ) {
+			throw new IOException("Could not read a policy with version "+version+" (expected "+VERSION+").");
+		}
+
+		if ( in.readLong()!=DFASnapshot.getChecksum(atn) ) {
+			throw new IOException("The policy was learned for a different ATN.");
+		}
+
+		int minPredictions = in.readInt();
+		double fullContextThreshold = in.readDouble();
+		int probeInterval = in.readInt();
+		int numDecisions = in.readInt();
+		if ( numDecisions!=atn.getNumberOfDecisions() ) {
+			throw new IOException("The policy has "+numDecisions+" decisions, the ATN has "+atn.getNumberOfDecisions()+".");
+		}
+
+		AdaptivePredictionPolicy policy = new AdaptivePredictionPolicy(numDecisions);
+		try {
+			policy.setMinPredictions(minPredictions);
+			policy.setFullContextThreshold(fullContextThreshold);
+			policy.setProbeInterval(probeInterval);
+		}
+		catch (IllegalArgumentException ex) {
+			throw new IOException("Invalid policy settings.", ex);
+		}
+
+		for (int d = 0; d < numDecisions; d++) {
+			int row = d * ROW;
+			policy.counts.set(row + PREDICTIONS, in.readLong());
+			policy.counts.set(row + FALLBACKS, in.readLong());
+			policy.counts.set(row + FULL_CONTEXT_PREDICTIONS, in.readLong());
+		}
+
+		return policy;
+	}
+
+	private int row(int decision) {
+		if ( decision<0 || decision>=numDecisions ) {
+			throw new IndexOutOfBoundsException("decision "+decision+" out of range 0.."+(numDecisions-1));
+		}
+
+		return decision * ROW;
+	}
+}
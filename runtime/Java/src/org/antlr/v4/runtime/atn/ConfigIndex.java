@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import java.util.Arrays;
+
+/**
+ * Finds the configuration of an {@link ATNConfigSet} with the same
+ * {@code (s, i, pi)} as a new one. The keys are kept in primitive arrays
+ * with open addressing: the state number and alternative are packed into a
+ * {@code long}, and each distinct semantic context gets a small integer id,
+ * with 0 for {@link SemanticContext#NONE}. A table only refers to the
+ * configurations by their position in {@link ATNConfigSet#configs}, so
+ * after {@link #clear} it can index the next set without allocating.
+ *
+ * @since 4.9
+ */
+final class ConfigIndex {
+	private static final int MIN_CAPACITY = 16;
+
+	/** The state number in the high word and the alternative in the low word. */
+	private long[] keys;
+	private int[] predicateIds;
+	/** The position of the configuration plus one, or 0 for a free slot. */
+	private int[] slots;
+	private int size;
+
+	/** The semantic context with id {@code i + 1}. */
+	private SemanticContext[] predicates = new SemanticContext[4];
+	private int predicateCount;
+
+	ConfigIndex() {
+		allocate(MIN_CAPACITY);
+	}
+
+	/**
+	 * Return the position of the configuration with the same
+	 * {@code (s, i, pi)} as {@code config}, or record {@code position} for
+	 * it and return -1.
+	 */
+	int getOrAdd(ATNConfig config, int position) {
+		long key = key(config);
+		int predicateId = predicateId(config.semanticContext, true);
+		int mask = slots.length - 1;
+		int i = hash(key, predicateId) & mask;
+		while ( slots[i]!=0 ) {
+			if ( keys[i]==key && predicateIds[i]==predicateId ) {
+				return slots[i] - 1;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		predicateIds[i] = predicateId;
+		slots[i] = position + 1;
+		if ( ++size * 2 > slots.length ) {
+			rehash();
+		}
+
+		return -1;
+	}
+
+	/** Return the position of the configuration with the same
+	 *  {@code (s, i, pi)} as {@code config}, or -1.
+	 */
+	int get(ATNConfig config) {
+		int predicateId = predicateId(config.semanticContext, false);
+		if ( predicateId<0 ) {
+			return -1;
+		}
+
+		long key = key(config);
+		int mask = slots.length - 1;
+		int i = hash(key, predicateId) & mask;
+		while ( slots[i]!=0 ) {
+			if ( keys[i]==key && predicateIds[i]==predicateId ) {
+				return slots[i] - 1;
+			}
+			i = (i + 1) & mask;
+		}
+
+		return -1;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/** Remove all keys, keeping the arrays for the next set. */
+	void clear() {
+		if ( size>0 ) {
+			Arrays.fill(slots, 0);
+			size = 0;
+		}
+
+		Arrays.fill(predicates, 0, predicateCount, null);
+		predicateCount = 0;
+	}
+
+	private int predicateId(SemanticContext semanticContext, boolean add) {
+		if ( semanticContext==SemanticContext.NONE ) {
+			return 0;
+		}
+
+		// a set rarely has more than a few distinct predicates
+		for (int i = 0; i < predicateCount; i++) {
+			if ( predicates[i]==semanticContext || predicates[i].equals(semanticContext) ) {
+				return i + 1;
+			}
+		}
+
+		if ( !add ) {
+			return -1;
+		}
+
+		if ( predicateCount==predicates.length ) {
+			predicates = Arrays.copyOf(predicates, predicateCount * 2);
+		}
+
+		predicates[predicateCount++] = semanticContext;
+		return predicateCount;
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		int[] oldPredicateIds = predicateIds;
+		int[] oldSlots = slots;
+		allocate(oldSlots.length * 2);
+		int mask = slots.length - 1;
+		for (int j = 0; j < oldSlots.length; j++) {
+			if ( oldSlots[j]==0 ) {
+				continue;
+			}
+
+			int i = hash(oldKeys[j], oldPredicateIds[j]) & mask;
+			while ( slots[i]!=0 ) {
+				i = (i + 1) & mask;
+			}
+
+			keys[i] = oldKeys[j];
+			predicateIds[i] = oldPredicateIds[j];
+			slots[i] = oldSlots[j];
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		predicateIds = new int[capacity];
+		slots = new int[capacity];
+	}
+
+	private static long key(ATNConfig config) {
+		return ((long)config.state.stateNumber << 32) | (config.alt & 0xFFFFFFFFL);
+	}
+
+	private static int hash(long key, int predicateId) {
+		int h = ((int)(key >>> 32) * 31 + (int)key) * 31 + predicateId;
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
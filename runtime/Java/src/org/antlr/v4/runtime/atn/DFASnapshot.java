@@ -0,0 +1,623 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.dfa.SparseEdgeMap;
+import org.antlr.v4.runtime.misc.IntegerList;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Saves the DFA cache of a recognizer to a compact binary form and loads it
+ * back, so that a new process can start predicting from a warm DFA instead of
+ * rebuilding it through ATN simulation.
+ *
+ * <p>A snapshot records every DFA state along with its ATN configurations,
+ * since the simulator still needs them to add edges which were not cached
+ * when the snapshot was taken. It is only valid for the exact ATN it was
+ * taken from; {@link #read} checks this with a checksum of the
+ * {@link ATNSerializer} output and rejects snapshots of any other ATN.</p>
+ *
+ * <pre>
+ * DFASnapshot.write(parser.getATN(), parser.getInterpreter().decisionToDFA, out);
+ * ...
+ * DFASnapshot.read(parser.getATN(), parser.getInterpreter().decisionToDFA,
+ *                  parser.getInterpreter().getSharedContextCache(), in);
+ * </pre>
+ *
+ * @since 4.9
+ */
+public class DFASnapshot {
+	/** "ADFA" */
+	public static final int MAGIC = 0x41444641;
+	public static final int VERSION = 1;
+
+	private static final int NO_STATE = -1;
+	private static final int NULL_CONTEXT = -1;
+	private static final int INDEXED_CUSTOM_ACTION = -1;
+
+	private static final int SEMCTX_NONE = 0;
+	private static final int SEMCTX_PREDICATE = 1;
+	private static final int SEMCTX_PRECEDENCE = 2;
+	private static final int SEMCTX_AND = 3;
+	private static final int SEMCTX_OR = 4;
+
+	private static final int ACCEPT_STATE = 1;
+	private static final int REQUIRES_FULL_CONTEXT = 2;
+	private static final int HAS_SEMANTIC_CONTEXT = 4;
+	private static final int DIPS_INTO_OUTER_CONTEXT = 8;
+	private static final int FULL_CONTEXT = 16;
+
+	/** Compute the checksum identifying the ATN a snapshot belongs to. */
+	public static long getChecksum(ATN atn) {
+		IntegerList serialized = ATNSerializer.getSerialized(atn);
+		CRC32 crc = new CRC32();
+		for (int i = 0; i < serialized.size(); i++) {
+			int value = serialized.get(i);
+			crc.update(value >>> 24);
+			crc.update(value >>> 16);
+			crc.update(value >>> 8);
+			crc.update(value);
+		}
+		return crc.getValue();
+	}
+
+	/** Write the DFAs in {@code decisionToDFA}, which were built for
+	 *  {@code atn}, to {@code output}. The stream is flushed but not closed.
+	 *  Other threads may keep using the DFAs while they are written.
+	 */
+	public static void write(ATN atn, DFA[] decisionToDFA, OutputStream output) throws IOException {
+		new Writer(atn, new DataOutputStream(new BufferedOutputStream(output))).write(decisionToDFA);
+	}
+
+	/** Replace the DFAs in {@code decisionToDFA} with those read from
+	 *  {@code input}. Nothing is replaced unless the whole snapshot is read
+	 *  successfully.
+	 *
+	 *  @param sharedContextCache if not {@code null}, prediction contexts
+	 *  are interned in this cache as they are read, as if the states had
+	 *  been added by the simulator.
+	 *
+	 *  @throws IOException if {@code input} does not hold a snapshot of
+	 *  {@code atn}, or could not be read.
+	 */
+	public static void read(ATN atn, DFA[] decisionToDFA,
+							PredictionContextCache sharedContextCache,
+							InputStream input) throws IOException
+	{
+		DFA[] loaded = new Reader(atn, sharedContextCache, new DataInputStream(new BufferedInputStream(input))).read(decisionToDFA.length);
+		System.arraycopy(loaded, 0, decisionToDFA, 0, loaded.length);
+	}
+
+	private static class Writer {
+		private final ATN atn;
+		private final DataOutputStream out;
+		private final Map<PredictionContext, Integer> contextIds =
+			new IdentityHashMap<PredictionContext, Integer>();
+		private final List<PredictionContext> contexts = new ArrayList<PredictionContext>();
+		private final Map<DFAState, Boolean> writtenStates = new IdentityHashMap<DFAState, Boolean>();
+
+		Writer(ATN atn, DataOutputStream out) {
+			this.atn = atn;
+			this.out = out;
+		}
+
+		void write(DFA[] decisionToDFA) throws IOException {
+			// take a stable copy of each DFA's states before writing anything
+			List<List<DFAState>> dfaStates = new ArrayList<List<DFAState>>(decisionToDFA.length);
+			for (DFA dfa : decisionToDFA) {
+				List<DFAState> states = dfa.getStates();
+				dfaStates.add(states);
+				if ( dfa.isPrecedenceDfa() ) addContexts(dfa.s0.configs);
+				for (DFAState s : states) addContexts(s.configs);
+			}
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(getChecksum(atn));
+			out.writeInt(atn.grammarType.ordinal());
+			out.writeInt(decisionToDFA.length);
+
+			out.writeInt(contexts.size());
+			for (PredictionContext context : contexts) {
+				writeContext(context);
+			}
+
+			for (int d = 0; d < decisionToDFA.length; d++) {
+				writeDFA(decisionToDFA[d], dfaStates.get(d));
+			}
+
+			out.flush();
+		}
+
+		/** Number the context graph in post-order so that parents are
+		 *  always written before the contexts referring to them.
+		 */
+		void addContexts(ATNConfigSet configs) {
+			if ( configs==null ) return;
+			for (ATNConfig c : configs) addContext(c.context);
+		}
+
+		void addContext(PredictionContext context) {
+			if ( context==null || contextIds.containsKey(context) ) return;
+			for (int i = 0; i < context.size(); i++) {
+				addContext(context.getParent(i));
+			}
+			contextIds.put(context, contexts.size());
+			contexts.add(context);
+		}
+
+		int getContextId(PredictionContext context) {
+			return context==null ? NULL_CONTEXT : contextIds.get(context);
+		}
+
+		void writeContext(PredictionContext context) throws IOException {
+			if ( context==PredictionContext.EMPTY ) {
+				out.writeInt(0);
+				return;
+			}
+
+			out.writeInt(context.size());
+			for (int i = 0; i < context.size(); i++) {
+				out.writeInt(getContextId(context.getParent(i)));
+				out.writeInt(context.getReturnState(i));
+			}
+		}
+
+		void writeDFA(DFA dfa, List<DFAState> states) throws IOException {
+			writtenStates.clear();
+			for (DFAState s : states) writtenStates.put(s, Boolean.TRUE);
+
+			out.writeInt(dfa.decision);
+			out.writeBoolean(dfa.isPrecedenceDfa());
+			out.writeInt(states.size());
+			for (DFAState s : states) {
+				out.writeInt(s.stateNumber);
+				writeState(s);
+			}
+
+			for (DFAState s : states) {
+				writeEdges(s);
+			}
+
+			if ( dfa.isPrecedenceDfa() ) {
+				writeConfigs(dfa.s0.configs);
+				writeEdges(dfa.s0);
+			}
+			else {
+				DFAState s0 = dfa.s0;
+				out.writeInt(isWritten(s0) ? s0.stateNumber : NO_STATE);
+			}
+		}
+
+		void writeState(DFAState s) throws IOException {
+			int flags = 0;
+			if ( s.isAcceptState ) flags |= ACCEPT_STATE;
+			if ( s.requiresFullContext ) flags |= REQUIRES_FULL_CONTEXT;
+			out.writeInt(flags);
+			out.writeInt(s.prediction);
+			writeLexerActionExecutor(s.lexerActionExecutor);
+			if ( s.predicates==null ) {
+				out.writeInt(-1);
+			}
+			else {
+				out.writeInt(s.predicates.length);
+				for (DFAState.PredPrediction p : s.predicates) {
+					writeSemanticContext(p.pred);
+					out.writeInt(p.alt);
+				}
+			}
+
+			writeConfigs(s.configs);
+		}
+
+		void writeConfigs(ATNConfigSet configs) throws IOException {
+			int flags = 0;
+			if ( configs.hasSemanticContext ) flags |= HAS_SEMANTIC_CONTEXT;
+			if ( configs.dipsIntoOuterContext ) flags |= DIPS_INTO_OUTER_CONTEXT;
+			if ( configs.fullCtx ) flags |= FULL_CONTEXT;
+			out.writeInt(flags);
+			out.writeInt(configs.uniqueAlt);
+			long[] conflictingAlts = configs.conflictingAlts!=null ? configs.conflictingAlts.toLongArray() : null;
+			if ( conflictingAlts==null ) {
+				out.writeInt(-1);
+			}
+			else {
+				out.writeInt(conflictingAlts.length);
+				for (long word : conflictingAlts) out.writeLong(word);
+			}
+
+			out.writeInt(configs.size());
+			for (ATNConfig c : configs) {
+				out.writeInt(c.state.stateNumber);
+				out.writeInt(c.alt);
+				out.writeInt(getContextId(c.context));
+				out.writeInt(c.reachesIntoOuterContext);
+				writeSemanticContext(c.semanticContext);
+				if ( c instanceof LexerATNConfig ) {
+					LexerATNConfig lc = (LexerATNConfig)c;
+					out.writeBoolean(lc.hasPassedThroughNonGreedyDecision());
+					writeLexerActionExecutor(lc.getLexerActionExecutor());
+				}
+			}
+		}
+
+		/** Edges to states added after {@link #write} took its copy of the
+		 *  DFA are left out.
+		 */
+		void writeEdges(DFAState s) throws IOException {
+			DFAState[] edges = s.edges;
+			if ( edges==null ) {
+				out.writeInt(-1);
+			}
+			else {
+				IntegerList indexes = new IntegerList();
+				for (int i = 0; i < edges.length; i++) {
+					if ( isWritten(edges[i]) ) indexes.add(i);
+				}
+
+				out.writeInt(edges.length);
+				out.writeInt(indexes.size());
+				for (int i = 0; i < indexes.size(); i++) {
+					out.writeInt(indexes.get(i));
+					out.writeInt(edges[indexes.get(i)].stateNumber);
+				}
+			}
+
+			SparseEdgeMap sparseEdges = s.sparseEdges;
+			if ( sparseEdges==null ) {
+				out.writeInt(-1);
+				return;
+			}
+
+			List<Interval> ranges = sparseEdges.getRanges();
+			List<DFAState> targets = sparseEdges.getTargets();
+			IntegerList indexes = new IntegerList();
+			for (int i = 0; i < ranges.size(); i++) {
+				if ( isWritten(targets.get(i)) ) indexes.add(i);
+			}
+
+			out.writeInt(indexes.size());
+			for (int i = 0; i < indexes.size(); i++) {
+				out.writeInt(ranges.get(indexes.get(i)).a);
+				out.writeInt(ranges.get(indexes.get(i)).b);
+				out.writeInt(targets.get(indexes.get(i)).stateNumber);
+			}
+		}
+
+		boolean isWritten(DFAState s) {
+			return s!=null && (s==ATNSimulator.ERROR || writtenStates.containsKey(s));
+		}
+
+		void writeSemanticContext(SemanticContext semctx) throws IOException {
+			if ( semctx==SemanticContext.NONE ) {
+				out.writeByte(SEMCTX_NONE);
+			}
+			else if ( semctx instanceof SemanticContext.Predicate ) {
+				SemanticContext.Predicate pred = (SemanticContext.Predicate)semctx;
+				out.writeByte(SEMCTX_PREDICATE);
+				out.writeInt(pred.ruleIndex);
+				out.writeInt(pred.predIndex);
+				out.writeBoolean(pred.isCtxDependent);
+			}
+			else if ( semctx instanceof SemanticContext.PrecedencePredicate ) {
+				out.writeByte(SEMCTX_PRECEDENCE);
+				out.writeInt(((SemanticContext.PrecedencePredicate)semctx).precedence);
+			}
+			else if ( semctx instanceof SemanticContext.Operator ) {
+				out.writeByte(semctx instanceof SemanticContext.AND ? SEMCTX_AND : SEMCTX_OR);
+				Collection<SemanticContext> operands = ((SemanticContext.Operator)semctx).getOperands();
+				out.writeInt(operands.size());
+				for (SemanticContext operand : operands) {
+					writeSemanticContext(operand);
+				}
+			}
+			else {
+				throw new IllegalArgumentException("Unsupported semantic context: "+semctx.getClass().getName());
+			}
+		}
+
+		void writeLexerActionExecutor(LexerActionExecutor executor) throws IOException {
+			if ( executor==null ) {
+				out.writeInt(-1);
+				return;
+			}
+
+			LexerAction[] actions = executor.getLexerActions();
+			out.writeInt(actions.length);
+			for (LexerAction action : actions) {
+				if ( action instanceof LexerIndexedCustomAction ) {
+					LexerIndexedCustomAction indexed = (LexerIndexedCustomAction)action;
+					out.writeInt(INDEXED_CUSTOM_ACTION);
+					out.writeInt(indexed.getOffset());
+					out.writeInt(getLexerActionIndex(indexed.getAction()));
+				}
+				else {
+					out.writeInt(getLexerActionIndex(action));
+				}
+			}
+		}
+
+		int getLexerActionIndex(LexerAction action) {
+			int index = Arrays.asList(atn.lexerActions).indexOf(action);
+			if ( index<0 ) {
+				throw new IllegalArgumentException("Lexer action is not part of the ATN: "+action);
+			}
+			return index;
+		}
+	}
+
+	private static class Reader {
+		private final ATN atn;
+		private final PredictionContextCache sharedContextCache;
+		private final DataInputStream in;
+		private PredictionContext[] contexts;
+
+		Reader(ATN atn, PredictionContextCache sharedContextCache, DataInputStream in) {
+			this.atn = atn;
+			this.sharedContextCache = sharedContextCache;
+			this.in = in;
+		}
+
+		DFA[] read(int numberOfDFAs) throws IOException {
+			if ( in.readInt()!=MAGIC ) {
+				throw new IOException("Input is not a DFA snapshot.");
+			}
+
+			int version = in.readInt();
+			if ( version!=VERSION ) {
+				throw new IOException("Could not read DFA snapshot version "+version+" (expected "+VERSION+").");
+			}
+
+			if ( in.readLong()!=getChecksum(atn) || in.readInt()!=atn.grammarType.ordinal() ) {
+				throw new IOException("The DFA snapshot was not created for this ATN.");
+			}
+
+			int n = in.readInt();
+			if ( n!=numberOfDFAs ) {
+				throw new IOException("The DFA snapshot holds "+n+" DFAs, expected "+numberOfDFAs+".");
+			}
+
+			contexts = new PredictionContext[in.readInt()];
+			for (int i = 0; i < contexts.length; i++) {
+				contexts[i] = readContext();
+			}
+
+			DFA[] result = new DFA[n];
+			for (int d = 0; d < n; d++) {
+				result[d] = readDFA();
+			}
+
+			return result;
+		}
+
+		PredictionContext readContext() throws IOException {
+			int size = in.readInt();
+			PredictionContext context;
+			if ( size==0 ) {
+				return PredictionContext.EMPTY;
+			}
+			else if ( size==1 ) {
+				PredictionContext parent = getContext(in.readInt());
+				context = SingletonPredictionContext.create(parent, in.readInt());
+			}
+			else {
+				PredictionContext[] parents = new PredictionContext[size];
+				int[] returnStates = new int[size];
+				for (int i = 0; i < size; i++) {
+					parents[i] = getContext(in.readInt());
+					returnStates[i] = in.readInt();
+				}
+				context = new ArrayPredictionContext(parents, returnStates);
+			}
+
+			if ( sharedContextCache!=null ) {
+				context = sharedContextCache.add(context);
+			}
+
+			return context;
+		}
+
+		PredictionContext getContext(int id) {
+			return id==NULL_CONTEXT ? null : contexts[id];
+		}
+
+		DFA readDFA() throws IOException {
+			int decision = in.readInt();
+			boolean precedenceDfa = in.readBoolean();
+			DFA dfa = new DFA(atn.getDecisionState(decision), decision);
+			if ( dfa.isPrecedenceDfa()!=precedenceDfa ) {
+				throw new IOException("The DFA snapshot was not created for this ATN.");
+			}
+
+			int n = in.readInt();
+			Map<Integer, DFAState> states = new HashMap<Integer, DFAState>(n * 2);
+			List<DFAState> ordered = new ArrayList<DFAState>(n);
+			states.put(ATNSimulator.ERROR.stateNumber, ATNSimulator.ERROR);
+			for (int i = 0; i < n; i++) {
+				int stateNumber = in.readInt();
+				DFAState s = readState();
+				states.put(stateNumber, s);
+				ordered.add(s);
+			}
+
+			for (DFAState s : ordered) {
+				readEdges(s, states);
+			}
+
+			// states were written in order, so they keep their relative numbering
+			for (DFAState s : ordered) {
+				if ( dfa.addState(s)!=s ) {
+					throw new IOException("The DFA snapshot contains duplicate states.");
+				}
+			}
+
+			if ( precedenceDfa ) {
+				dfa.s0.configs = readConfigs();
+				readEdges(dfa.s0, states);
+			}
+			else {
+				int s0 = in.readInt();
+				if ( s0!=NO_STATE ) dfa.s0 = getState(states, s0);
+			}
+
+			return dfa;
+		}
+
+		DFAState readState() throws IOException {
+			DFAState s = new DFAState();
+			int flags = in.readInt();
+			s.isAcceptState = (flags & ACCEPT_STATE)!=0;
+			s.requiresFullContext = (flags & REQUIRES_FULL_CONTEXT)!=0;
+			s.prediction = in.readInt();
+			s.lexerActionExecutor = readLexerActionExecutor();
+			int predicates = in.readInt();
+			if ( predicates>=0 ) {
+				s.predicates = new DFAState.PredPrediction[predicates];
+				for (int i = 0; i < predicates; i++) {
+					SemanticContext pred = readSemanticContext();
+					s.predicates[i] = new DFAState.PredPrediction(pred, in.readInt());
+				}
+			}
+
+			s.configs = readConfigs();
+			return s;
+		}
+
+		ATNConfigSet readConfigs() throws IOException {
+			int flags = in.readInt();
+			boolean lexer = atn.grammarType==ATNType.LEXER;
+			ATNConfigSet configs = lexer ? new OrderedATNConfigSet() : new ATNConfigSet((flags & FULL_CONTEXT)!=0);
+			int uniqueAlt = in.readInt();
+			int words = in.readInt();
+			BitSet conflictingAlts = null;
+			if ( words>=0 ) {
+				long[] bits = new long[words];
+				for (int i = 0; i < words; i++) bits[i] = in.readLong();
+				conflictingAlts = BitSet.valueOf(bits);
+			}
+
+			int n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				ATNState state = atn.states.get(in.readInt());
+				int alt = in.readInt();
+				PredictionContext context = getContext(in.readInt());
+				int reachesIntoOuterContext = in.readInt();
+				SemanticContext semanticContext = readSemanticContext();
+				ATNConfig c;
+				if ( lexer ) {
+					boolean passedThroughNonGreedyDecision = in.readBoolean();
+					c = new LexerATNConfig(state, alt, context, readLexerActionExecutor(), passedThroughNonGreedyDecision);
+				}
+				else {
+					c = new ATNConfig(state, alt, context, semanticContext);
+				}
+
+				c.reachesIntoOuterContext = reachesIntoOuterContext;
+				configs.add(c);
+			}
+
+			configs.uniqueAlt = uniqueAlt;
+			configs.conflictingAlts = conflictingAlts;
+			configs.hasSemanticContext = (flags & HAS_SEMANTIC_CONTEXT)!=0;
+			configs.dipsIntoOuterContext = (flags & DIPS_INTO_OUTER_CONTEXT)!=0;
+			configs.setReadonly(true);
+			return configs;
+		}
+
+		void readEdges(DFAState s, Map<Integer, DFAState> states) throws IOException {
+			int length = in.readInt();
+			if ( length>=0 ) {
+				DFAState[] edges = new DFAState[length];
+				int n = in.readInt();
+				for (int i = 0; i < n; i++) {
+					int index = in.readInt();
+					edges[index] = getState(states, in.readInt());
+				}
+				s.edges = edges;
+			}
+
+			int n = in.readInt();
+			SparseEdgeMap sparseEdges = n>=0 ? SparseEdgeMap.EMPTY : null;
+			for (int i = 0; i < n; i++) {
+				int a = in.readInt();
+				int b = in.readInt();
+				sparseEdges = sparseEdges.put(a, b, getState(states, in.readInt()));
+			}
+			s.sparseEdges = sparseEdges;
+		}
+
+		DFAState getState(Map<Integer, DFAState> states, int stateNumber) throws IOException {
+			DFAState s = states.get(stateNumber);
+			if ( s==null ) {
+				throw new IOException("The DFA snapshot refers to missing state "+stateNumber+".");
+			}
+			return s;
+		}
+
+		SemanticContext readSemanticContext() throws IOException {
+			int type = in.readByte();
+			switch (type) {
+				case SEMCTX_NONE:
+					return SemanticContext.NONE;
+				case SEMCTX_PREDICATE:
+					int ruleIndex = in.readInt();
+					int predIndex = in.readInt();
+					return new SemanticContext.Predicate(ruleIndex, predIndex, in.readBoolean());
+				case SEMCTX_PRECEDENCE:
+					return new SemanticContext.PrecedencePredicate(in.readInt());
+				case SEMCTX_AND:
+				case SEMCTX_OR:
+					int n = in.readInt();
+					SemanticContext result = readSemanticContext();
+					for (int i = 1; i < n; i++) {
+						SemanticContext operand = readSemanticContext();
+						result = type==SEMCTX_AND ? new SemanticContext.AND(result, operand) : new SemanticContext.OR(result, operand);
+					}
+					return result;
+				default:
+					throw new IOException("Invalid semantic context type "+type+" in DFA snapshot.");
+			}
+		}
+
+		LexerActionExecutor readLexerActionExecutor() throws IOException {
+			int n = in.readInt();
+			if ( n<0 ) return null;
+
+			LexerAction[] actions = new LexerAction[n];
+			for (int i = 0; i < n; i++) {
+				int index = in.readInt();
+				if ( index==INDEXED_CUSTOM_ACTION ) {
+					int offset = in.readInt();
+					actions[i] = new LexerIndexedCustomAction(offset, atn.lexerActions[in.readInt()]);
+				}
+				else {
+					actions[i] = atn.lexerActions[index];
+				}
+			}
+			return new LexerActionExecutor(actions);
+		}
+	}
+}
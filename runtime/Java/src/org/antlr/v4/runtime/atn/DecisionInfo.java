@@ -186,6 +186,20 @@ public class DecisionInfo {
 	 */
 	public long LL_Fallback;
 
+	/**
+	 * Gets the total number of times this decision was predicted with LL
+	 * prediction alone, without SLL prediction first, because an
+	 * {@link AdaptivePredictionPolicy} found that SLL prediction usually
+	 * falls back to LL prediction for it. These predictions are not counted
+	 * in {@link #LL_Fallback}, and their context sensitivities are not
+	 * recorded, since it is not known how SLL prediction would have resolved
+	 * them.
+	 *
+	 * @see ParserATNSimulator#setAdaptivePolicy
+	 * @since 4.9
+	 */
+	public long LL_Direct;
+
 	/**
 	 * The total number of ATN transitions required during LL prediction for
 	 * this decision. An ATN transition is determined by the number of times the
@@ -237,6 +251,7 @@ public class DecisionInfo {
 			   ", SLL_ATNTransitions=" + SLL_ATNTransitions +
 			   ", SLL_DFATransitions=" + SLL_DFATransitions +
 			   ", LL_Fallback=" + LL_Fallback +
+			   ", LL_Direct=" + LL_Direct +
 			   ", LL_lookahead=" + LL_TotalLook +
 			   ", LL_ATNTransitions=" + LL_ATNTransitions +
 			   '}';
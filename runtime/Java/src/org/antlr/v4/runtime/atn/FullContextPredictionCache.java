@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.TokenStream;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the alternatives predicted by full-context (LL) prediction.
+ * The DFA does not store them because they depend on the invoking rules, so
+ * without this cache a {@link ParserATNSimulator} repeats the full-context
+ * simulation every time SLL prediction finds the same conflict. Set it with
+ * {@link ParserATNSimulator#setFullContextCache}.
+ *
+ * <p>A full-context prediction depends only on the decision, the
+ * {@link PredictionMode}, the invoking states of the outer context, and the
+ * tokens the simulation looked at. The cache keeps the types of those tokens
+ * for each prediction, and a later prediction with the same key reuses the
+ * alternative if its input starts with the same types. Predictions which
+ * evaluated a semantic predicate are not cached, since predicates may depend
+ * on the state of the parser.</p>
+ *
+ * <p>A prediction found in the cache is not reported again to
+ * {@link ParserATNSimulator#reportContextSensitivity} or
+ * {@link ParserATNSimulator#reportAmbiguity}; use no cache while collecting
+ * those diagnostics.</p>
+ *
+ * <p>The cache is thread-safe, so one instance can serve all parsers of a
+ * grammar. When the number of predictions exceeds {@link #getMaxSize}, the
+ * cache is emptied.</p>
+ *
+ * @since 4.9
+ */
+public class FullContextPredictionCache {
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	private final ConcurrentMap<Key, Entry[]> predictions = new ConcurrentHashMap<Key, Entry[]>();
+
+	/** The number of entries in {@link #predictions}. */
+	private final AtomicInteger size = new AtomicInteger();
+
+	private volatile int maxSize;
+
+	/** Set while one thread empties the cache; other threads keep adding. */
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	public FullContextPredictionCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize The maximum number of predictions, at least 1
+	 */
+	public FullContextPredictionCache(int maxSize) {
+		setMaxSize(maxSize);
+	}
+
+	/**
+	 * Return the alternative predicted for {@code decision} in
+	 * {@code outerContext} when the input at {@code startIndex} was the same,
+	 * or {@link ATN#INVALID_ALT_NUMBER}. This method moves {@code input}.
+	 */
+	public int get(int decision, PredictionMode mode, RuleContext outerContext,
+				   TokenStream input, int startIndex)
+	{
+		Entry[] entries = predictions.get(new Key(decision, mode, outerContext));
+		if ( entries!=null ) {
+			for (Entry entry : entries) {
+				if ( entry.matches(input, startIndex) ) {
+					hitCount.incrementAndGet();
+					return entry.alt;
+				}
+			}
+		}
+
+		missCount.incrementAndGet();
+		return ATN.INVALID_ALT_NUMBER;
+	}
+
+	/**
+	 * Record that {@code alt} was predicted for {@code decision} in
+	 * {@code outerContext}, looking at {@code lookahead} tokens from
+	 * {@code startIndex}. Like {@link TokenStream#LA}, these are counted on
+	 * the channel of {@code input}. This method moves {@code input}.
+	 */
+	public void put(int decision, PredictionMode mode, RuleContext outerContext,
+					TokenStream input, int startIndex, int lookahead, int alt)
+	{
+		if ( size.get()>=maxSize ) {
+			evict();
+		}
+
+		int[] tokenTypes = new int[lookahead];
+		input.seek(startIndex);
+		for (int i = 0; i < tokenTypes.length; i++) {
+			tokenTypes[i] = input.LA(i + 1);
+		}
+
+		Key key = new Key(decision, mode, outerContext);
+		Entry[] added = new Entry[] { new Entry(tokenTypes, alt) };
+		while ( true ) {
+			Entry[] entries = predictions.putIfAbsent(key, added);
+			if ( entries==null ) {
+				break;
+			}
+
+			// another thread may have added the same prediction
+			for (Entry entry : entries) {
+				if ( Arrays.equals(entry.tokenTypes, tokenTypes) ) {
+					return;
+				}
+			}
+
+			Entry[] updated = Arrays.copyOf(entries, entries.length + 1);
+			updated[entries.length] = added[0];
+			if ( predictions.replace(key, entries, updated) ) {
+				break;
+			}
+		}
+
+		size.incrementAndGet();
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Limit the number of predictions held by this cache. When a new
+	 * prediction would exceed the limit the cache is emptied first.
+	 *
+	 * @param maxSize The maximum number of predictions, at least 1
+	 */
+	public void setMaxSize(int maxSize) {
+		if ( maxSize<1 ) {
+			throw new IllegalArgumentException("maxSize must be at least 1.");
+		}
+		this.maxSize = maxSize;
+	}
+
+	/** Gets the number of lookups which found a prediction. */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/** Gets the number of lookups which found no prediction. */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/** Gets the number of predictions dropped because of {@link #setMaxSize}. */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/** Empty the cache unless another thread is already doing so. */
+	private void evict() {
+		if ( !evicting.compareAndSet(false, true) ) {
+			return;
+		}
+
+		try {
+			int removed = 0;
+			for (Key key : predictions.keySet()) {
+				Entry[] entries = predictions.remove(key);
+				if ( entries!=null ) {
+					removed += entries.length;
+				}
+			}
+
+			size.addAndGet(-removed);
+			evictionCount.addAndGet(removed);
+		}
+		finally {
+			evicting.set(false);
+		}
+	}
+
+	/** A decision in a prediction mode and an outer context, represented
+	 *  by the invoking states from the outer context up to the start rule.
+	 */
+	private static final class Key {
+		private final int decision;
+		private final PredictionMode mode;
+		private final int[] invokingStates;
+		private final int hashCode;
+
+		Key(int decision, PredictionMode mode, RuleContext outerContext) {
+			this.decision = decision;
+			this.mode = mode;
+
+			int depth = 0;
+			for (RuleContext p = outerContext; p!=null && p.parent!=null; p = p.parent) {
+				depth++;
+			}
+
+			invokingStates = new int[depth];
+			int i = 0;
+			for (RuleContext p = outerContext; p!=null && p.parent!=null; p = p.parent) {
+				invokingStates[i++] = p.invokingState;
+			}
+
+			hashCode = (31 * decision + mode.ordinal()) * 31 + Arrays.hashCode(invokingStates);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if ( obj==this ) {
+				return true;
+			}
+			else if ( !(obj instanceof Key) ) {
+				return false;
+			}
+
+			Key other = (Key)obj;
+			return hashCode==other.hashCode
+				&& decision==other.decision
+				&& mode==other.mode
+				&& Arrays.equals(invokingStates, other.invokingStates);
+		}
+	}
+
+	/** The types of the tokens a prediction looked at, and its result. */
+	private static final class Entry {
+		final int[] tokenTypes;
+		final int alt;
+
+		Entry(int[] tokenTypes, int alt) {
+			this.tokenTypes = tokenTypes;
+			this.alt = alt;
+		}
+
+		boolean matches(TokenStream input, int startIndex) {
+			input.seek(startIndex);
+			for (int i = 0; i < tokenTypes.length; i++) {
+				if ( input.LA(i + 1)!=tokenTypes[i] ) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+}
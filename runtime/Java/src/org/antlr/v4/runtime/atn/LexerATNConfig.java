@@ -36,6 +36,18 @@ public class LexerATNConfig extends ATNConfig {
 		this.passedThroughNonGreedyDecision = false;
 	}
 
+	/** Restores a configuration saved by {@link DFASnapshot}. */
+	LexerATNConfig(ATNState state,
+				   int alt,
+				   PredictionContext context,
+				   LexerActionExecutor lexerActionExecutor,
+				   boolean passedThroughNonGreedyDecision)
+	{
+		super(state, alt, context, SemanticContext.NONE);
+		this.lexerActionExecutor = lexerActionExecutor;
+		this.passedThroughNonGreedyDecision = passedThroughNonGreedyDecision;
+	}
+
 	public LexerATNConfig(LexerATNConfig c, ATNState state) {
 		super(c, state, c.context, c.semanticContext);
 		this.lexerActionExecutor = c.lexerActionExecutor;
@@ -13,17 +13,39 @@ import org.antlr.v4.runtime.LexerNoViableAltException;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.dfa.SparseEdgeMap;
 import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.runtime.misc.IntervalSet;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
 
 /** "dup" of ParserInterpreter */
 public class LexerATNSimulator extends ATNSimulator {
 	public static final boolean debug = false;
 	public static final boolean dfa_debug = false;
 
+	/** Edges on {@code MIN_DFA_EDGE..MAX_DFA_EDGE} are stored in the dense
+	 *  {@link DFAState#edges} table; edges on larger code points are stored
+	 *  by range in {@link DFAState#sparseEdges}.
+	 */
 	public static final int MIN_DFA_EDGE = 0;
-	public static final int MAX_DFA_EDGE = 127; // forces unicode to stay in ATN
+	public static final int MAX_DFA_EDGE = 127;
+
+	/** The maximum number of code point ranges cached in
+	 *  {@link DFAState#sparseEdges} for a single DFA state. Once a state
+	 *  reaches this limit, further non-ASCII input leaving that state is
+	 *  matched through the ATN.
+	 *
+	 * @since 4.9
+	 */
+	public static final int MAX_SPARSE_DFA_EDGES = 1024;
 
 	/** When we hit an accept state in either the DFA or the ATN, we
 	 *  have to notify the character stream to start buffering characters
@@ -78,6 +100,21 @@ public class LexerATNSimulator extends ATNSimulator {
 
 	protected final SimState prevAccept = new SimState();
 
+	/** Counters for {@link #metrics}, reset for each token. */
+	private int steps;
+	private int atnSteps;
+	private int statesAdded;
+
+	/** See {@link #setMetrics}. */
+	protected PredictionMetrics metrics;
+
+	/** The states of each mode's DFA, by number, for the scanner of
+	 *  {@link #getDirectTarget}; an empty array for modes without one.
+	 *  Built on the first token of each mode.
+	 */
+	private DFAState[][] directStates;
+	private int[] directStart;
+
 	public LexerATNSimulator(ATN atn, DFA[] decisionToDFA,
 							 PredictionContextCache sharedContextCache)
 	{
@@ -103,9 +140,21 @@ public class LexerATNSimulator extends ATNSimulator {
 	public int match(CharStream input, int mode) {
 		this.mode = mode;
 		int mark = input.mark();
+		PredictionMetrics metrics = this.metrics;
+		long startTime = 0;
+		if (metrics != null) {
+			steps = atnSteps = statesAdded = 0;
+			startTime = metrics.startTime();
+		}
+
 		try {
 			this.startIndex = input.index();
 			this.prevAccept.reset();
+			DFAState[] states = getDirectStates(mode);
+			if ( states.length>0 ) {
+				return execDirect(input, states, directStart[mode]);
+			}
+
 			DFA dfa = decisionToDFA[mode];
 			if ( dfa.s0==null ) {
 				return matchATN(input);
@@ -115,10 +164,39 @@ public class LexerATNSimulator extends ATNSimulator {
 			}
 		}
 		finally {
+			if (metrics != null) {
+				metrics.record(mode, steps, atnSteps, 0, statesAdded);
+				metrics.checkTime(startTime, recog, mode, startIndex, startIndex + Math.max(1, steps) - 1);
+			}
 			input.release(mark);
 		}
 	}
 
+	/**
+	 * Return the metrics updated by this simulator, or {@code null} if
+	 * there are none.
+	 *
+	 * @since 4.9
+	 */
+	public PredictionMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set the metrics updated for each token, or {@code null} to stop
+	 * collecting them. {@code metrics} needs a counter for each mode of the
+	 * ATN and may be shared with other simulators.
+	 *
+	 * @since 4.9
+	 */
+	public void setMetrics(PredictionMetrics metrics) {
+		if (metrics != null && metrics.getNumberOfDecisions() < atn.modeToStartState.size()) {
+			throw new IllegalArgumentException("The metrics have fewer decisions than the ATN has modes.");
+		}
+
+		this.metrics = metrics;
+	}
+
 	@Override
 	public void reset() {
 		prevAccept.reset();
@@ -131,8 +209,98 @@ public class LexerATNSimulator extends ATNSimulator {
 	@Override
 	public void clearDFA() {
 		for (int d = 0; d < decisionToDFA.length; d++) {
-			decisionToDFA[d] = new DFA(atn.getDecisionState(d), d);
+			DFA dfa = new DFA(atn.getDecisionState(d), d);
+			if ( decisionToDFA[d]!=null ) dfa.setMaxStates(decisionToDFA[d].getMaxStates());
+			decisionToDFA[d] = dfa;
 		}
+		directStates = null;
+	}
+
+	/**
+	 * Build the DFA of {@code mode} ahead of time: starting from the start
+	 * state, compute the edges for all code points of every reachable
+	 * state. As when matching input, edges which depend on a predicate are
+	 * left out, and at most {@link #MAX_SPARSE_DFA_EDGES} ranges above
+	 * {@link #MAX_DFA_EDGE} are kept per state. Position-dependent lexer
+	 * actions are fixed as if each state were reached by its shortest path
+	 * from the start state. Predicates are not evaluated, so this simulator
+	 * should have no recognizer.
+	 *
+	 * @param maxStates stop once the DFA has this many states
+	 * @return {@code true} if every edge from every reachable state is in
+	 * the DFA and no state has a transition on EOF, so that the DFA matches
+	 * every token of the mode without its ATN configurations (see
+	 * {@link LexerDFATables}); otherwise the missing edges are computed at
+	 * runtime as usual
+	 *
+	 * @since 4.9
+	 */
+	public boolean precomputeDFA(int mode, int maxStates) {
+		this.mode = mode;
+		this.startIndex = 0;
+		PositionInput input = new PositionInput();
+		DFA dfa = decisionToDFA[mode];
+		if ( dfa.s0==null ) {
+			ATNConfigSet s0_closure = computeStartState(input, atn.modeToStartState.get(mode));
+			if ( s0_closure.hasSemanticContext ) {
+				return false;
+			}
+
+			dfa.s0 = addDFAState(s0_closure);
+		}
+
+		boolean complete = true;
+		Map<DFAState, Integer> depth = new IdentityHashMap<DFAState, Integer>();
+		Queue<DFAState> work = new ArrayDeque<DFAState>();
+		depth.put(dfa.s0, 0);
+		work.add(dfa.s0);
+		while ( !work.isEmpty() ) {
+			DFAState s = work.remove();
+			input.index = depth.get(s);
+			if ( hasEOFTransition(s.configs) ) {
+				// edges on EOF are never cached
+				complete = false;
+			}
+
+			for (int t = MIN_DFA_EDGE; t <= Lexer.MAX_CHAR_VALUE; t++) {
+				DFAState target = getExistingTargetState(s, t);
+				if ( target==null ) {
+					if ( dfa.states.size() >= maxStates ) {
+						return false;
+					}
+
+					computeTargetState(input, s, t);
+					target = getExistingTargetState(s, t);
+					if ( target==null ) complete = false;
+				}
+
+				if ( t > MAX_DFA_EDGE ) {
+					// all code points in the range lead to the same target
+					t = getEdgeRange(s.configs, t).b;
+				}
+
+				if ( target!=null && target!=ERROR && !depth.containsKey(target) ) {
+					depth.put(target, input.index + 1);
+					work.add(target);
+				}
+			}
+		}
+
+		return complete;
+	}
+
+	/** Return whether a transition leaving {@code configs} matches EOF. */
+	private static boolean hasEOFTransition(ATNConfigSet configs) {
+		for (ATNConfig c : configs) {
+			int n = c.state.getNumberOfTransitions();
+			for (int ti=0; ti<n; ti++) {
+				if ( c.state.transition(ti).matches(IntStream.EOF, Lexer.MIN_CHAR_VALUE, Lexer.MAX_CHAR_VALUE) ) {
+					return true;
+				}
+			}
+		}
+
+		return false;
 	}
 
 	protected int matchATN(CharStream input) {
@@ -199,8 +367,10 @@ public class LexerATNSimulator extends ATNSimulator {
 			// This optimization makes a lot of sense for loops within DFA.
 			// A character will take us back to an existing DFA state
 			// that already has lots of edges out of it. e.g., .* in comments.
+			steps++;
 			DFAState target = getExistingTargetState(s, t);
 			if (target == null) {
+				atnSteps++;
 				target = computeTargetState(input, s, t);
 			}
 
@@ -230,6 +400,147 @@ public class LexerATNSimulator extends ATNSimulator {
 		return failOrAccept(prevAccept, input, s.configs, t);
 	}
 
+	/**
+	 * Return the number of the state of the DFA of {@code mode} which the
+	 * generated scanner moves to from state number {@code s} on the code
+	 * point {@code t}, or {@code -1} if {@code t} cannot continue the token.
+	 *
+	 * <p>Lexers generated with {@code -direct-lexer} override this with a
+	 * {@code switch} for each DFA state, which the simulator then runs
+	 * instead of following {@link DFAState#edges}. The states are those of
+	 * the DFA precomputed by {@link #precomputeDFA} and loaded from the
+	 * generated {@link LexerDFATables}.</p>
+	 *
+	 * @since 4.9
+	 */
+	protected int getDirectTarget(int mode, int s, int t) {
+		return -1;
+	}
+
+	/**
+	 * Return the number of states of the DFA of {@code mode} which
+	 * {@link #getDirectTarget} knows, or 0 if the mode has no generated
+	 * scanner (the default).
+	 *
+	 * @since 4.9
+	 */
+	protected int getDirectStateCount(int mode) {
+		return 0;
+	}
+
+	/**
+	 * Return the target which {@code ranges} maps the code point {@code t}
+	 * to, or {@code -1}. The table holds the first and last code point and
+	 * the target of each range, sorted by first code point. Generated
+	 * scanners look up the edges on code points above {@link #MAX_DFA_EDGE}
+	 * with this binary search, so the size of their code does not grow with
+	 * the number of ranges.
+	 *
+	 * @since 4.9
+	 */
+	protected static int getRangeTarget(int[] ranges, int t) {
+		int lo = 0;
+		int hi = ranges.length / 3 - 1;
+		while ( lo<=hi ) {
+			int mid = (lo + hi) >>> 1;
+			int i = mid * 3;
+			if ( t<ranges[i] ) {
+				hi = mid - 1;
+			}
+			else if ( t>ranges[i + 1] ) {
+				lo = mid + 1;
+			}
+			else {
+				return ranges[i + 2];
+			}
+		}
+
+		return -1;
+	}
+
+	/** Return the states of the DFA of {@code mode} by number, or an empty
+	 *  array if the generated scanner cannot be used: the mode has none, or
+	 *  its DFA is not the one the scanner was generated for. That DFA is
+	 *  loaded from {@link LexerDFATables}, whose states have no
+	 *  configurations and are only reachable from {@link DFA#s0}.
+	 */
+	private DFAState[] getDirectStates(int mode) {
+		if ( directStates==null ) {
+			directStates = new DFAState[decisionToDFA.length][];
+			directStart = new int[decisionToDFA.length];
+		}
+
+		DFAState[] states = directStates[mode];
+		if ( states==null ) {
+			states = new DFAState[getDirectStateCount(mode)];
+			DFAState s0 = decisionToDFA[mode].s0;
+			int found = 0;
+			if ( states.length>0 && s0!=null && s0.configs.isEmpty() && s0.stateNumber<states.length ) {
+				Queue<DFAState> work = new ArrayDeque<DFAState>();
+				states[s0.stateNumber] = s0;
+				found++;
+				work.add(s0);
+				while ( !work.isEmpty() ) {
+					DFAState s = work.remove();
+					List<DFAState> targets = new ArrayList<DFAState>(Arrays.asList(s.edges));
+					targets.addAll(s.sparseEdges.getTargets());
+					for (DFAState target : targets) {
+						if ( target==ERROR || target.stateNumber>=states.length || states[target.stateNumber]!=null ) {
+							continue;
+						}
+
+						states[target.stateNumber] = target;
+						found++;
+						work.add(target);
+					}
+				}
+			}
+
+			if ( found==0 || found<states.length ) {
+				states = new DFAState[0];
+			}
+			else {
+				directStart[mode] = s0.stateNumber;
+			}
+			directStates[mode] = states;
+		}
+
+		return states;
+	}
+
+	/**
+	 * Match a token with the generated scanner of the current mode, starting
+	 * from state number {@code start} of {@code states}. Scanners are only
+	 * generated for modes whose ATN has no transition on EOF, so at the end
+	 * of the input the token ends as it would in {@link #execATN}.
+	 */
+	protected int execDirect(CharStream input, DFAState[] states, int start) {
+		DFAState s = states[start];
+		if ( s.isAcceptState ) {
+			// allow zero-length tokens
+			captureSimState(prevAccept, input, s);
+		}
+
+		int t = input.LA(1);
+		while ( t!=IntStream.EOF ) {
+			steps++;
+			int target = getDirectTarget(mode, s.stateNumber, t);
+			if ( target<0 ) {
+				break;
+			}
+
+			consume(input);
+			s = states[target];
+			if ( s.isAcceptState ) {
+				captureSimState(prevAccept, input, s);
+			}
+
+			t = input.LA(1);
+		}
+
+		return failOrAccept(prevAccept, input, s.configs, t);
+	}
+
 	/**
 	 * Get an existing target state for an edge in the DFA. If the target state
 	 * for the edge has not yet been computed or is otherwise not available,
@@ -243,11 +554,32 @@ public class LexerATNSimulator extends ATNSimulator {
 	 */
 
 	protected DFAState getExistingTargetState(DFAState s, int t) {
-		if (s.edges == null || t < MIN_DFA_EDGE || t > MAX_DFA_EDGE) {
-			return null;
+		DFAState target;
+		if (t > MAX_DFA_EDGE) {
+			SparseEdgeMap sparseEdges = s.sparseEdges;
+			if (sparseEdges == null) {
+				return null;
+			}
+
+			target = sparseEdges.get(t);
+		}
+		else {
+			if (s.edges == null || t < MIN_DFA_EDGE) {
+				return null;
+			}
+
+			target = s.edges[t - MIN_DFA_EDGE];
+		}
+
+		if (target != null) {
+			if (target.isEvicted()) {
+				// added while it was evicted; compute it again
+				return null;
+			}
+
+			target.markReferenced();
 		}
 
-		DFAState target = s.edges[t - MIN_DFA_EDGE];
 		if (debug && target != null) {
 			System.out.println("reuse state "+s.stateNumber+
 							   " edge to "+target.stateNumber);
@@ -641,7 +973,12 @@ public class LexerATNSimulator extends ATNSimulator {
 	}
 
 	protected void addDFAEdge(DFAState p, int t, DFAState q) {
-		if (t < MIN_DFA_EDGE || t > MAX_DFA_EDGE) {
+		if (t > MAX_DFA_EDGE) {
+			addSparseDFAEdge(p, t, q);
+			return;
+		}
+
+		if (t < MIN_DFA_EDGE) {
 			// Only track edges within the DFA bounds
 			return;
 		}
@@ -650,13 +987,62 @@ public class LexerATNSimulator extends ATNSimulator {
 			System.out.println("EDGE "+p+" -> "+q+" upon "+((char)t));
 		}
 
-		synchronized (p) {
-			if ( p.edges==null ) {
-				//  make room for tokens 1..n and -1 masquerading as index 0
-				p.edges = new DFAState[MAX_DFA_EDGE-MIN_DFA_EDGE+1];
+		p.setEdge(t - MIN_DFA_EDGE, MAX_DFA_EDGE-MIN_DFA_EDGE+1, q); // connect
+	}
+
+	/** Add an edge for a code point above {@link #MAX_DFA_EDGE}. The edge
+	 *  covers every code point around {@code t} which leads to the same
+	 *  target; see {@link #getEdgeRange}.
+	 */
+	protected void addSparseDFAEdge(DFAState p, int t, DFAState q) {
+		if (t > Lexer.MAX_CHAR_VALUE) {
+			return;
+		}
+
+		Interval range = getEdgeRange(p.configs, t);
+		if ( debug ) {
+			System.out.println("EDGE "+p+" -> "+q+" upon "+range);
+		}
+
+		p.setSparseEdge(range.a, range.b, q, MAX_SPARSE_DFA_EDGES); // connect
+	}
+
+	/** Compute the largest range of code points containing {@code t} over
+	 *  which every transition leaving {@code configs} either always or never
+	 *  matches. The reach set computed by {@link #getReachableConfigSet}
+	 *  only depends on which transitions match the input symbol, so all code
+	 *  points in this range lead to the same target DFA state.
+	 */
+	protected Interval getEdgeRange(ATNConfigSet configs, int t) {
+		int a = MAX_DFA_EDGE + 1;
+		int b = Lexer.MAX_CHAR_VALUE;
+		for (ATNConfig c : configs) {
+			int n = c.state.getNumberOfTransitions();
+			for (int ti=0; ti<n; ti++) {
+				IntervalSet label = c.state.transition(ti).label();
+				if ( label==null ) {
+					// epsilon-like transitions never match; wildcards always do
+					continue;
+				}
+
+				for (Interval I : label.getIntervals()) {
+					if ( I.b<t ) {
+						a = Math.max(a, I.b + 1);
+					}
+					else if ( I.a>t ) {
+						b = Math.min(b, I.a - 1);
+						break;
+					}
+					else {
+						a = Math.max(a, I.a);
+						b = Math.min(b, I.b);
+						break;
+					}
+				}
 			}
-			p.edges[t - MIN_DFA_EDGE] = q; // connect
 		}
+
+		return Interval.of(a, b);
 	}
 
 	/** Add a new DFA state if there isn't one with this set of
@@ -687,18 +1073,13 @@ public class LexerATNSimulator extends ATNSimulator {
 		}
 
 		DFA dfa = decisionToDFA[mode];
-		synchronized (dfa.states) {
-			DFAState existing = dfa.states.get(proposed);
-			if ( existing!=null ) return existing;
-
-			DFAState newState = proposed;
+		DFAState existing = dfa.states.get(proposed);
+		if ( existing!=null ) return existing;
 
-			newState.stateNumber = dfa.states.size();
-			configs.setReadonly(true);
-			newState.configs = configs;
-			dfa.states.put(newState, newState);
-			return newState;
-		}
+		configs.setReadonly(true);
+		DFAState added = dfa.addState(proposed);
+		if ( added==proposed ) statesAdded++;
+		return added;
 	}
 
 
@@ -748,4 +1129,53 @@ public class LexerATNSimulator extends ATNSimulator {
 		//if ( atn.g!=null ) return atn.g.getTokenDisplayName(t);
 		return "'"+(char)t+"'";
 	}
+
+	/** The input of {@link #precomputeDFA}, which only has a position. */
+	private static final class PositionInput implements CharStream {
+		int index;
+
+		@Override
+		public int index() {
+			return index;
+		}
+
+		@Override
+		public int LA(int i) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void consume() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int mark() {
+			return -1;
+		}
+
+		@Override
+		public void release(int marker) {
+		}
+
+		@Override
+		public void seek(int index) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public int size() {
+			return Integer.MAX_VALUE;
+		}
+
+		@Override
+		public String getSourceName() {
+			return UNKNOWN_SOURCE_NAME;
+		}
+
+		@Override
+		public String getText(Interval interval) {
+			throw new UnsupportedOperationException();
+		}
+	}
 }
@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.dfa.SparseEdgeMap;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.InvalidClassException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Encodes the lexer DFA built by {@link LexerATNSimulator#precomputeDFA} as
+ * transition tables, for embedding in generated code. Unlike a
+ * {@link DFASnapshot}, the tables hold no ATN configurations: only the edges
+ * of each state, its token type if it accepts, and its lexer actions.
+ *
+ * <p>Without configurations the simulator cannot add edges to a loaded
+ * state, so only modes for which {@link LexerATNSimulator#precomputeDFA}
+ * returned {@code true} can be encoded. The loaded states are reached from
+ * {@link DFA#s0} but are not part of {@link DFA#states}, so they are never
+ * evicted and {@link DFA#toLexerString} does not show them.</p>
+ *
+ * @since 4.9
+ */
+public class LexerDFATables {
+	public static final int VERSION = 1;
+
+	/** Return the DFAs of the modes {@code modes[mode]} is {@code true} for
+	 *  as tables, one value per character. {@code modes} has an element for
+	 *  each mode of {@code atn}.
+	 *
+	 *  @throws IllegalArgumentException if one of these DFAs is missing an
+	 *  edge
+	 */
+	public static String encode(ATN atn, DFA[] decisionToDFA, boolean[] modes) {
+		List<List<DFAState>> modeStates = new ArrayList<List<DFAState>>(modes.length);
+		Map<LexerActionExecutor, Integer> executors = new HashMap<LexerActionExecutor, Integer>();
+		List<LexerActionExecutor> executorList = new ArrayList<LexerActionExecutor>();
+		for (int mode = 0; mode < modes.length; mode++) {
+			List<DFAState> states = modes[mode] ? decisionToDFA[mode].getStates() : new ArrayList<DFAState>();
+			modeStates.add(states);
+			for (DFAState s : states) {
+				if ( s.lexerActionExecutor!=null && !executors.containsKey(s.lexerActionExecutor) ) {
+					executors.put(s.lexerActionExecutor, executorList.size());
+					executorList.add(s.lexerActionExecutor);
+				}
+			}
+		}
+
+		StringBuilder data = new StringBuilder();
+		writeInt(data, VERSION);
+		long checksum = DFASnapshot.getChecksum(atn);
+		writeInt(data, (int)(checksum >>> 16));
+		writeInt(data, (int)(checksum & 0xFFFF));
+
+		writeInt(data, executorList.size());
+		List<LexerAction> lexerActions = Arrays.asList(atn.lexerActions);
+		for (LexerActionExecutor executor : executorList) {
+			LexerAction[] actions = executor.getLexerActions();
+			writeInt(data, actions.length);
+			for (LexerAction action : actions) {
+				// 0 for a plain action, or 1 + the offset of an indexed one
+				if ( action instanceof LexerIndexedCustomAction ) {
+					LexerIndexedCustomAction indexed = (LexerIndexedCustomAction)action;
+					writeInt(data, indexed.getOffset() + 1);
+					action = indexed.getAction();
+				}
+				else {
+					writeInt(data, 0);
+				}
+
+				int index = lexerActions.indexOf(action);
+				if ( index<0 ) {
+					throw new IllegalArgumentException("Lexer action is not part of the ATN: "+action);
+				}
+				writeInt(data, index);
+			}
+		}
+
+		writeInt(data, modes.length);
+		for (int mode = 0; mode < modes.length; mode++) {
+			List<DFAState> states = modeStates.get(mode);
+			writeInt(data, states.size());
+			if ( states.isEmpty() ) continue;
+
+			// states are numbered by their position
+			Map<DFAState, Integer> numbers = new IdentityHashMap<DFAState, Integer>();
+			for (DFAState s : states) {
+				numbers.put(s, numbers.size());
+			}
+
+			writeInt(data, getNumber(numbers, decisionToDFA[mode].s0));
+			for (DFAState s : states) {
+				writeInt(data, s.isAcceptState ? s.prediction + 1 : 0);
+				writeInt(data, s.lexerActionExecutor!=null ? executors.get(s.lexerActionExecutor) + 1 : 0);
+				writeEdges(data, s, numbers);
+			}
+		}
+
+		return data.toString();
+	}
+
+	/**
+	 * Set {@link DFA#s0} of each mode in {@code decisionToDFA} which has
+	 * tables in {@code data}, returned by {@link #encode} for {@code atn}.
+	 * The other modes are left untouched.
+	 *
+	 * @throws UnsupportedOperationException if {@code data} was encoded by
+	 * another version of this class
+	 * @throws IllegalArgumentException if {@code data} was not encoded for
+	 * {@code atn}
+	 */
+	public static void decode(ATN atn, DFA[] decisionToDFA, String data) {
+		Reader in = new Reader(data);
+		int version = in.readInt();
+		if ( version!=VERSION ) {
+			String reason = String.format(Locale.getDefault(), "Could not load lexer DFA tables with version %d (expected %d).", version, VERSION);
+			throw new UnsupportedOperationException(new InvalidClassException(LexerDFATables.class.getName(), reason));
+		}
+
+		long checksum = ((long)in.readInt() << 16) | in.readInt();
+		if ( checksum!=DFASnapshot.getChecksum(atn) ) {
+			throw new IllegalArgumentException("The lexer DFA tables were not created for this ATN.");
+		}
+
+		LexerActionExecutor[] executors = new LexerActionExecutor[in.readInt()];
+		for (int i = 0; i < executors.length; i++) {
+			LexerAction[] actions = new LexerAction[in.readInt()];
+			for (int j = 0; j < actions.length; j++) {
+				int offset = in.readInt() - 1;
+				LexerAction action = atn.lexerActions[in.readInt()];
+				actions[j] = offset>=0 ? new LexerIndexedCustomAction(offset, action) : action;
+			}
+			executors[i] = new LexerActionExecutor(actions);
+		}
+
+		int modes = in.readInt();
+		if ( modes!=atn.modeToStartState.size() ) {
+			throw new IllegalArgumentException("The lexer DFA tables hold "+modes+" modes, expected "+atn.modeToStartState.size()+".");
+		}
+
+		DFAState[][] loaded = new DFAState[modes][];
+		int[] start = new int[modes];
+		for (int mode = 0; mode < modes; mode++) {
+			DFAState[] states = new DFAState[in.readInt()];
+			loaded[mode] = states;
+			if ( states.length==0 ) continue;
+
+			for (int i = 0; i < states.length; i++) {
+				states[i] = new DFAState(i);
+			}
+
+			start[mode] = in.readInt();
+			for (DFAState s : states) {
+				int prediction = in.readInt() - 1;
+				if ( prediction>=0 ) {
+					s.isAcceptState = true;
+					s.prediction = prediction;
+				}
+
+				int executor = in.readInt() - 1;
+				s.lexerActionExecutor = executor>=0 ? executors[executor] : null;
+				readEdges(in, s, states);
+				s.configs.setReadonly(true);
+			}
+		}
+
+		for (int mode = 0; mode < modes; mode++) {
+			if ( loaded[mode].length>0 ) {
+				decisionToDFA[mode].s0 = loaded[mode][start[mode]];
+			}
+		}
+	}
+
+	/** Write the edges of {@code s} as the first symbol and target of each
+	 *  run of symbols leading to the same state, from
+	 *  {@link LexerATNSimulator#MIN_DFA_EDGE} to
+	 *  {@link Lexer#MAX_CHAR_VALUE}.
+	 */
+	private static void writeEdges(StringBuilder data, DFAState s, Map<DFAState, Integer> numbers) {
+		List<Integer> runs = new ArrayList<Integer>();
+		int last = -1;
+		for (int t = LexerATNSimulator.MIN_DFA_EDGE; t <= LexerATNSimulator.MAX_DFA_EDGE; t++) {
+			DFAState target = s.edges!=null ? s.edges[t - LexerATNSimulator.MIN_DFA_EDGE] : null;
+			int n = getTarget(numbers, target);
+			if ( n!=last ) {
+				runs.add(t);
+				runs.add(n);
+				last = n;
+			}
+		}
+
+		int next = LexerATNSimulator.MAX_DFA_EDGE + 1;
+		SparseEdgeMap sparseEdges = s.sparseEdges;
+		List<Interval> ranges = sparseEdges!=null ? sparseEdges.getRanges() : new ArrayList<Interval>();
+		List<DFAState> targets = sparseEdges!=null ? sparseEdges.getTargets() : new ArrayList<DFAState>();
+		for (int i = 0; i < ranges.size(); i++) {
+			if ( ranges.get(i).a!=next ) break;
+
+			int n = getTarget(numbers, targets.get(i));
+			if ( n!=last ) {
+				runs.add(next);
+				runs.add(n);
+				last = n;
+			}
+			next = ranges.get(i).b + 1;
+		}
+
+		if ( next<=Lexer.MAX_CHAR_VALUE ) {
+			throw new IllegalArgumentException("DFA state "+s.stateNumber+" has no edge on "+next+".");
+		}
+
+		writeInt(data, runs.size() / 2);
+		for (int run : runs) {
+			writeInt(data, run);
+		}
+	}
+
+	private static void readEdges(Reader in, DFAState s, DFAState[] states) {
+		int runs = in.readInt();
+		int[] starts = new int[runs + 1];
+		DFAState[] targets = new DFAState[runs];
+		for (int i = 0; i < runs; i++) {
+			starts[i] = in.readInt();
+			int n = in.readInt();
+			targets[i] = n==0 ? ATNSimulator.ERROR : states[n - 1];
+		}
+		starts[runs] = Lexer.MAX_CHAR_VALUE + 1;
+
+		DFAState[] edges = new DFAState[LexerATNSimulator.MAX_DFA_EDGE - LexerATNSimulator.MIN_DFA_EDGE + 1];
+		SparseEdgeMap sparseEdges = SparseEdgeMap.EMPTY;
+		for (int i = 0; i < runs; i++) {
+			int a = starts[i];
+			int b = starts[i + 1] - 1;
+			for (int t = a; t <= Math.min(b, LexerATNSimulator.MAX_DFA_EDGE); t++) {
+				edges[t - LexerATNSimulator.MIN_DFA_EDGE] = targets[i];
+			}
+			if ( b>LexerATNSimulator.MAX_DFA_EDGE ) {
+				sparseEdges = sparseEdges.put(Math.max(a, LexerATNSimulator.MAX_DFA_EDGE + 1), b, targets[i]);
+			}
+		}
+
+		s.edges = edges;
+		s.sparseEdges = sparseEdges;
+	}
+
+	/** Return 0 for {@link ATNSimulator#ERROR}, or 1 + the number of
+	 *  {@code target}.
+	 */
+	private static int getTarget(Map<DFAState, Integer> numbers, DFAState target) {
+		if ( target==ATNSimulator.ERROR ) {
+			return 0;
+		}
+		return getNumber(numbers, target) + 1;
+	}
+
+	private static int getNumber(Map<DFAState, Integer> numbers, DFAState s) {
+		Integer n = s!=null ? numbers.get(s) : null;
+		if ( n==null ) {
+			throw new IllegalArgumentException("The DFA is missing an edge or state.");
+		}
+		return n;
+	}
+
+	/** Values below 0x8000 take one character, larger ones two. */
+	private static void writeInt(StringBuilder data, int value) {
+		if ( value<0x8000 ) {
+			data.append((char)value);
+		}
+		else {
+			data.append((char)(0x8000 | (value >>> 16)));
+			data.append((char)(value & 0xFFFF));
+		}
+	}
+
+	private static final class Reader {
+		private final String data;
+		private int p;
+
+		Reader(String data) {
+			this.data = data;
+		}
+
+		int readInt() {
+			int value = data.charAt(p++);
+			if ( value>=0x8000 ) {
+				value = ((value & 0x7FFF) << 16) | data.charAt(p++);
+			}
+			return value;
+		}
+	}
+}
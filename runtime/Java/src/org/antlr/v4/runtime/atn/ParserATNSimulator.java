@@ -190,17 +190,15 @@ import static org.antlr.v4.runtime.atn.ATNState.BLOCK_END;
  * <strong>THREAD SAFETY</strong></p>
  *
  * <p>
- * The {@link ParserATNSimulator} locks on the {@link #decisionToDFA} field when
- * it adds a new DFA object to that array. {@link #addDFAEdge}
- * locks on the DFA for the current decision when setting the
- * {@link DFAState#edges} field. {@link #addDFAState} locks on
- * the DFA for the current decision when looking up a DFA state to see if it
- * already exists. We must make sure that all requests to add DFA states that
- * are equivalent result in the same shared DFA object. This is because lots of
- * threads will be trying to update the DFA at once. The
- * {@link #addDFAState} method also locks inside the DFA lock
- * but this time on the shared context cache when it rebuilds the
- * configurations' {@link PredictionContext} objects using cached
+ * Adding to the DFA does not lock. {@link #addDFAState} uses
+ * {@link DFA#addState}, which is backed by a concurrent map, to look up a DFA
+ * state and add it if it does not already exist. We must make sure that all
+ * requests to add DFA states that are equivalent result in the same shared DFA
+ * object. This is because lots of threads will be trying to update the DFA at
+ * once. {@link #addDFAEdge} uses {@link DFAState#setEdge}, which allocates the
+ * {@link DFAState#edges} array with a compare-and-set. The
+ * {@link #addDFAState} method does lock on the shared context cache when it
+ * rebuilds the configurations' {@link PredictionContext} objects using cached
  * subgraphs/nodes. No other locking occurs, even during DFA simulation. This is
  * safe as long as we can guarantee that all threads referencing
  * {@code s.edge[t]} get the same physical target {@link DFAState}, or
@@ -212,7 +210,8 @@ import static org.antlr.v4.runtime.atn.ATNState.BLOCK_END;
  * {@link #addDFAEdge} method could be racing to set the field
  * but in either case the DFA simulator works; if {@code null}, and requests ATN
  * simulation. It could also race trying to get {@code dfa.edges[t]}, but either
- * way it will work because it's not doing a test and set operation.</p>
+ * way it will work because it's not doing a test and set operation. Two
+ * threads racing to set the same edge always store the same target.</p>
  *
  * <p>
  * <strong>Starting with SLL then failing to combined SLL/LL (Two-Stage
@@ -290,12 +289,53 @@ public class ParserATNSimulator extends ATNSimulator {
 	 */
 	protected DoubleKeyMap<PredictionContext,PredictionContext,PredictionContext> mergeCache;
 
+	/** See {@link #setMergeCache}. */
+	protected PredictionContextMergeCache sharedMergeCache;
+
+	/** See {@link #setFullContextCache}. */
+	protected FullContextPredictionCache fullContextCache;
+
+	/** See {@link #setAdaptivePolicy}. */
+	protected AdaptivePredictionPolicy adaptivePolicy;
+
+	/** Whether the current SLL prediction fell back to full context. */
+	private boolean _fullContextFallback;
+
+	/** The number of tokens the current full-context prediction looked
+	 *  at, or 0 if it failed, and whether it evaluated a semantic predicate.
+	 */
+	private int _fullContextLookahead;
+	private boolean _predicateEvaluated;
+
+	/** Most indexes kept in {@link #configIndexPool}. */
+	private static final int MAX_POOLED_CONFIG_INDEXES = 16;
+
+	/** Indexes taken back from the sets of earlier predictions, lent to
+	 *  the sets created by {@link #newConfigSet}.
+	 */
+	private final ArrayList<ConfigIndex> configIndexPool = new ArrayList<ConfigIndex>();
+
+	/** The sets created by {@link #newConfigSet} during this prediction,
+	 *  and the index lent to each.
+	 */
+	private final ArrayList<ATNConfigSet> predictionConfigSets = new ArrayList<ATNConfigSet>();
+	private final ArrayList<ConfigIndex> predictionConfigIndexes = new ArrayList<ConfigIndex>();
+
 	// LAME globals to avoid parameters!!!!! I need these down deep in predTransition
 	protected TokenStream _input;
 	protected int _startIndex;
 	protected ParserRuleContext _outerContext;
 	protected DFA _dfa;
 
+	/** Counters for {@link #metrics}, reset for each prediction. */
+	private int _sllSteps;
+	private int _atnSteps;
+	private int _llSteps;
+	private int _statesAdded;
+
+	/** See {@link #setMetrics}. */
+	protected PredictionMetrics metrics;
+
 	/** Testing only! */
 	public ParserATNSimulator(ATN atn, DFA[] decisionToDFA,
 							  PredictionContextCache sharedContextCache)
@@ -322,7 +362,9 @@ public class ParserATNSimulator extends ATNSimulator {
 	@Override
 	public void clearDFA() {
 		for (int d = 0; d < decisionToDFA.length; d++) {
-			decisionToDFA[d] = new DFA(atn.getDecisionState(d), d);
+			DFA dfa = new DFA(atn.getDecisionState(d), d);
+			if ( decisionToDFA[d]!=null ) dfa.setMaxStates(decisionToDFA[d].getMaxStates());
+			decisionToDFA[d] = dfa;
 		}
 	}
 
@@ -341,12 +383,27 @@ public class ParserATNSimulator extends ATNSimulator {
 		DFA dfa = decisionToDFA[decision];
 		_dfa = dfa;
 
+		PredictionMetrics metrics = this.metrics;
+		long startTime = 0;
+		if (metrics != null) {
+			_sllSteps = _atnSteps = _llSteps = _statesAdded = 0;
+			startTime = metrics.startTime();
+		}
+
 		int m = input.mark();
 		int index = _startIndex;
 
 		// Now we are certain to have a specific decision's DFA
 		// But, do we still need an initial state?
 		try {
+			AdaptivePredictionPolicy adaptivePolicy = this.adaptivePolicy;
+			if ( adaptivePolicy!=null && mode != PredictionMode.SLL &&
+				 adaptivePolicy.predictWithFullContext(decision) )
+			{
+				if ( outerContext ==null ) outerContext = ParserRuleContext.EMPTY;
+				return execATNFullContextOnly(dfa, input, index, outerContext);
+			}
+
 			DFAState s0;
 			if (dfa.isPrecedenceDfa()) {
 				// the start state for a precedence DFA depends on the current
@@ -390,18 +447,136 @@ public class ParserATNSimulator extends ATNSimulator {
 				}
 			}
 
+			_fullContextFallback = false;
 			int alt = execATN(dfa, s0, input, index, outerContext);
 			if ( debug ) System.out.println("DFA after predictATN: "+ dfa.toString(parser.getVocabulary()));
+			if ( adaptivePolicy!=null && mode != PredictionMode.SLL ) {
+				adaptivePolicy.recordPrediction(decision, _fullContextFallback);
+			}
 			return alt;
 		}
 		finally {
 			mergeCache = null; // wack cache after each prediction
+			releaseConfigSets();
 			_dfa = null;
+			if (metrics != null) {
+				metrics.record(decision, _sllSteps, _atnSteps, _llSteps, _statesAdded);
+				int lookahead = Math.max(1, Math.max(_sllSteps, _llSteps));
+				metrics.checkTime(startTime, parser, decision, index, index + lookahead - 1);
+			}
 			input.seek(index);
 			input.release(m);
 		}
 	}
 
+	/**
+	 * Return the metrics updated by this simulator, or {@code null} if
+	 * there are none.
+	 *
+	 * @since 4.9
+	 */
+	public PredictionMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Set the metrics updated for each prediction, or {@code null} to
+	 * stop collecting them. {@code metrics} needs a counter for each
+	 * decision of the ATN and may be shared with other simulators.
+	 *
+	 * @since 4.9
+	 */
+	public void setMetrics(PredictionMetrics metrics) {
+		if (metrics != null && metrics.getNumberOfDecisions() < atn.getNumberOfDecisions()) {
+			throw new IllegalArgumentException("The metrics have fewer decisions than the ATN.");
+		}
+
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Return the cache which keeps merges across predictions, or
+	 * {@code null}.
+	 *
+	 * @since 4.9
+	 */
+	public PredictionContextMergeCache getMergeCache() {
+		return sharedMergeCache;
+	}
+
+	/**
+	 * Keep the results of context merges in {@code mergeCache} instead of
+	 * discarding them after each prediction, or go back to the per-prediction
+	 * cache if it is {@code null}. The cache may be shared by the simulators
+	 * of all parsers for a grammar.
+	 *
+	 * @since 4.9
+	 */
+	public void setMergeCache(PredictionContextMergeCache mergeCache) {
+		this.sharedMergeCache = mergeCache;
+	}
+
+	/**
+	 * Return the cache of full-context predictions, or {@code null}.
+	 *
+	 * @since 4.9
+	 */
+	public FullContextPredictionCache getFullContextCache() {
+		return fullContextCache;
+	}
+
+	/**
+	 * Look up the alternatives predicted by full-context prediction in
+	 * {@code cache} before simulating the ATN, and store new ones there, or
+	 * always simulate if it is {@code null}. The cache may be shared by the
+	 * simulators of all parsers for a grammar.
+	 *
+	 * @since 4.9
+	 */
+	public void setFullContextCache(FullContextPredictionCache cache) {
+		this.fullContextCache = cache;
+	}
+
+	/**
+	 * Return the policy which chooses the decisions predicted with
+	 * full-context LL prediction alone, or {@code null}.
+	 *
+	 * @since 4.9
+	 */
+	public AdaptivePredictionPolicy getAdaptivePolicy() {
+		return adaptivePolicy;
+	}
+
+	/**
+	 * Let {@code policy} learn which decisions usually fall back from SLL to
+	 * LL prediction, and predict those with LL alone, or always start with
+	 * SLL if it is {@code null}. The policy has no effect in
+	 * {@link PredictionMode#SLL}. It may be shared by the simulators of all
+	 * parsers for a grammar, and needs a counter for each decision of the
+	 * ATN.
+	 *
+	 * @since 4.9
+	 */
+	public void setAdaptivePolicy(AdaptivePredictionPolicy policy) {
+		if (policy != null && policy.getNumberOfDecisions() < atn.getNumberOfDecisions()) {
+			throw new IllegalArgumentException("The policy has fewer decisions than the ATN.");
+		}
+
+		this.adaptivePolicy = policy;
+	}
+
+	/**
+	 * Return whether a generated parser may predict the decisions which the
+	 * tool found to be LL(k) with its own lookahead tests, without calling
+	 * {@link #adaptivePredict}. Simulators which observe every prediction,
+	 * such as one with {@link #getMetrics metrics}, return {@code false}.
+	 *
+	 * @since 4.9
+	 */
+	public boolean isStaticPredictionEnabled() {
+		return metrics == null;
+	}
+
 	/** Performs ATN simulation to compute a predicted alternative based
 	 *  upon the remaining input, but also updates the DFA cache to avoid
 	 *  having to traverse the ATN again for the same input sequence.
@@ -449,8 +624,10 @@ public class ParserATNSimulator extends ATNSimulator {
 		int t = input.LA(1);
 
 		while (true) { // while more work
+			_sllSteps++;
 			DFAState D = getExistingTargetState(previousD, t);
 			if (D == null) {
+				_atnSteps++;
 				D = computeTargetState(dfa, previousD, t);
 			}
 
@@ -497,15 +674,8 @@ public class ParserATNSimulator extends ATNSimulator {
 				}
 
 				if ( dfa_debug ) System.out.println("ctx sensitive state "+outerContext+" in "+D);
-				boolean fullCtx = true;
-				ATNConfigSet s0_closure =
-					computeStartState(dfa.atnStartState, outerContext,
-									  fullCtx);
-				reportAttemptingFullContext(dfa, conflictingAlts, D.configs, startIndex, input.index());
-				int alt = execATNWithFullContext(dfa, D, s0_closure,
-												 input, startIndex,
-												 outerContext);
-				return alt;
+				_fullContextFallback = true;
+				return predictWithFullContext(dfa, D, conflictingAlts, input, startIndex, outerContext);
 			}
 
 			if ( D.isAcceptState ) {
@@ -557,7 +727,17 @@ public class ParserATNSimulator extends ATNSimulator {
 			return null;
 		}
 
-		return edges[t + 1];
+		DFAState target = edges[t + 1];
+		if (target != null) {
+			if (target.isEvicted()) {
+				// added while it was evicted; compute it again
+				return null;
+			}
+
+			target.markReferenced();
+		}
+
+		return target;
 	}
 
 	/**
@@ -640,9 +820,64 @@ public class ParserATNSimulator extends ATNSimulator {
 		}
 	}
 
+	/**
+	 * Predict {@code dfa.decision} with full-context LL prediction alone,
+	 * without SLL prediction first, because the
+	 * {@link #setAdaptivePolicy adaptive policy} found that SLL prediction
+	 * usually falls back for this decision.
+	 *
+	 * @since 4.9
+	 */
+	protected int execATNFullContextOnly(DFA dfa, TokenStream input, int startIndex,
+										 ParserRuleContext outerContext)
+	{
+		if ( debug || debug_list_atn_decisions ) {
+			System.out.println("execATNFullContextOnly decision "+dfa.decision);
+		}
+		return predictWithFullContext(dfa, null, null, input, startIndex, outerContext);
+	}
+
+	/** Predict with full context after SLL prediction reached the conflict
+	 *  state {@code D}, or without SLL prediction if {@code D} is
+	 *  {@code null}, looking in {@link #fullContextCache} first.
+	 */
+	private int predictWithFullContext(DFA dfa, DFAState D, BitSet conflictingAlts,
+									   TokenStream input, int startIndex,
+									   ParserRuleContext outerContext)
+	{
+		if ( fullContextCache!=null ) {
+			int conflictIndex = input.index();
+			int alt = fullContextCache.get(dfa.decision, mode, outerContext, input, startIndex);
+			input.seek(conflictIndex);
+			if ( alt!=ATN.INVALID_ALT_NUMBER ) {
+				if ( D!=null ) {
+					reportAttemptingFullContext(dfa, conflictingAlts, D.configs, startIndex, conflictIndex);
+				}
+				return alt;
+			}
+		}
+
+		boolean fullCtx = true;
+		_fullContextLookahead = 0;
+		_predicateEvaluated = false;
+		ATNConfigSet s0_closure =
+			computeStartState(dfa.atnStartState, outerContext,
+							  fullCtx);
+		if ( D!=null ) {
+			reportAttemptingFullContext(dfa, conflictingAlts, D.configs, startIndex, input.index());
+		}
+		int alt = execATNWithFullContext(dfa, D, s0_closure,
+										 input, startIndex,
+										 outerContext);
+		if ( fullContextCache!=null && _fullContextLookahead>0 && !_predicateEvaluated ) {
+			fullContextCache.put(dfa.decision, mode, outerContext, input, startIndex, _fullContextLookahead, alt);
+		}
+		return alt;
+	}
+
 	// comes back with reach.uniqueAlt set to a valid alt
 	protected int execATNWithFullContext(DFA dfa,
-										 DFAState D, // how far we got in SLL DFA before failing over
+										 DFAState D, // how far we got in SLL DFA before failing over, or null
 										 ATNConfigSet s0,
 										 TokenStream input, int startIndex,
 										 ParserRuleContext outerContext)
@@ -656,11 +891,13 @@ public class ParserATNSimulator extends ATNSimulator {
 		ATNConfigSet previous = s0;
 		input.seek(startIndex);
 		int t = input.LA(1);
+		int lookahead = 1;
 		int predictedAlt;
 		while (true) { // while more work
 //			System.out.println("LL REACH "+getLookaheadName(input)+
 //							   " from configs.size="+previous.size()+
 //							   " line "+input.LT(1).getLine()+":"+input.LT(1).getCharPositionInLine());
+			_llSteps++;
 			reach = computeReachSet(previous, t, fullCtx);
 			if ( reach==null ) {
 				// if any configs in previous dipped into outer context, that
@@ -722,9 +959,12 @@ public class ParserATNSimulator extends ATNSimulator {
 			if (t != IntStream.EOF) {
 				input.consume();
 				t = input.LA(1);
+				lookahead++;
 			}
 		}
 
+		_fullContextLookahead = lookahead;
+
 		// If the configuration set uniquely predicts an alternative,
 		// without conflict, then we know that it's a full LL decision
 		// not SLL.
@@ -772,11 +1012,15 @@ public class ParserATNSimulator extends ATNSimulator {
 		if ( debug )
 			System.out.println("in computeReachSet, starting closure: " + closure);
 
-		if (mergeCache == null) {
+		if (sharedMergeCache != null) {
+			// SLL and LL merges differ, so each has its own table
+			mergeCache = sharedMergeCache.getTable(!fullCtx);
+		}
+		else if (mergeCache == null) {
 			mergeCache = new DoubleKeyMap<PredictionContext, PredictionContext, PredictionContext>();
 		}
 
-		ATNConfigSet intermediate = new ATNConfigSet(fullCtx);
+		ATNConfigSet intermediate = newConfigSet(fullCtx);
 
 		/* Configurations already in a rule stop state indicate reaching the end
 		 * of the decision rule (local context) or end of the start rule (full
@@ -849,7 +1093,7 @@ public class ParserATNSimulator extends ATNSimulator {
 		 * operation on the intermediate set to compute its initial value.
 		 */
 		if (reach == null) {
-			reach = new ATNConfigSet(fullCtx);
+			reach = newConfigSet(fullCtx);
 			Set<ATNConfig> closureBusy = new HashSet<ATNConfig>();
 			boolean treatEofAsEpsilon = t == Token.EOF;
 			for (ATNConfig c : intermediate) {
@@ -897,6 +1141,54 @@ public class ParserATNSimulator extends ATNSimulator {
 		return reach;
 	}
 
+	/**
+	 * Create a configuration set for the current prediction. Its lookup
+	 * table is taken from the sets of earlier predictions and taken back
+	 * when this prediction ends, so the sets computed in
+	 * {@link #computeReachSet} and {@link #closure} rarely allocate one.
+	 * A set which outlives the prediction, for example in a
+	 * {@link NoViableAltException}, indexes its configurations again if it
+	 * is modified later.
+	 *
+	 * @since 4.9
+	 */
+	protected ATNConfigSet newConfigSet(boolean fullCtx) {
+		ConfigIndex index;
+		if ( !configIndexPool.isEmpty() ) {
+			index = configIndexPool.remove(configIndexPool.size() - 1);
+		}
+		else {
+			index = new ConfigIndex();
+		}
+
+		ATNConfigSet configs = new ATNConfigSet(fullCtx);
+		configs.configIndex = index;
+		predictionConfigSets.add(configs);
+		predictionConfigIndexes.add(index);
+		return configs;
+	}
+
+	/** Take back the indexes lent by {@link #newConfigSet}, including those
+	 *  of sets which became DFA states and no longer use theirs.
+	 */
+	private void releaseConfigSets() {
+		for (int i = 0; i < predictionConfigSets.size(); i++) {
+			ATNConfigSet configs = predictionConfigSets.get(i);
+			ConfigIndex index = predictionConfigIndexes.get(i);
+			if ( configs.configIndex==index ) {
+				configs.configIndex = null;
+			}
+
+			if ( configIndexPool.size()<MAX_POOLED_CONFIG_INDEXES ) {
+				index.clear();
+				configIndexPool.add(index);
+			}
+		}
+
+		predictionConfigSets.clear();
+		predictionConfigIndexes.clear();
+	}
+
 	/**
 	 * Return a configuration set containing only the configurations from
 	 * {@code configs} which are in a {@link RuleStopState}. If all
@@ -922,7 +1214,7 @@ public class ParserATNSimulator extends ATNSimulator {
 			return configs;
 		}
 
-		ATNConfigSet result = new ATNConfigSet(configs.fullCtx);
+		ATNConfigSet result = newConfigSet(configs.fullCtx);
 		for (ATNConfig config : configs) {
 			if (config.state instanceof RuleStopState) {
 				result.add(config, mergeCache);
@@ -948,7 +1240,10 @@ public class ParserATNSimulator extends ATNSimulator {
 	{
 		// always at least the implicit call to start rule
 		PredictionContext initialContext = PredictionContext.fromRuleContext(atn, ctx);
-		ATNConfigSet configs = new ATNConfigSet(fullCtx);
+		ATNConfigSet configs = newConfigSet(fullCtx);
+		if (sharedMergeCache != null) {
+			mergeCache = sharedMergeCache.getTable(!fullCtx);
+		}
 
 		for (int i=0; i<p.getNumberOfTransitions(); i++) {
 			ATNState target = p.transition(i).target;
@@ -1125,7 +1420,7 @@ public class ParserATNSimulator extends ATNSimulator {
 	 */
 	protected ATNConfigSet applyPrecedenceFilter(ATNConfigSet configs) {
 		Map<Integer, PredictionContext> statesFromAlt1 = new HashMap<Integer, PredictionContext>();
-		ATNConfigSet configSet = new ATNConfigSet(configs.fullCtx);
+		ATNConfigSet configSet = newConfigSet(configs.fullCtx);
 		for (ATNConfig config : configs) {
 			// handle alt 1 first
 			if (config.alt != 1) {
@@ -1343,6 +1638,7 @@ public class ParserATNSimulator extends ATNSimulator {
 		ATNConfigSet failed = new ATNConfigSet(configs.fullCtx);
 		for (ATNConfig c : configs) {
 			if ( c.semanticContext!=SemanticContext.NONE ) {
+				_predicateEvaluated = true;
 				boolean predicateEvaluationResult = evalSemanticContext(c.semanticContext, outerContext, c.alt, configs.fullCtx);
 				if ( predicateEvaluationResult ) {
 					succeeded.add(c);
@@ -1379,6 +1675,7 @@ public class ParserATNSimulator extends ATNSimulator {
 			}
 
 			boolean fullCtx = false; // in dfa
+			_predicateEvaluated = true;
 			boolean predicateEvaluationResult = evalSemanticContext(pair.pred, outerContext, pair.alt, fullCtx);
 			if ( debug || dfa_debug ) {
 				System.out.println("eval pred "+pair+"="+predicateEvaluationResult);
@@ -1831,6 +2128,7 @@ public class ParserATNSimulator extends ATNSimulator {
 				// later during conflict resolution.
 				int currentPosition = _input.index();
 				_input.seek(_startIndex);
+				_predicateEvaluated = true;
 				boolean predSucceeds = evalSemanticContext(pt.getPredicate(), _outerContext, config.alt, fullCtx);
 				_input.seek(currentPosition);
 				if ( predSucceeds ) {
@@ -1879,6 +2177,7 @@ public class ParserATNSimulator extends ATNSimulator {
 				// later during conflict resolution.
 				int currentPosition = _input.index();
 				_input.seek(_startIndex);
+				_predicateEvaluated = true;
 				boolean predSucceeds = evalSemanticContext(pt.getPredicate(), _outerContext, config.alt, fullCtx);
 				_input.seek(currentPosition);
 				if ( predSucceeds ) {
@@ -2080,13 +2379,7 @@ public class ParserATNSimulator extends ATNSimulator {
 			return to;
 		}
 
-		synchronized (from) {
-			if ( from.edges==null ) {
-				from.edges = new DFAState[atn.maxTokenType+1+1];
-			}
-
-			from.edges[t+1] = to; // connect
-		}
+		from.setEdge(t+1, atn.maxTokenType+1+1, to); // connect
 
 		if ( debug ) {
 			System.out.println("DFA=\n"+dfa.toString(parser!=null?parser.getVocabulary():VocabularyImpl.EMPTY_VOCABULARY));
@@ -2115,19 +2408,18 @@ public class ParserATNSimulator extends ATNSimulator {
 			return D;
 		}
 
-		synchronized (dfa.states) {
-			DFAState existing = dfa.states.get(D);
-			if ( existing!=null ) return existing;
+		DFAState existing = dfa.states.get(D);
+		if ( existing!=null ) return existing;
 
-			D.stateNumber = dfa.states.size();
-			if (!D.configs.isReadonly()) {
-				D.configs.optimizeConfigs(this);
-				D.configs.setReadonly(true);
-			}
-			dfa.states.put(D, D);
-			if ( debug ) System.out.println("adding new DFA state: "+D);
-			return D;
+		if (!D.configs.isReadonly()) {
+			D.configs.optimizeConfigs(this);
+			D.configs.setReadonly(true);
 		}
+
+		DFAState added = dfa.addState(D);
+		if ( added==D ) _statesAdded++;
+		if ( debug && added==D ) System.out.println("adding new DFA state: "+D);
+		return added;
 	}
 
 	protected void reportAttemptingFullContext(DFA dfa, BitSet conflictingAlts, ATNConfigSet configs, int startIndex, int stopIndex) {
@@ -62,10 +62,29 @@ public abstract class PredictionContext {
 	 */
 	public final int cachedHashCode;
 
+	/** Reference bit for the CLOCK eviction of a bounded
+	 *  {@link PredictionContextCache}. This is not volatile; a lost update
+	 *  only makes eviction less precise. The field fits in the padding of
+	 *  the context objects.
+	 */
+	private boolean referenced;
+
 	protected PredictionContext(int cachedHashCode) {
 		this.cachedHashCode = cachedHashCode;
 	}
 
+	final void markReferenced() {
+		// avoid writing to a shared cache line when the bit is already set
+		if ( !referenced ) referenced = true;
+	}
+
+	/** Clear the reference bit and return its previous value. */
+	final boolean clearReferenced() {
+		boolean result = referenced;
+		referenced = false;
+		return result;
+	}
+
 	/** Convert a {@link RuleContext} tree to a {@link PredictionContext} graph.
 	 *  Return {@link #EMPTY} if {@code outerContext} is empty or null.
 	 */
@@ -578,9 +597,10 @@ public abstract class PredictionContext {
 		}
 
 		if (!changed) {
-			contextCache.add(context);
-			visited.put(context, context);
-			return context;
+			// another thread may have added an equal context meanwhile
+			PredictionContext cached = contextCache.add(context);
+			visited.put(context, cached);
+			return cached;
 		}
 
 		PredictionContext updated;
@@ -595,7 +615,7 @@ public abstract class PredictionContext {
 			updated = new ArrayPredictionContext(parents, arrayPredictionContext.returnStates);
 		}
 
-		contextCache.add(updated);
+		updated = contextCache.add(updated);
 		visited.put(updated, updated);
 		visited.put(context, updated);
 
@@ -6,37 +6,141 @@
 
 package org.antlr.v4.runtime.atn;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /** Used to cache {@link PredictionContext} objects. Its used for the shared
  *  context cash associated with contexts in DFA states. This cache
  *  can be used for both lexers and parsers.
+ *
+ *  <p>The cache is safe for concurrent use without locking: when two threads
+ *  add equal contexts at the same time, both get the one which was added
+ *  first.</p>
  */
 public class PredictionContextCache {
-	protected final Map<PredictionContext, PredictionContext> cache =
-		new HashMap<PredictionContext, PredictionContext>();
+	protected final ConcurrentMap<PredictionContext, PredictionContext> cache =
+		new ConcurrentHashMap<PredictionContext, PredictionContext>();
+
+	/** The number of contexts in {@link #cache}, since
+	 *  {@link ConcurrentMap#size} is not constant time.
+	 */
+	private final AtomicInteger size = new AtomicInteger();
+
+	/** @see #setMaxSize */
+	private volatile int maxSize = Integer.MAX_VALUE;
+
+	/** Set while one thread runs {@link #evict}; other threads keep adding. */
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/** The hand of the CLOCK; only used by the thread running
+	 *  {@link #evict}.
+	 */
+	private Iterator<PredictionContext> hand;
 
 	/** Add a context to the cache and return it. If the context already exists,
 	 *  return that one instead and do not add a new context to the cache.
-	 *  Protect shared cache from unsafe thread access.
 	 */
 	public PredictionContext add(PredictionContext ctx) {
 		if ( ctx==PredictionContext.EMPTY ) return PredictionContext.EMPTY;
 		PredictionContext existing = cache.get(ctx);
 		if ( existing!=null ) {
-//			System.out.println(name+" reuses "+existing);
+			existing.markReferenced();
 			return existing;
 		}
-		cache.put(ctx, ctx);
+		if ( size.get()>=maxSize ) {
+			evict();
+		}
+		existing = cache.putIfAbsent(ctx, ctx);
+		if ( existing!=null ) {
+			return existing;
+		}
+		size.incrementAndGet();
 		return ctx;
 	}
 
 	public PredictionContext get(PredictionContext ctx) {
-		return cache.get(ctx);
+		PredictionContext existing = cache.get(ctx);
+		if ( existing!=null ) existing.markReferenced();
+		return existing;
 	}
 
 	public int size() {
-		return cache.size();
+		return size.get();
+	}
+
+	/**
+	 * Limit the number of contexts held by this cache. When a new context
+	 * would exceed the limit, a CLOCK pass first drops contexts which were
+	 * not looked up again since they were added or since the previous pass,
+	 * until a quarter of the budget is free again. Contexts only pass through this cache to be shared, so
+	 * dropping them does not affect the DFA states or configurations which
+	 * already refer to them.
+	 *
+	 * <p>Threads adding contexts during a pass are not blocked, so the
+	 * cache may briefly hold more than {@code maxSize} contexts.</p>
+	 *
+	 * @param maxSize The maximum number of contexts, at least 1; the
+	 * default is {@link Integer#MAX_VALUE}
+	 * @since 4.9
+	 */
+	public void setMaxSize(int maxSize) {
+		if ( maxSize<1 ) {
+			throw new IllegalArgumentException("maxSize must be at least 1.");
+		}
+		this.maxSize = maxSize;
+	}
+
+	/** @since 4.9 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/** Gets the number of contexts dropped because of {@link #setMaxSize}.
+	 *
+	 *  @since 4.9
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/** Run one CLOCK pass over the contexts, unless another thread is
+	 *  already doing so. The hand walks the table in iteration order,
+	 *  clearing the bits of referenced contexts and dropping the others.
+	 */
+	private void evict() {
+		if ( !evicting.compareAndSet(false, true) ) {
+			return;
+		}
+
+		try {
+			int target = maxSize - maxSize / 4;
+			// the second lap drops contexts whose bit was cleared by the first
+			int steps = 2 * size.get();
+			for (int step = 0; step < steps && size.get() > target; step++) {
+				if ( hand==null || !hand.hasNext() ) {
+					hand = cache.keySet().iterator();
+					if ( !hand.hasNext() ) break;
+				}
+
+				PredictionContext ctx = hand.next();
+				if ( ctx.clearReferenced() ) {
+					continue;
+				}
+				// count only the contexts this thread removed
+				if ( cache.remove(ctx)!=null ) {
+					size.decrementAndGet();
+					evictionCount.incrementAndGet();
+				}
+			}
+		}
+		finally {
+			evicting.set(false);
+		}
 	}
 }
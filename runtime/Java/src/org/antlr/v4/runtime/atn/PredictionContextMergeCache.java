@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.misc.DoubleKeyMap;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the results of {@link PredictionContext#merge} across
+ * predictions. By default a {@link ParserATNSimulator} forgets its merges
+ * after each prediction; given this cache with
+ * {@link ParserATNSimulator#setMergeCache}, it looks them up here instead,
+ * which pays off for grammars whose full-context predictions merge the same
+ * deep stacks again and again.
+ *
+ * <p>The cache is thread-safe, so one instance can serve all parsers of a
+ * grammar. Merging depends on whether the empty context is a wildcard, which
+ * it is for SLL but not for LL prediction, so the cache holds a table for
+ * each; see {@link #getTable}. When the number of merges exceeds
+ * {@link #getMaxSize}, the cache is emptied.</p>
+ *
+ * @since 4.9
+ */
+public class PredictionContextMergeCache {
+	public static final int DEFAULT_MAX_SIZE = 100000;
+
+	private final Table wildcardRootTable = new Table();
+	private final Table fullContextTable = new Table();
+
+	/** The number of merges in both tables. Puts which land in a row while
+	 *  it is removed can make this drift, so it is recounted after each
+	 *  eviction.
+	 */
+	private final AtomicInteger size = new AtomicInteger();
+
+	private volatile int maxSize;
+
+	/** Set while one thread empties the cache; other threads keep adding. */
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	public PredictionContextMergeCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize The maximum number of merges, at least 1
+	 */
+	public PredictionContextMergeCache(int maxSize) {
+		setMaxSize(maxSize);
+	}
+
+	/**
+	 * Return the table to pass to {@link PredictionContext#merge} with the
+	 * same {@code rootIsWildcard}.
+	 */
+	public DoubleKeyMap<PredictionContext, PredictionContext, PredictionContext> getTable(boolean rootIsWildcard) {
+		return rootIsWildcard ? wildcardRootTable : fullContextTable;
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Limit the number of merges held by this cache. When a new merge would
+	 * exceed the limit the cache is emptied first. Threads adding merges
+	 * while the cache is emptied are not blocked, so the cache may briefly
+	 * hold more than {@code maxSize} merges.
+	 *
+	 * @param maxSize The maximum number of merges, at least 1
+	 */
+	public void setMaxSize(int maxSize) {
+		if ( maxSize<1 ) {
+			throw new IllegalArgumentException("maxSize must be at least 1.");
+		}
+		this.maxSize = maxSize;
+	}
+
+	/** Gets the number of lookups which found a merge. */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/** Gets the number of lookups which found no merge. Since
+	 *  {@link PredictionContext#merge} looks up both orders of a pair, a
+	 *  merge which is not in the cache counts two misses.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/** Gets the number of merges dropped because of {@link #setMaxSize}. */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/** Remove all merges. */
+	public void clear() {
+		while ( !evicting.compareAndSet(false, true) ) {
+			Thread.yield();
+		}
+
+		try {
+			wildcardRootTable.removeAll();
+			fullContextTable.removeAll();
+			recount();
+		}
+		finally {
+			evicting.set(false);
+		}
+	}
+
+	/** Empty the cache unless another thread is already doing so. */
+	private void evict() {
+		if ( !evicting.compareAndSet(false, true) ) {
+			return;
+		}
+
+		try {
+			evictionCount.addAndGet(wildcardRootTable.removeAll() + fullContextTable.removeAll());
+			recount();
+		}
+		finally {
+			evicting.set(false);
+		}
+	}
+
+	/** Set {@link #size} to the number of merges in the live rows, which
+	 *  excludes the puts lost with a removed row. Puts running at the same
+	 *  time may be missed, which only delays the next eviction.
+	 */
+	private void recount() {
+		size.set(wildcardRootTable.count() + fullContextTable.count());
+	}
+
+	/** The merges for one value of {@code rootIsWildcard}, keyed by the
+	 *  contexts which were merged.
+	 */
+	private final class Table extends DoubleKeyMap<PredictionContext, PredictionContext, PredictionContext> {
+		private final ConcurrentMap<PredictionContext, ConcurrentMap<PredictionContext, PredictionContext>> merges =
+			new ConcurrentHashMap<PredictionContext, ConcurrentMap<PredictionContext, PredictionContext>>();
+
+		@Override
+		public PredictionContext put(PredictionContext a, PredictionContext b, PredictionContext merged) {
+			if ( size.get()>=maxSize ) {
+				evict();
+			}
+
+			ConcurrentMap<PredictionContext, PredictionContext> row = merges.get(a);
+			if ( row==null ) {
+				row = new ConcurrentHashMap<PredictionContext, PredictionContext>();
+				ConcurrentMap<PredictionContext, PredictionContext> existing = merges.putIfAbsent(a, row);
+				if ( existing!=null ) {
+					row = existing;
+				}
+			}
+
+			PredictionContext previous = row.put(b, merged);
+			if ( previous==null ) {
+				size.incrementAndGet();
+			}
+
+			return previous;
+		}
+
+		@Override
+		public PredictionContext get(PredictionContext a, PredictionContext b) {
+			Map<PredictionContext, PredictionContext> row = merges.get(a);
+			PredictionContext merged = row!=null ? row.get(b) : null;
+			if ( merged!=null ) {
+				hitCount.incrementAndGet();
+			}
+			else {
+				missCount.incrementAndGet();
+			}
+
+			return merged;
+		}
+
+		@Override
+		public Map<PredictionContext, PredictionContext> get(PredictionContext a) {
+			return merges.get(a);
+		}
+
+		@Override
+		public Collection<PredictionContext> values(PredictionContext a) {
+			Map<PredictionContext, PredictionContext> row = merges.get(a);
+			return row!=null ? row.values() : null;
+		}
+
+		@Override
+		public Set<PredictionContext> keySet() {
+			return merges.keySet();
+		}
+
+		@Override
+		public Set<PredictionContext> keySet(PredictionContext a) {
+			Map<PredictionContext, PredictionContext> row = merges.get(a);
+			return row!=null ? row.keySet() : null;
+		}
+
+		/** Remove all merges and return how many there were. */
+		int removeAll() {
+			int removed = 0;
+			for (PredictionContext a : merges.keySet()) {
+				Map<PredictionContext, PredictionContext> row = merges.remove(a);
+				if ( row!=null ) {
+					// a put may still land in a removed row; it is lost with it
+					removed += row.size();
+				}
+			}
+
+			return removed;
+		}
+
+		/** Return the number of merges in this table. */
+		int count() {
+			int count = 0;
+			for (Map<PredictionContext, PredictionContext> row : merges.values()) {
+				count += row.size();
+			}
+
+			return count;
+		}
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.atn;
+
+import org.antlr.v4.runtime.Recognizer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters for predictions, cheap enough to leave enabled in production.
+ * Unlike {@link ProfilingATNSimulator}, which records events and times every
+ * prediction, a simulator only counts its steps in plain fields and adds
+ * them here once per prediction.
+ *
+ * <p>For a {@link ParserATNSimulator} the counters are kept per decision,
+ * for a {@link LexerATNSimulator} per mode, where a prediction is the match
+ * of one token. One instance may be shared by any number of simulators for
+ * the same grammar, on any number of threads; the counters are striped, so
+ * threads rarely update the same memory. Reads sum the stripes and are not
+ * atomic with respect to concurrent updates.</p>
+ *
+ * <p>If a slow prediction threshold is set, predictions are timed with
+ * {@link System#nanoTime} and {@link #slowPrediction} is called for those
+ * which take longer. Override it to, e.g., commit a JFR event.</p>
+ *
+ * @see ParserATNSimulator#setMetrics
+ * @see LexerATNSimulator#setMetrics
+ * @since 4.9
+ */
+public class PredictionMetrics {
+	public enum Counter {
+		/** Number of predictions. */
+		PREDICTIONS,
+		/** Symbols of lookahead handled by an existing DFA edge. */
+		DFA_TRANSITIONS,
+		/** Symbols of lookahead for which the ATN was simulated to compute a
+		 *  DFA edge.
+		 */
+		ATN_TRANSITIONS,
+		/** Predictions which fell back from SLL to full-context LL. */
+		FULL_CONTEXT_PREDICTIONS,
+		/** Symbols of lookahead handled by full-context LL prediction. */
+		FULL_CONTEXT_TRANSITIONS,
+		/** DFA states added to the DFA. */
+		DFA_STATES,
+		/** Predictions which took longer than the slow prediction threshold. */
+		SLOW_PREDICTIONS
+	}
+
+	/**
+	 * Number of buckets in the lookahead histogram. Bucket {@code 0} counts
+	 * predictions with a lookahead of 1 symbol, bucket {@code k} those with
+	 * a lookahead of {@code 2^(k-1)+1..2^k} symbols, and the last bucket
+	 * all longer ones.
+	 */
+	public static final int LOOKAHEAD_BUCKETS = 8;
+
+	private static final int COUNTERS = Counter.values().length;
+
+	/** Longs per decision and stripe; 16 longs fill two cache lines. */
+	private static final int ROW = 16;
+
+	private static final int MAX_STRIPES = 16;
+
+	private final int numDecisions;
+	private final int stripeMask;
+	private final AtomicLongArray counts;
+
+	private volatile long slowPredictionThreshold;
+
+	/**
+	 * @param numDecisions the number of decisions of the parser, or the
+	 * number of modes of the lexer
+	 */
+	public PredictionMetrics(int numDecisions) {
+		if (numDecisions < 0) {
+			throw new IllegalArgumentException("numDecisions cannot be negative.");
+		}
+
+		int stripes = 1;
+		while (stripes < Runtime.getRuntime().availableProcessors() && stripes < MAX_STRIPES) {
+			stripes <<= 1;
+		}
+
+		this.numDecisions = numDecisions;
+		this.stripeMask = stripes - 1;
+		this.counts = new AtomicLongArray(stripes * numDecisions * ROW);
+	}
+
+	public int getNumberOfDecisions() {
+		return numDecisions;
+	}
+
+	/**
+	 * Return the threshold in nanoseconds above which a prediction is
+	 * reported to {@link #slowPrediction}, or {@code 0} if predictions are
+	 * not timed.
+	 */
+	public long getSlowPredictionThreshold() {
+		return slowPredictionThreshold;
+	}
+
+	/**
+	 * Set the threshold in nanoseconds above which a prediction is reported
+	 * to {@link #slowPrediction}. {@code 0}, the default, turns off timing.
+	 */
+	public void setSlowPredictionThreshold(long nanos) {
+		if (nanos < 0) {
+			throw new IllegalArgumentException("The threshold cannot be negative.");
+		}
+
+		slowPredictionThreshold = nanos;
+	}
+
+	/** Return the sum of {@code counter} over all decisions. */
+	public long get(Counter counter) {
+		long sum = 0;
+		for (int d = 0; d < numDecisions; d++) {
+			sum += get(d, counter);
+		}
+		return sum;
+	}
+
+	public long get(int decision, Counter counter) {
+		return sum(decision, counter.ordinal());
+	}
+
+	/** Return the lookahead histogram of {@code decision}; see
+	 *  {@link #LOOKAHEAD_BUCKETS}.
+	 */
+	public long[] getLookaheadHistogram(int decision) {
+		long[] histogram = new long[LOOKAHEAD_BUCKETS];
+		for (int i = 0; i < LOOKAHEAD_BUCKETS; i++) {
+			histogram[i] = sum(decision, COUNTERS + i);
+		}
+		return histogram;
+	}
+
+	/** Set all counters to zero. */
+	public void reset() {
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+	}
+
+	private long sum(int decision, int field) {
+		if (decision < 0 || decision >= numDecisions) {
+			throw new IndexOutOfBoundsException("decision "+decision+" out of range 0.."+(numDecisions-1));
+		}
+
+		long sum = 0;
+		for (int stripe = 0; stripe <= stripeMask; stripe++) {
+			sum += counts.get((stripe * numDecisions + decision) * ROW + field);
+		}
+		return sum;
+	}
+
+	/**
+	 * Record one prediction.
+	 *
+	 * @param steps the symbols of lookahead handled by SLL or lexer DFA/ATN
+	 * simulation
+	 * @param atnSteps how many of {@code steps} simulated the ATN
+	 * @param fullContextSteps the symbols of lookahead handled by full-context
+	 * LL prediction; {@code 0} if there was no fallback to LL
+	 * @param statesAdded DFA states added during the prediction
+	 */
+	void record(int decision, int steps, int atnSteps, int fullContextSteps, int statesAdded) {
+		if (decision < 0 || decision >= numDecisions) {
+			return;
+		}
+
+		int row = (stripe() * numDecisions + decision) * ROW;
+		counts.getAndIncrement(row + Counter.PREDICTIONS.ordinal());
+		if (steps > atnSteps) {
+			counts.getAndAdd(row + Counter.DFA_TRANSITIONS.ordinal(), steps - atnSteps);
+		}
+		if (atnSteps > 0) {
+			counts.getAndAdd(row + Counter.ATN_TRANSITIONS.ordinal(), atnSteps);
+		}
+		if (fullContextSteps > 0) {
+			counts.getAndIncrement(row + Counter.FULL_CONTEXT_PREDICTIONS.ordinal());
+			counts.getAndAdd(row + Counter.FULL_CONTEXT_TRANSITIONS.ordinal(), fullContextSteps);
+		}
+		if (statesAdded > 0) {
+			counts.getAndAdd(row + Counter.DFA_STATES.ordinal(), statesAdded);
+		}
+
+		counts.getAndIncrement(row + COUNTERS + bucket(Math.max(steps, fullContextSteps)));
+	}
+
+	/** Return {@code 0} if timing is off, otherwise the start time of a
+	 *  prediction.
+	 */
+	final long startTime() {
+		return slowPredictionThreshold > 0 ? System.nanoTime() : 0;
+	}
+
+	/** Report the prediction started at {@code startTime} if it was slow. */
+	final void checkTime(long startTime, Recognizer<?, ?> recognizer, int decision, int startIndex, int stopIndex) {
+		if (startTime == 0) {
+			return;
+		}
+
+		long nanos = System.nanoTime() - startTime;
+		long threshold = slowPredictionThreshold;
+		if (threshold > 0 && nanos > threshold) {
+			if (decision >= 0 && decision < numDecisions) {
+				counts.getAndIncrement((stripe() * numDecisions + decision) * ROW + Counter.SLOW_PREDICTIONS.ordinal());
+			}
+			slowPrediction(recognizer, decision, startIndex, stopIndex, nanos);
+		}
+	}
+
+	/**
+	 * Called after a prediction which took longer than the slow prediction
+	 * threshold, on the thread which made it. The default implementation
+	 * does nothing.
+	 *
+	 * @param recognizer the parser or lexer, or {@code null} if the
+	 * simulator has none
+	 * @param decision the decision, or the lexer mode
+	 * @param startIndex the index of the first symbol of lookahead
+	 * @param stopIndex the index of the last symbol of lookahead
+	 * @param nanos the duration of the prediction
+	 */
+	protected void slowPrediction(Recognizer<?, ?> recognizer, int decision, int startIndex, int stopIndex, long nanos) {
+	}
+
+	private int stripe() {
+		long id = Thread.currentThread().getId();
+		int h = (int)(id ^ (id >>> 32)) * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & stripeMask;
+	}
+
+	private static int bucket(int lookahead) {
+		if (lookahead <= 1) {
+			return 0;
+		}
+
+		int bucket = 32 - Integer.numberOfLeadingZeros(lookahead - 1);
+		return Math.min(bucket, LOOKAHEAD_BUCKETS - 1);
+	}
+}
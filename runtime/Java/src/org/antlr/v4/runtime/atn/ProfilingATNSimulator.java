@@ -40,6 +40,11 @@ public class ProfilingATNSimulator extends ParserATNSimulator {
  	 */
 	protected int conflictingAltResolvedBySLL;
 
+	/** Whether the current prediction skipped SLL prediction; see
+	 *  {@link ParserATNSimulator#setAdaptivePolicy}.
+	 */
+	protected boolean fullContextOnly;
+
 	public ProfilingATNSimulator(Parser parser) {
 		super(parser,
 				parser.getInterpreter().atn,
@@ -52,11 +57,18 @@ public class ProfilingATNSimulator extends ParserATNSimulator {
 		}
 	}
 
+	@Override
+	public boolean isStaticPredictionEnabled() {
+		// every decision is profiled
+		return false;
+	}
+
 	@Override
 	public int adaptivePredict(TokenStream input, int decision, ParserRuleContext outerContext) {
 		try {
 			this._sllStopIndex = -1;
 			this._llStopIndex = -1;
+			this.fullContextOnly = false;
 			this.currentDecision = decision;
 			long start = System.nanoTime(); // expensive but useful info
 			int alt = super.adaptivePredict(input, decision, outerContext);
@@ -64,13 +76,15 @@ public class ProfilingATNSimulator extends ParserATNSimulator {
 			decisions[decision].timeInPrediction += (stop-start);
 			decisions[decision].invocations++;
 
-			int SLL_k = _sllStopIndex - _startIndex + 1;
-			decisions[decision].SLL_TotalLook += SLL_k;
-			decisions[decision].SLL_MinLook = decisions[decision].SLL_MinLook==0 ? SLL_k : Math.min(decisions[decision].SLL_MinLook, SLL_k);
-			if ( SLL_k > decisions[decision].SLL_MaxLook ) {
-				decisions[decision].SLL_MaxLook = SLL_k;
-				decisions[decision].SLL_MaxLookEvent =
-						new LookaheadEventInfo(decision, null, alt, input, _startIndex, _sllStopIndex, false);
+			if (!fullContextOnly) {
+				int SLL_k = _sllStopIndex - _startIndex + 1;
+				decisions[decision].SLL_TotalLook += SLL_k;
+				decisions[decision].SLL_MinLook = decisions[decision].SLL_MinLook==0 ? SLL_k : Math.min(decisions[decision].SLL_MinLook, SLL_k);
+				if ( SLL_k > decisions[decision].SLL_MaxLook ) {
+					decisions[decision].SLL_MaxLook = SLL_k;
+					decisions[decision].SLL_MaxLookEvent =
+							new LookaheadEventInfo(decision, null, alt, input, _startIndex, _sllStopIndex, false);
+				}
 			}
 
 			if (_llStopIndex >= 0) {
@@ -177,9 +191,16 @@ public class ProfilingATNSimulator extends ParserATNSimulator {
 		super.reportAttemptingFullContext(dfa, conflictingAlts, configs, startIndex, stopIndex);
 	}
 
+	@Override
+	protected int execATNFullContextOnly(DFA dfa, TokenStream input, int startIndex, ParserRuleContext outerContext) {
+		fullContextOnly = true;
+		decisions[currentDecision].LL_Direct++;
+		return super.execATNFullContextOnly(dfa, input, startIndex, outerContext);
+	}
+
 	@Override
 	protected void reportContextSensitivity(DFA dfa, int prediction, ATNConfigSet configs, int startIndex, int stopIndex) {
-		if ( prediction != conflictingAltResolvedBySLL ) {
+		if ( !fullContextOnly && prediction != conflictingAltResolvedBySLL ) {
 			decisions[currentDecision].contextSensitivities.add(
 					new ContextSensitivityInfo(currentDecision, configs, _input, startIndex, stopIndex)
 			);
@@ -198,7 +219,7 @@ public class ProfilingATNSimulator extends ParserATNSimulator {
 		else {
 			prediction = configs.getAlts().nextSetBit(0);
 		}
-		if ( configs.fullCtx && prediction != conflictingAltResolvedBySLL ) {
+		if ( configs.fullCtx && !fullContextOnly && prediction != conflictingAltResolvedBySLL ) {
 			// Even though this is an ambiguity we are reporting, we can
 			// still detect some context sensitivities.  Both SLL and LL
 			// are showing a conflict, hence an ambiguity, but if they resolve
@@ -16,17 +16,57 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public class DFA {
+	private static final AtomicReferenceFieldUpdater<DFAState, DFAState[]> PRECEDENCE_EDGES_UPDATER =
+		AtomicReferenceFieldUpdater.newUpdater(DFAState.class, DFAState[].class, "edges");
+
 	/** A set of all DFA states. Use {@link Map} so we can get old state back
-	 *  ({@link Set} only allows you to see if it's there).
+	 *  ({@link Set} only allows you to see if it's there). This is a
+	 *  {@link ConcurrentMap}; new states should be added with
+	 *  {@link #addState}, which also enforces {@link #setMaxStates}.
      */
 
-	public final Map<DFAState, DFAState> states = new HashMap<DFAState, DFAState>();
+	public final Map<DFAState, DFAState> states;
+
+	private final ConcurrentMap<DFAState, DFAState> stateSet =
+		new ConcurrentHashMap<DFAState, DFAState>();
+
+	/** Source of {@link DFAState#stateNumber} for states added by
+	 *  {@link #addState}.
+	 */
+	private final AtomicInteger nextStateNumber = new AtomicInteger();
+
+	/** Number of states in {@link #stateSet}, tracked separately because
+	 *  {@link ConcurrentMap#size} is not constant time.
+	 */
+	private final AtomicInteger stateCount = new AtomicInteger();
+
+	/** @see #setMaxStates */
+	private volatile int maxStates = Integer.MAX_VALUE;
+
+	/** Set while one thread runs {@link #evictColdStates}. */
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
+	/** The states of {@link #stateSet} in CLOCK order: eviction passes take
+	 *  states from the head and put those they keep back at the tail, and
+	 *  {@link #addState} appends new states.
+	 */
+	private final Queue<DFAState> clock = new ConcurrentLinkedQueue<DFAState>();
+
+	private final AtomicLong evictionCount = new AtomicLong();
 
 	public volatile DFAState s0;
 
@@ -47,6 +87,7 @@ public class DFA {
 	}
 
 	public DFA(DecisionState atnStartState, int decision) {
+		this.states = stateSet;
 		this.atnStartState = atnStartState;
 		this.decision = decision;
 
@@ -101,7 +142,16 @@ public class DFA {
 			return null;
 		}
 
-		return s0.edges[precedence];
+		DFAState startState = s0.edges[precedence];
+		if (startState != null) {
+			if (startState.isEvicted()) {
+				return null;
+			}
+
+			startState.markReferenced();
+		}
+
+		return startState;
 	}
 
 	/**
@@ -114,7 +164,7 @@ public class DFA {
 	 * @throws IllegalStateException if this is not a precedence DFA.
 	 * @see #isPrecedenceDfa()
 	 */
-	@SuppressWarnings({"SynchronizeOnNonFinalField", "null"})
+	@SuppressWarnings("null")
 	public final void setPrecedenceStartState(int precedence, DFAState startState) {
 		if (!isPrecedenceDfa()) {
 			throw new IllegalStateException("Only precedence DFAs may contain a precedence start state.");
@@ -124,15 +174,23 @@ public class DFA {
 			return;
 		}
 
-		// synchronization on s0 here is ok. when the DFA is turned into a
-		// precedence DFA, s0 will be initialized once and not updated again
-		synchronized (s0) {
+		// when the DFA is turned into a precedence DFA, s0 will be initialized
+		// once and not updated again. Its edges array grows by copy-on-write;
+		// a start state stored by a racing thread into an array which is then
+		// replaced is simply computed again by the next prediction.
+		while (true) {
 			// s0.edges is never null for a precedence DFA
-			if (precedence >= s0.edges.length) {
-				s0.edges = Arrays.copyOf(s0.edges, precedence + 1);
+			DFAState[] edges = s0.edges;
+			if (precedence < edges.length) {
+				edges[precedence] = startState;
+				return;
 			}
 
-			s0.edges[precedence] = startState;
+			DFAState[] grown = Arrays.copyOf(edges, precedence + 1);
+			grown[precedence] = startState;
+			if (PRECEDENCE_EDGES_UPDATER.compareAndSet(s0, edges, grown)) {
+				return;
+			}
 		}
 	}
 
@@ -154,6 +212,140 @@ public class DFA {
 		}
 	}
 
+	/**
+	 * Add {@code state} to this DFA if no equivalent state is present, and
+	 * return the instance stored in the DFA. This method does not lock; if
+	 * several threads add equivalent states at the same time, all of them
+	 * receive the same instance.
+	 *
+	 * <p>The state is assigned a new {@link DFAState#stateNumber} before it
+	 * becomes visible to other threads, so callers must make any other
+	 * changes to {@code state} before calling this method.</p>
+	 *
+	 * @param state The state to add
+	 * @return The existing state equivalent to {@code state}, or
+	 * {@code state} itself if it was added
+	 *
+	 * @since 4.9
+	 */
+	public DFAState addState(DFAState state) {
+		DFAState existing = stateSet.get(state);
+		if ( existing!=null ) {
+			existing.markReferenced();
+			return existing;
+		}
+
+		state.stateNumber = nextStateNumber.getAndIncrement();
+		state.markReferenced();
+		existing = stateSet.putIfAbsent(state, state);
+		if ( existing!=null ) return existing;
+
+		clock.offer(state);
+		if ( stateCount.incrementAndGet()>maxStates ) {
+			// the caller is about to add an edge to the new state, so the
+			// pass must not evict it
+			evictColdStates(state);
+		}
+
+		return state;
+	}
+
+	/**
+	 * Gets the maximum number of states this DFA keeps.
+	 *
+	 * @see #setMaxStates
+	 * @since 4.9
+	 */
+	public int getMaxStates() {
+		return maxStates;
+	}
+
+	/**
+	 * Limit the number of states this DFA keeps. When {@link #addState}
+	 * takes the DFA over the limit, a CLOCK pass evicts states which were
+	 * not used since the previous pass until a quarter of the budget is
+	 * free again, and drops the edges leading to them. Evicted states are
+	 * recomputed through ATN simulation when they are needed again. The
+	 * start state and the state being added are never evicted, so with a
+	 * limit of 1 the DFA may hold 2 states.
+	 *
+	 * <p>The default is {@link Integer#MAX_VALUE}, i.e., the DFA grows
+	 * without limit. Another thread may add an edge to a state while it is
+	 * evicted, after the pass dropped the edges to it. Evicted states are
+	 * marked, and prediction treats an edge to one as missing and replaces
+	 * it with an edge to a state in the DFA, so such a state is never used
+	 * again and is kept in memory only until its edge is next taken.</p>
+	 *
+	 * @param maxStates The maximum number of states, at least 1
+	 * @since 4.9
+	 */
+	public void setMaxStates(int maxStates) {
+		if ( maxStates<1 ) {
+			throw new IllegalArgumentException("maxStates must be at least 1.");
+		}
+
+		this.maxStates = maxStates;
+		if ( stateCount.get()>maxStates ) {
+			evictColdStates(null);
+		}
+	}
+
+	/**
+	 * Gets the number of states evicted from this DFA so far.
+	 *
+	 * @see #setMaxStates
+	 * @since 4.9
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/** Run one CLOCK pass over the states, unless another thread is already
+	 *  doing so. The pass never evicts the start state or {@code pinned}.
+	 *
+	 *  <p>Dropping the edges to the evicted states visits every edge of the
+	 *  remaining states. A pass evicts states until a quarter of the budget
+	 *  is free, so this costs amortized time proportional to the edges of
+	 *  one state for each state added.</p>
+	 */
+	private void evictColdStates(DFAState pinned) {
+		if ( !evicting.compareAndSet(false, true) ) return;
+		try {
+			int target = maxStates - maxStates / 4;
+			Set<DFAState> evicted = Collections.newSetFromMap(new IdentityHashMap<DFAState, Boolean>());
+			DFAState startState = s0;
+			// the second lap evicts states whose bit was cleared by the first
+			int steps = 2 * stateCount.get();
+			for (int step = 0; step < steps && stateCount.get() > target; step++) {
+				DFAState s = clock.poll();
+				if ( s==null ) break;
+				if ( s==startState || s==pinned || s.clearReferenced() ) {
+					clock.offer(s);
+				}
+				else if ( stateSet.remove(s, s) ) {
+					s.markEvicted();
+					stateCount.decrementAndGet();
+					evicted.add(s);
+				}
+			}
+
+			if ( evicted.isEmpty() ) return;
+
+			for (DFAState s : stateSet.keySet()) {
+				s.removeEdgesTo(evicted);
+			}
+
+			if ( precedenceDfa ) {
+				s0.removeEdgesTo(evicted);
+			}
+
+			evictionCount.addAndGet(evicted.size());
+		}
+		finally {
+			evicting.set(false);
+		}
+	}
+
 	/**
 	 * Return a list of all states in this DFA, ordered by state number.
 	 */
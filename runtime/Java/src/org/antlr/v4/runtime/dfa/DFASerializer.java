@@ -8,6 +8,7 @@ package org.antlr.v4.runtime.dfa;
 
 import org.antlr.v4.runtime.Vocabulary;
 import org.antlr.v4.runtime.VocabularyImpl;
+import org.antlr.v4.runtime.misc.Interval;
 
 import java.util.Arrays;
 import java.util.List;
@@ -48,6 +49,20 @@ public class DFASerializer {
 					buf.append("-").append(label).append("->").append(getStateString(t)).append('\n');
 				}
 			}
+
+			SparseEdgeMap sparseEdges = s.sparseEdges;
+			if ( sparseEdges!=null ) {
+				List<Interval> ranges = sparseEdges.getRanges();
+				List<DFAState> targets = sparseEdges.getTargets();
+				for (int i=0; i<ranges.size(); i++) {
+					DFAState t = targets.get(i);
+					if ( t.stateNumber != Integer.MAX_VALUE ) {
+						buf.append(getStateString(s));
+						String label = getRangeEdgeLabel(ranges.get(i));
+						buf.append("-").append(label).append("->").append(getStateString(t)).append('\n');
+					}
+				}
+			}
 		}
 
 		String output = buf.toString();
@@ -60,6 +75,17 @@ public class DFASerializer {
 		return vocabulary.getDisplayName(i - 1);
 	}
 
+	/** Label for an edge stored in {@link DFAState#sparseEdges}, which holds
+	 *  the symbols themselves rather than shifted edge indexes.
+	 *
+	 * @since 4.9
+	 */
+	protected String getRangeEdgeLabel(Interval range) {
+		String label = getEdgeLabel(range.a + 1);
+		if ( range.b==range.a ) return label;
+		return label + ".." + getEdgeLabel(range.b + 1);
+	}
+
 
 	protected String getStateString(DFAState s) {
 		int n = s.stateNumber;
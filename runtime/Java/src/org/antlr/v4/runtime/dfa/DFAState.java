@@ -10,6 +10,7 @@ import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.atn.ATN;
 import org.antlr.v4.runtime.atn.ATNConfig;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
 import org.antlr.v4.runtime.atn.LexerActionExecutor;
 import org.antlr.v4.runtime.atn.ParserATNSimulator;
 import org.antlr.v4.runtime.atn.SemanticContext;
@@ -18,6 +19,7 @@ import org.antlr.v4.runtime.misc.MurmurHash;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /** A DFA state represents a set of possible ATN configurations.
  *  As Aho, Sethi, Ullman p. 117 says "The DFA uses its state
@@ -51,9 +53,21 @@ public class DFAState {
 
 	/** {@code edges[symbol]} points to target of symbol. Shift up by 1 so (-1)
 	 *  {@link Token#EOF} maps to {@code edges[0]}.
+	 *
+	 *  <p>The array is allocated once by {@link #setEdge} and never replaced,
+	 *  except for the start state of a precedence DFA which grows by
+	 *  copy-on-write in {@link DFA#setPrecedenceStartState}.</p>
 	 */
 
-	public DFAState[] edges;
+	public volatile DFAState[] edges;
+
+	/** Lexer edges on code points above {@link LexerATNSimulator#MAX_DFA_EDGE},
+	 *  keyed by ranges of code points which lead to the same target. This
+	 *  is {@code null} until the first such edge is added.
+	 *
+	 * @since 4.9
+	 */
+	public volatile SparseEdgeMap sparseEdges;
 
 	public boolean isAcceptState = false;
 
@@ -103,12 +117,124 @@ public class DFAState {
 		}
 	}
 
+	/** Reference bit for the CLOCK eviction in {@link DFA#addState}. This is
+	 *  not volatile; a lost update only makes eviction less precise.
+	 */
+	private boolean referenced;
+
+	/** Set when the state is evicted from its DFA. This is not volatile; a
+	 *  reader which misses the update follows an edge to an evicted state,
+	 *  whose configurations and prediction are still correct.
+	 */
+	private boolean evicted;
+
+	private static final AtomicReferenceFieldUpdater<DFAState, DFAState[]> EDGES_UPDATER =
+		AtomicReferenceFieldUpdater.newUpdater(DFAState.class, DFAState[].class, "edges");
+
+	private static final AtomicReferenceFieldUpdater<DFAState, SparseEdgeMap> SPARSE_EDGES_UPDATER =
+		AtomicReferenceFieldUpdater.newUpdater(DFAState.class, SparseEdgeMap.class, "sparseEdges");
+
 	public DFAState() { }
 
 	public DFAState(int stateNumber) { this.stateNumber = stateNumber; }
 
 	public DFAState(ATNConfigSet configs) { this.configs = configs; }
 
+	/**
+	 * Set {@code edges[index]} to {@code target} without locking, first
+	 * allocating {@link #edges} with {@code size} elements if necessary.
+	 *
+	 * <p>The target of an edge is a function of this state's configurations
+	 * and the input symbol, and callers pass the instance stored in the
+	 * {@link DFA}, so concurrent writers of the same element always store
+	 * the same object. The only update which could be lost is the allocation
+	 * of the array itself, which is done with a compare-and-set.</p>
+	 *
+	 * @since 4.9
+	 */
+	public final void setEdge(int index, int size, DFAState target) {
+		DFAState[] edges = this.edges;
+		if ( edges==null ) {
+			edges = new DFAState[size];
+			if ( !EDGES_UPDATER.compareAndSet(this, null, edges) ) {
+				edges = this.edges;
+			}
+		}
+
+		edges[index] = target;
+	}
+
+	/**
+	 * Map the symbols {@code a..b} to {@code target} in {@link #sparseEdges}
+	 * without locking. The edge is not added if the map already holds
+	 * {@code maxSize} ranges.
+	 *
+	 * @since 4.9
+	 */
+	public final void setSparseEdge(int a, int b, DFAState target, int maxSize) {
+		while ( true ) {
+			SparseEdgeMap current = sparseEdges;
+			SparseEdgeMap base = current!=null ? current : SparseEdgeMap.EMPTY;
+			if ( base.size()>=maxSize ) return;
+			if ( SPARSE_EDGES_UPDATER.compareAndSet(this, current, base.put(a, b, target)) ) return;
+		}
+	}
+
+	/**
+	 * Record that this state was used for prediction, so that it is not
+	 * evicted by the next pass of a DFA which is over its state limit.
+	 *
+	 * @see DFA#setMaxStates
+	 * @since 4.9
+	 */
+	public final void markReferenced() {
+		// avoid writing to a shared cache line when the bit is already set
+		if ( !referenced ) referenced = true;
+	}
+
+	/** Clear the reference bit and return its previous value. */
+	final boolean clearReferenced() {
+		boolean result = referenced;
+		referenced = false;
+		return result;
+	}
+
+	/**
+	 * Return whether this state was evicted from its DFA. An edge added by
+	 * another thread while the state was evicted can still lead to it;
+	 * the simulators treat such an edge as missing, so it is replaced by an
+	 * edge to a state in the DFA the next time it is used.
+	 *
+	 * @see DFA#setMaxStates
+	 * @since 4.9
+	 */
+	public final boolean isEvicted() {
+		return evicted;
+	}
+
+	final void markEvicted() {
+		evicted = true;
+	}
+
+	/** Drop the edges of this state which lead to a state in
+	 *  {@code evicted}.
+	 */
+	final void removeEdgesTo(Set<DFAState> evicted) {
+		DFAState[] edges = this.edges;
+		if ( edges!=null ) {
+			for (int i = 0; i < edges.length; i++) {
+				if ( edges[i]!=null && evicted.contains(edges[i]) ) edges[i] = null;
+			}
+		}
+
+		while ( true ) {
+			SparseEdgeMap current = sparseEdges;
+			if ( current==null ) return;
+			SparseEdgeMap updated = current.removeTargets(evicted);
+			if ( updated==current || SPARSE_EDGES_UPDATER.compareAndSet(this, current, updated) ) return;
+		}
+	}
+
 	/** Get the set of all alts mentioned by all ATN configurations in this
 	 *  DFA state.
 	 */
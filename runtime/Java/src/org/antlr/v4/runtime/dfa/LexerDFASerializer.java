@@ -7,6 +7,7 @@
 package org.antlr.v4.runtime.dfa;
 
 import org.antlr.v4.runtime.VocabularyImpl;
+import org.antlr.v4.runtime.misc.Interval;
 
 public class LexerDFASerializer extends DFASerializer {
 	public LexerDFASerializer(DFA dfa) {
@@ -21,4 +22,11 @@ public class LexerDFASerializer extends DFASerializer {
 				.append("'")
 				.toString();
 	}
+
+	@Override
+	protected String getRangeEdgeLabel(Interval range) {
+		String label = getEdgeLabel(range.a);
+		if ( range.b==range.a ) return label;
+		return label + ".." + getEdgeLabel(range.b);
+	}
 }
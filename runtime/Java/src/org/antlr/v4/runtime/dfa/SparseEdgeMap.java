@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.dfa;
+
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/** An immutable map from disjoint symbol ranges to target DFA states.
+ *  The lexer uses this for edges on code points outside the dense
+ *  {@link DFAState#edges} table, so that a single entry can cover a whole
+ *  run of code points (e.g., a block of CJK ideographs) which lead to the
+ *  same target.
+ *
+ *  <p>Instances are never modified after construction. {@link #put} returns
+ *  a new map, so readers may follow a {@link DFAState#sparseEdges} reference
+ *  without locking while a writer replaces it with
+ *  {@link DFAState#setSparseEdge}.</p>
+ *
+ * @since 4.9
+ */
+public final class SparseEdgeMap {
+	public static final SparseEdgeMap EMPTY =
+		new SparseEdgeMap(new int[0], new int[0], new DFAState[0]);
+
+	/** Inclusive lower bound of each range, sorted ascending. */
+	private final int[] starts;
+	/** Inclusive upper bound of each range. */
+	private final int[] stops;
+	private final DFAState[] targets;
+
+	private SparseEdgeMap(int[] starts, int[] stops, DFAState[] targets) {
+		this.starts = starts;
+		this.stops = stops;
+		this.targets = targets;
+	}
+
+	public int size() {
+		return starts.length;
+	}
+
+	/** Return the target state for {@code symbol}, or {@code null} if no
+	 *  range in this map contains it.
+	 */
+	public DFAState get(int symbol) {
+		int i = Arrays.binarySearch(starts, symbol);
+		if ( i<0 ) {
+			i = -i - 2; // index of the last range starting before symbol
+			if ( i<0 || stops[i]<symbol ) return null;
+		}
+		return targets[i];
+	}
+
+	/** Return a copy of this map with {@code [a..b]} mapped to
+	 *  {@code target}. Any existing ranges which overlap {@code [a..b]}
+	 *  are dropped.
+	 */
+	public SparseEdgeMap put(int a, int b, DFAState target) {
+		int lo = 0;
+		while ( lo<starts.length && stops[lo]<a ) lo++;
+		int hi = lo;
+		while ( hi<starts.length && starts[hi]<=b ) hi++;
+		// ranges [lo, hi) overlap [a..b] and are replaced by one range
+		int n = starts.length - (hi - lo) + 1;
+		int[] newStarts = new int[n];
+		int[] newStops = new int[n];
+		DFAState[] newTargets = new DFAState[n];
+		System.arraycopy(starts, 0, newStarts, 0, lo);
+		System.arraycopy(stops, 0, newStops, 0, lo);
+		System.arraycopy(targets, 0, newTargets, 0, lo);
+		newStarts[lo] = a;
+		newStops[lo] = b;
+		newTargets[lo] = target;
+		int tail = starts.length - hi;
+		System.arraycopy(starts, hi, newStarts, lo + 1, tail);
+		System.arraycopy(stops, hi, newStops, lo + 1, tail);
+		System.arraycopy(targets, hi, newTargets, lo + 1, tail);
+		return new SparseEdgeMap(newStarts, newStops, newTargets);
+	}
+
+	/** Return a copy of this map without the ranges leading to a state in
+	 *  {@code targets}, or this map itself if there are none.
+	 */
+	public SparseEdgeMap removeTargets(Set<DFAState> targets) {
+		int n = 0;
+		for (DFAState target : this.targets) {
+			if ( !targets.contains(target) ) n++;
+		}
+		if ( n==this.targets.length ) return this;
+
+		int[] newStarts = new int[n];
+		int[] newStops = new int[n];
+		DFAState[] newTargets = new DFAState[n];
+		int j = 0;
+		for (int i = 0; i < starts.length; i++) {
+			if ( targets.contains(this.targets[i]) ) continue;
+			newStarts[j] = starts[i];
+			newStops[j] = stops[i];
+			newTargets[j] = this.targets[i];
+			j++;
+		}
+		return new SparseEdgeMap(newStarts, newStops, newTargets);
+	}
+
+	/** Return the ranges in this map in ascending order. */
+	public List<Interval> getRanges() {
+		List<Interval> ranges = new ArrayList<Interval>(starts.length);
+		for (int i = 0; i < starts.length; i++) {
+			ranges.add(Interval.of(starts[i], stops[i]));
+		}
+		return ranges;
+	}
+
+	/** Return the targets in this map, parallel to {@link #getRanges}. */
+	public List<DFAState> getTargets() {
+		return Arrays.asList(targets.clone());
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder("{");
+		for (int i = 0; i < starts.length; i++) {
+			if ( i>0 ) buf.append(", ");
+			buf.append(starts[i]).append("..").append(stops[i]);
+			buf.append("->").append(targets[i].stateNumber);
+		}
+		return buf.append('}').toString();
+	}
+}
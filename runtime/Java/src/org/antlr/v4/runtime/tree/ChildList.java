@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The list of {@link org.antlr.v4.runtime.ParserRuleContext#children}: an
+ * array which starts small and grows by half, since most contexts have only
+ * a few children. Unlike {@link java.util.ArrayList}, {@link #clear} keeps
+ * the array, so {@link org.antlr.v4.runtime.ParseTreeArena} can reuse the
+ * list for another context.
+ *
+ * @since 4.9
+ */
+public class ChildList extends AbstractList<ParseTree> implements RandomAccess {
+	public static final int DEFAULT_CAPACITY = 4;
+
+	private static final ParseTree[] EMPTY = new ParseTree[0];
+
+	private ParseTree[] elements;
+	private int size;
+
+	public ChildList() {
+		elements = EMPTY;
+	}
+
+	public ChildList(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException();
+		}
+
+		elements = capacity > 0 ? new ParseTree[capacity] : EMPTY;
+	}
+
+	@Override
+	public ParseTree get(int index) {
+		checkIndex(index);
+		return elements[index];
+	}
+
+	@Override
+	public ParseTree set(int index, ParseTree element) {
+		checkIndex(index);
+		ParseTree previous = elements[index];
+		elements[index] = element;
+		return previous;
+	}
+
+	@Override
+	public boolean add(ParseTree element) {
+		if (size == elements.length) {
+			grow(size + 1);
+		}
+
+		elements[size++] = element;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public void add(int index, ParseTree element) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+
+		if (size == elements.length) {
+			grow(size + 1);
+		}
+
+		System.arraycopy(elements, index, elements, index + 1, size - index);
+		elements[index] = element;
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public ParseTree remove(int index) {
+		checkIndex(index);
+		ParseTree previous = elements[index];
+		System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+		elements[--size] = null;
+		modCount++;
+		return previous;
+	}
+
+	/** Remove all elements, keeping the capacity of the list. */
+	@Override
+	public void clear() {
+		Arrays.fill(elements, 0, size, null);
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/** Reduce the capacity of this list to its size. */
+	public void trimToSize() {
+		if (size < elements.length) {
+			elements = size > 0 ? Arrays.copyOf(elements, size) : EMPTY;
+		}
+	}
+
+	private void grow(int minCapacity) {
+		int capacity = Math.max(elements.length + (elements.length >> 1), DEFAULT_CAPACITY);
+		elements = Arrays.copyOf(elements, Math.max(capacity, minCapacity));
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+
+/** Receives the subtrees a parser completes in streaming mode.
+ *
+ * @see Parser#setStreamingRule
+ * @since 4.9
+ */
+public interface ParseTreeSink {
+	/** Called when {@code ctx} is complete. The parser drops its reference
+	 *  to {@code ctx} when this method returns.
+	 */
+	void emit(ParserRuleContext ctx);
+}
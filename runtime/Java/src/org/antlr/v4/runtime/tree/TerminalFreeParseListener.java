@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.runtime.tree;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.Token;
+
+/** Receives the events of a parse as it happens, with rule indexes and
+ *  tokens instead of parse tree nodes. Combined with
+ *  {@link Parser#setBuildParseTree setBuildParseTree(false)} and no parse
+ *  listeners, the parser then creates no terminal or error nodes and links
+ *  no contexts into a tree.
+ *
+ *  <p>In that mode a generated rule with no arguments, return values,
+ *  locals, labels, actions or predicates, which no other rule labels,
+ *  reuses the context of its last finished invocation, so the parse only
+ *  allocates a context when a rule is nested in itself. Prediction and
+ *  error recovery still read the contexts of the rules in progress. A
+ *  context returned by such a rule is valid until the rule is invoked
+ *  again. Left-recursive rules and the interpreter always create new
+ *  contexts.</p>
+ *
+ *  <p>The events are those of the listeners added with
+ *  {@link Parser#addParseListener}, in the same order.</p>
+ *
+ * @see Parser#setTerminalFreeParseListener
+ * @since 4.9
+ */
+public interface TerminalFreeParseListener {
+	/** A rule starts at the token with index {@code startTokenIndex}. */
+	void enterRule(int ruleIndex, int startTokenIndex);
+
+	/** The parser predicted the outer alternative {@code altNumber} of
+	 *  the current rule. The interpreter does not report alternatives.
+	 */
+	void enterAlt(int ruleIndex, int altNumber);
+
+	/** A rule ends with the token with index {@code stopTokenIndex}, or -1
+	 *  if the rule has not matched a token.
+	 */
+	void exitRule(int ruleIndex, int stopTokenIndex);
+
+	void visitTerminal(Token token);
+
+	/** The parser consumed {@code token} during error recovery. */
+	void visitErrorToken(Token token);
+}
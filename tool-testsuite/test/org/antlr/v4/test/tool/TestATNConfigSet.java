@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.atn.ATNConfig;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.BasicState;
+import org.antlr.v4.runtime.atn.PredictionContext;
+import org.antlr.v4.runtime.atn.SemanticContext;
+import org.antlr.v4.runtime.atn.SingletonPredictionContext;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestATNConfigSet {
+	@Test public void testMergesConfigsWithSameKey() {
+		ATNState s = state(3);
+		ATNConfigSet configs = new ATNConfigSet(false);
+		ATNConfig first = new ATNConfig(s, 1, context(10));
+		configs.add(first);
+		configs.add(new ATNConfig(s, 1, context(11)));
+		configs.add(new ATNConfig(s, 2, context(10)));
+
+		assertEquals(2, configs.size());
+		assertSame(first, configs.get(0));
+		assertEquals(2, first.context.size());
+		assertTrue(configs.contains(new ATNConfig(s, 2, context(12))));
+		assertFalse(configs.contains(new ATNConfig(state(4), 2, context(10))));
+	}
+
+	@Test public void testPredicatesArePartOfKey() {
+		ATNState s = state(3);
+		SemanticContext p = new SemanticContext.Predicate(0, 0, false);
+		SemanticContext q = new SemanticContext.Predicate(0, 1, false);
+		ATNConfigSet configs = new ATNConfigSet(false);
+		configs.add(new ATNConfig(s, 1, context(10)));
+		configs.add(new ATNConfig(s, 1, context(10), p));
+		configs.add(new ATNConfig(s, 1, context(11), new SemanticContext.Predicate(0, 0, false)));
+		configs.add(new ATNConfig(s, 1, context(10), q));
+
+		assertEquals(3, configs.size());
+		assertTrue(configs.hasSemanticContext);
+		assertEquals(2, configs.get(1).context.size());
+		assertFalse(configs.contains(new ATNConfig(s, 1, context(10), new SemanticContext.Predicate(0, 2, false))));
+	}
+
+	@Test public void testManyConfigs() {
+		ATNConfigSet configs = new ATNConfigSet(false);
+		for (int i = 0; i < 1000; i++) {
+			configs.add(new ATNConfig(state(i % 250), 1 + i / 250, context(10)));
+		}
+		for (int i = 0; i < 1000; i++) {
+			configs.add(new ATNConfig(state(i % 250), 1 + i / 250, context(11)));
+		}
+
+		assertEquals(1000, configs.size());
+		for (int i = 0; i < 1000; i++) {
+			ATNConfig c = configs.get(i);
+			assertEquals(i % 250, c.state.stateNumber);
+			assertEquals(2, c.context.size());
+		}
+
+		configs.clear();
+		assertTrue(configs.isEmpty());
+		assertFalse(configs.contains(new ATNConfig(state(0), 1, context(10))));
+	}
+
+	@Test public void testConfigLookup() {
+		ATNState s = state(3);
+		ATNConfigSet configs = new ATNConfigSet(false);
+		configs.add(new ATNConfig(s, 1, context(10)));
+		configs.add(new ATNConfig(s, 2, context(10)));
+		assertEquals(2, configs.getConfigLookup().size());
+
+		// the set keeps using the lookup it handed out
+		configs.add(new ATNConfig(s, 1, context(11)));
+		configs.add(new ATNConfig(state(4), 1, context(10)));
+		assertSame(configs.configLookup, configs.getConfigLookup());
+		assertEquals(3, configs.size());
+		assertEquals(3, configs.getConfigLookup().size());
+		assertEquals(2, configs.get(0).context.size());
+
+		configs.setReadonly(true);
+		assertNull(configs.getConfigLookup());
+	}
+
+	private static ATNState state(int stateNumber) {
+		ATNState s = new BasicState();
+		s.stateNumber = stateNumber;
+		return s;
+	}
+
+	private static PredictionContext context(int returnState) {
+		return SingletonPredictionContext.create(PredictionContext.EMPTY, returnState);
+	}
+}
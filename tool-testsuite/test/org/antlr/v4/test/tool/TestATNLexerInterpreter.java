@@ -8,17 +8,43 @@ package org.antlr.v4.test.tool;
 
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParallelLexDriver;
+import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNSimulator;
 import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.LexerDFATables;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.atn.PredictionMetrics;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
 import org.antlr.v4.runtime.misc.Utils;
 import org.antlr.v4.tool.DOTGenerator;
 import org.antlr.v4.tool.LexerGrammar;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Lexer rules are little quirky when it comes to wildcards. Problem
@@ -209,6 +235,211 @@ public class TestATNLexerInterpreter extends BaseJavaToolTest {
 		checkLexerMatches(lg, new StringBuilder().appendCodePoint(0x12001).toString(), expecting);
 	}
 
+	@Test public void testLexerDFACachesUnicodeRanges() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n"+
+			"ID : [\\u4E00-\\u9FFF]+ ;\n" +
+			"WS : ' '+ ;\n");
+		LexerInterpreter lexer = lg.createLexerInterpreter(CharStreams.fromString("\u4E2D\u6587 \u65E5"));
+		lexer.getAllTokens();
+		String expecting =
+			"s0-' '->:s2=>2\n" +
+			"s0-'\u4E00'..'\u9FFF'->:s1=>1\n" +
+			":s1=>1-'\u4E00'..'\u9FFF'->:s1=>1\n";
+		assertEquals(expecting, lexer.getInterpreter().getDFA(Lexer.DEFAULT_MODE).toLexerString());
+	}
+
+	@Test public void testLexerDFAStateLimit() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n"+
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : ' '+ ;\n");
+		LexerInterpreter lexer = lg.createLexerInterpreter(CharStreams.fromString("abc 123 def 456"));
+		DFA dfa = lexer.getInterpreter().getDFA(Lexer.DEFAULT_MODE);
+		dfa.setMaxStates(2);
+		assertEquals(7, lexer.getAllTokens().size());
+		assertTrue(dfa.states.size() <= 2);
+		assertTrue(dfa.getEvictionCount() > 0);
+		assertReachableStatesInDFA(dfa);
+	}
+
+	@Test public void testLexerDFAStateLimitKeepsAddedState() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n"+
+			"IF : 'if' ;\n" +
+			"INT : 'int' ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"NUM : [0-9]+ ('.' [0-9]+)? ;\n" +
+			"WS : ' '+ ;\n");
+		LexerInterpreter lexer = lg.createLexerInterpreter(CharStreams.fromString("if int iffy inter 1.5 42 x 3.25 in i"));
+		DFA dfa = lexer.getInterpreter().getDFA(Lexer.DEFAULT_MODE);
+		dfa.setMaxStates(3);
+		assertEquals(19, lexer.getAllTokens().size());
+		assertTrue(dfa.states.size() <= 3);
+		assertTrue(dfa.getEvictionCount() > 0);
+		assertReachableStatesInDFA(dfa);
+	}
+
+	@Test public void testLexerDFAReplacesEdgeToEvictedState() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n"+
+			"A : 'a' ;\n");
+		LexerInterpreter lexer = lg.createLexerInterpreter(CharStreams.fromString("a"));
+		lexer.getAllTokens();
+		DFA dfa = lexer.getInterpreter().getDFA(Lexer.DEFAULT_MODE);
+		int edge = 'a' - LexerATNSimulator.MIN_DFA_EDGE;
+		DFAState evicted = dfa.s0.edges[edge];
+		dfa.setMaxStates(1);
+		assertTrue(evicted.isEvicted());
+		assertNull(dfa.s0.edges[edge]);
+
+		// another thread adds the edge after the pass dropped it
+		dfa.s0.setEdge(edge, dfa.s0.edges.length, evicted);
+		lexer.setInputStream(CharStreams.fromString("a"));
+		assertEquals(1, lexer.getAllTokens().size());
+		assertNotSame(evicted, dfa.s0.edges[edge]);
+		assertReachableStatesInDFA(dfa);
+	}
+
+	/** Every state reachable from the start state must be one the DFA
+	 *  holds, or the state limit does not bound its size.
+	 */
+	private static void assertReachableStatesInDFA(DFA dfa) {
+		Set<DFAState> visited = Collections.newSetFromMap(new IdentityHashMap<DFAState, Boolean>());
+		Deque<DFAState> work = new ArrayDeque<DFAState>();
+		work.push(dfa.s0);
+		while ( !work.isEmpty() ) {
+			DFAState s = work.pop();
+			if ( s==ATNSimulator.ERROR || !visited.add(s) ) continue;
+			assertSame(s, dfa.states.get(s));
+			if ( s.edges!=null ) {
+				for (DFAState t : s.edges) {
+					if ( t!=null ) work.push(t);
+				}
+			}
+			if ( s.sparseEdges!=null ) {
+				work.addAll(s.sparseEdges.getTargets());
+			}
+		}
+	}
+
+	@Test public void testParallelLexDriver() throws Exception {
+		final LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n"+
+			"ID : [a-z]+ ;\n" +
+			"COMMENT : '/*' .*? '*/' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 50; i++) {
+			text.append("abc def\n/* x\ny */ ghi\n");
+		}
+		CharStream input = CharStreams.fromString(text.toString());
+
+		List<? extends Token> expecting = lg.createLexerInterpreter(input).getAllTokens();
+		ParallelLexDriver<LexerInterpreter> driver = new ParallelLexDriver<LexerInterpreter>() {
+			@Override
+			protected LexerInterpreter createLexer(CharStream input) {
+				return lg.createLexerInterpreter(input);
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Token> tokens = driver.tokenize(input, executor, 8);
+			assertEquals(expecting.size() + 1, tokens.size());
+			for (int i = 0; i < expecting.size(); i++) {
+				Token t = tokens.get(i);
+				assertEquals(i, t.getTokenIndex());
+				assertEquals(expecting.get(i).getType(), t.getType());
+				assertEquals(expecting.get(i).getText(), t.getText());
+				assertEquals(expecting.get(i).getLine(), t.getLine());
+				assertEquals(expecting.get(i).getCharPositionInLine(), t.getCharPositionInLine());
+			}
+			assertEquals(Token.EOF, tokens.get(expecting.size()).getType());
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test public void testParallelLexDriverMappedInput() throws Exception {
+		final LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n"+
+			"ID : [a-z\\u00E9\\u4E2D]+ ;\n" +
+			"COMMENT : '/*' .*? '*/' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			text.append("ab\u00E9 d\u4E2Df\n/* \u00E9\ny */ ghi\n");
+		}
+		Path path = Files.createTempFile("parallel", ".txt");
+		try {
+			Files.write(path, text.toString().getBytes(StandardCharsets.UTF_8));
+			// segments read the shared mapped input concurrently
+			CharStream input = CharStreams.fromPathMapped(path);
+
+			List<? extends Token> expecting = lg.createLexerInterpreter(CharStreams.fromString(text.toString())).getAllTokens();
+			ParallelLexDriver<LexerInterpreter> driver = new ParallelLexDriver<LexerInterpreter>() {
+				@Override
+				protected LexerInterpreter createLexer(CharStream input) {
+					return lg.createLexerInterpreter(input);
+				}
+			};
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			try {
+				List<Token> tokens = driver.tokenize(input, executor, 8);
+				assertEquals(expecting.size() + 1, tokens.size());
+				for (int i = 0; i < expecting.size(); i++) {
+					Token t = tokens.get(i);
+					assertEquals(expecting.get(i).getType(), t.getType());
+					assertEquals(expecting.get(i).getStartIndex(), t.getStartIndex());
+					assertEquals(expecting.get(i).getText(), t.getText());
+					assertEquals(expecting.get(i).getLine(), t.getLine());
+				}
+			}
+			finally {
+				executor.shutdown();
+			}
+		}
+		finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test public void testPrecomputedDFA() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n"+
+			"ID : [a-z\\u00E9]+ ;\n" +
+			"QUOTE : '\"' -> pushMode(STR) ;\n" +
+			"WS : [ \\n]+ -> skip ;\n" +
+			"mode STR;\n" +
+			"TEXT : ~[\"]+ ;\n" +
+			"END : '\"' -> popMode ;\n");
+		String input = "ab \"c d\" caf\u00E9\n\"\"";
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(CharStreams.fromString(input));
+		ATN atn = lexEngine.getATN();
+
+		DFA[] dfa = new DFA[atn.getNumberOfDecisions()];
+		for (int i = 0; i < dfa.length; i++) {
+			dfa[i] = new DFA(atn.getDecisionState(i), i);
+		}
+		LexerATNSimulator sim = new LexerATNSimulator(atn, dfa, new PredictionContextCache());
+		for (int mode = 0; mode < atn.modeToStartState.size(); mode++) {
+			assertTrue(sim.precomputeDFA(mode, 1000));
+		}
+		boolean[] modes = new boolean[atn.modeToStartState.size()];
+		Arrays.fill(modes, true);
+		String tables = LexerDFATables.encode(atn, dfa, modes);
+
+		LexerDFATables.decode(atn, lexEngine.getInterpreter().decisionToDFA, tables);
+		PredictionMetrics metrics = new PredictionMetrics(atn.getNumberOfDecisions());
+		lexEngine.getInterpreter().setMetrics(metrics);
+		List<? extends Token> tokens = lexEngine.getAllTokens();
+		assertEquals(lg.createLexerInterpreter(CharStreams.fromString(input)).getAllTokens().toString(), tokens.toString());
+		// every state the lexer reached was precomputed
+		assertEquals(0, metrics.get(PredictionMetrics.Counter.DFA_STATES));
+	}
+
 	@Test public void testLexerKeywordIDAmbiguity() throws Exception {
 		LexerGrammar lg = new LexerGrammar(
 			"lexer grammar L;\n"+
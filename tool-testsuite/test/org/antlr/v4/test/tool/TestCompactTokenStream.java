@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.CompactTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestCompactTokenStream extends TestBufferedTokenStream {
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+	}
+
+	@Override
+	protected TokenStream createTokenStream(TokenSource src) {
+		return new CompactTokenStream(src);
+	}
+
+	@Test public void testSameTokensAsCommonTokenStream() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"COMMENT : '/*' .*? '*/' -> channel(HIDDEN) ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		String input = "a /* x */ 12\nbc /*\n*/ 3";
+
+		CommonTokenStream expected = new CommonTokenStream(lg.createLexerInterpreter(CharStreams.fromString(input)));
+		expected.fill();
+		CompactTokenStream tokens = new CompactTokenStream(lg.createLexerInterpreter(CharStreams.fromString(input)));
+		tokens.fill();
+
+		assertEquals(expected.size(), tokens.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).toString(), tokens.get(i).toString());
+			assertEquals(expected.get(i).getType(), tokens.getType(i));
+			assertEquals(expected.get(i).getLine(), tokens.getLine(i));
+		}
+		assertEquals(expected.getText(), tokens.getText());
+
+		// lookahead skips the hidden comments
+		tokens.seek(0);
+		assertEquals("a", tokens.LT(1).getText());
+		assertEquals("12", tokens.LT(2).getText());
+		tokens.consume();
+		tokens.consume();
+		assertEquals("bc", tokens.LT(1).getText());
+		assertEquals("12", tokens.LT(-1).getText());
+		assertEquals("a", tokens.LT(-2).getText());
+		assertEquals(Token.EOF, tokens.LA(3));
+	}
+
+	@Test public void testExplicitText() throws Exception {
+		List<Token> list = new ArrayList<Token>();
+		list.add(new CommonToken(1, "x"));
+		CommonToken hidden = new CommonToken(2, " ");
+		hidden.setChannel(Lexer.HIDDEN);
+		list.add(hidden);
+		list.add(new CommonToken(1, "y"));
+		CompactTokenStream tokens = new CompactTokenStream(new ListTokenSource(list));
+		tokens.fill();
+
+		assertEquals(4, tokens.size());
+		assertEquals("x y", tokens.getText());
+		assertEquals("[@1,0:0=' ',<2>,channel=1,0:-1]", tokens.get(1).toString());
+		assertEquals(tokens.get(2), tokens.LT(2));
+		assertEquals(Token.EOF, tokens.LA(3));
+		assertNull(tokens.LT(-1));
+	}
+
+	@Test public void testParse() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : [ ]+ -> channel(HIDDEN) ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : e+ EOF ;\n" +
+			"e : ID ID | ID INT | INT ;\n",
+			lg);
+		String input = "a b c 1 2 d e";
+
+		LexerInterpreter lexer = lg.createLexerInterpreter(CharStreams.fromString(input));
+		ParserInterpreter parser = g.createParserInterpreter(new CompactTokenStream(lexer));
+		ParseTree tree = parser.parse(g.rules.get("s").index);
+
+		assertEquals("(s (e a b) (e c 1) (e 2) (e d e) <EOF>)", tree.toStringTree(parser));
+		assertEquals(input, parser.getTokenStream().getText());
+		assertEquals(0, parser.getNumberOfSyntaxErrors());
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.DFASnapshot;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class TestDFASnapshot extends BaseJavaToolTest {
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+	}
+
+	@Test public void testLexerSnapshotRoundTrip() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"END : 'end' ;\n" +
+			"ID : [a-z\\u4E00-\\u9FFF]+ ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		LexerInterpreter lexer = lg.createLexerInterpreter(CharStreams.fromString("abc end 中文 ending"));
+		lexer.getAllTokens();
+		String expecting = lexer.getInterpreter().getDFA(Lexer.DEFAULT_MODE).toLexerString();
+
+		byte[] snapshot = write(lexer.getATN(), lexer.getInterpreter().decisionToDFA);
+		LexerInterpreter loaded = lg.createLexerInterpreter(CharStreams.fromString("end 中文"));
+		DFASnapshot.read(loaded.getATN(), loaded.getInterpreter().decisionToDFA, null, new ByteArrayInputStream(snapshot));
+		DFA dfa = loaded.getInterpreter().getDFA(Lexer.DEFAULT_MODE);
+		assertEquals(expecting, dfa.toLexerString());
+
+		// input seen before the snapshot was taken is matched without new states
+		int states = dfa.states.size();
+		assertEquals(2, loaded.getAllTokens().size());
+		assertEquals(states, dfa.states.size());
+	}
+
+	@Test public void testParserSnapshotRoundTrip() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : e+ EOF ;\n" +
+			"e : ID ID | ID INT | INT ;\n",
+			lg);
+
+		ParserInterpreter parser = createParser(lg, g, "a b c 1 2");
+		String tree = parser.parse(g.rules.get("s").index).toStringTree(parser);
+		DFA[] decisionToDFA = parser.getInterpreter().decisionToDFA;
+		String[] expecting = new String[decisionToDFA.length];
+		for (int i = 0; i < decisionToDFA.length; i++) {
+			expecting[i] = decisionToDFA[i].toString(parser.getVocabulary());
+		}
+
+		byte[] snapshot = write(parser.getATN(), decisionToDFA);
+		ParserInterpreter loaded = createParser(lg, g, "a b c 1 2");
+		DFASnapshot.read(loaded.getATN(), loaded.getInterpreter().decisionToDFA,
+						 loaded.getInterpreter().getSharedContextCache(), new ByteArrayInputStream(snapshot));
+		for (int i = 0; i < expecting.length; i++) {
+			assertEquals(expecting[i], loaded.getInterpreter().decisionToDFA[i].toString(loaded.getVocabulary()));
+		}
+
+		assertEquals(tree, loaded.parse(g.rules.get("s").index).toStringTree(loaded));
+	}
+
+	@Test public void testSnapshotOfOtherATNIsRejected() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n");
+		LexerGrammar other = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'b' ;\n");
+		LexerInterpreter lexer = lg.createLexerInterpreter(CharStreams.fromString("aa"));
+		lexer.getAllTokens();
+		byte[] snapshot = write(lexer.getATN(), lexer.getInterpreter().decisionToDFA);
+
+		LexerInterpreter otherLexer = other.createLexerInterpreter(CharStreams.fromString("b"));
+		DFA[] decisionToDFA = otherLexer.getInterpreter().decisionToDFA;
+		try {
+			DFASnapshot.read(otherLexer.getATN(), decisionToDFA, null, new ByteArrayInputStream(snapshot));
+			fail("expected the snapshot to be rejected");
+		}
+		catch (IOException ex) {
+			assertNotNull(ex.getMessage());
+		}
+
+		assertNull(decisionToDFA[Lexer.DEFAULT_MODE].s0);
+	}
+
+	private static byte[] write(ATN atn, DFA[] decisionToDFA) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		DFASnapshot.write(atn, decisionToDFA, output);
+		return output.toByteArray();
+	}
+
+	private static ParserInterpreter createParser(LexerGrammar lg, Grammar g, String input) {
+		LexerInterpreter lexer = lg.createLexerInterpreter(CharStreams.fromString(input));
+		return g.createParserInterpreter(new CommonTokenStream(lexer));
+	}
+}
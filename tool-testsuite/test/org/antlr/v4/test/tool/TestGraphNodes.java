@@ -9,17 +9,22 @@ package org.antlr.v4.test.tool;
 import org.antlr.v4.runtime.atn.ArrayPredictionContext;
 import org.antlr.v4.runtime.atn.PredictionContext;
 import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.atn.PredictionContextMergeCache;
 import org.antlr.v4.runtime.atn.SingletonPredictionContext;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class TestGraphNodes {
 	PredictionContextCache contextCache;
@@ -754,6 +759,150 @@ public class TestGraphNodes {
 	}
 
 
+	@Test public void testCacheSharesContextsAcrossThreads() throws Exception {
+		final int threads = 8;
+		final PredictionContext[][] found = new PredictionContext[threads][];
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					PredictionContext[] cached = new PredictionContext[100];
+					for (int i = 0; i < cached.length; i++) {
+						// equal but distinct graphs in every thread
+						PredictionContext ctx = createSingleton(createSingleton(PredictionContext.EMPTY, i), i + 1000);
+						cached[i] = PredictionContext.getCachedContext(ctx, contextCache,
+							new IdentityHashMap<PredictionContext, PredictionContext>());
+					}
+					found[id] = cached;
+				}
+			};
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		for (int t = 1; t < threads; t++) {
+			for (int i = 0; i < found[0].length; i++) {
+				assertSame(found[0][i], found[t][i]);
+				assertSame(found[0][i].getParent(0), found[t][i].getParent(0));
+			}
+		}
+		assertEquals(200, contextCache.size());
+	}
+
+	@Test public void testCacheMaxSize() {
+		contextCache.setMaxSize(10);
+		for (int i = 0; i < 25; i++) {
+			contextCache.add(createSingleton(PredictionContext.EMPTY, i));
+		}
+		// each pass frees a quarter of the budget
+		assertEquals(9, contextCache.size());
+		assertEquals(16, contextCache.getEvictionCount());
+	}
+
+	@Test public void testCacheMaxSizeKeepsUsedContexts() {
+		contextCache.setMaxSize(4);
+		PredictionContext hot = contextCache.add(createSingleton(PredictionContext.EMPTY, 0));
+		for (int i = 1; i < 100; i++) {
+			contextCache.add(createSingleton(PredictionContext.EMPTY, i));
+			assertSame(hot, contextCache.get(createSingleton(PredictionContext.EMPTY, 0)));
+		}
+		assertTrue(contextCache.size() <= 4);
+		assertTrue(contextCache.getEvictionCount() > 0);
+	}
+
+	@Test public void testCachedContextsWithConcurrentEviction() throws Exception {
+		contextCache.setMaxSize(4);
+		final int threads = 8;
+		final int keys = 8;
+		final List<List<PredictionContext>> found = new ArrayList<List<PredictionContext>>();
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final List<PredictionContext> cached = new ArrayList<PredictionContext>();
+			found.add(cached);
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 5000; i++) {
+						cached.add(contextCache.add(createSingleton(PredictionContext.EMPTY, i % keys)));
+					}
+				}
+			};
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		assertTrue(contextCache.getEvictionCount() > 0);
+		// every context the cache handed out equals every other one with the
+		// same return state, including those evicted since
+		List<Map<PredictionContext, Boolean>> distinct = new ArrayList<Map<PredictionContext, Boolean>>();
+		for (int i = 0; i < keys; i++) {
+			distinct.add(new IdentityHashMap<PredictionContext, Boolean>());
+		}
+		for (List<PredictionContext> cached : found) {
+			for (PredictionContext ctx : cached) {
+				distinct.get(ctx.getReturnState(0)).put(ctx, Boolean.TRUE);
+			}
+		}
+		for (Map<PredictionContext, Boolean> contexts : distinct) {
+			for (PredictionContext x : contexts.keySet()) {
+				for (PredictionContext y : contexts.keySet()) {
+					assertTrue(x.equals(y));
+				}
+			}
+		}
+	}
+
+	@Test public void testMergeCache() {
+		PredictionContextMergeCache mergeCache = new PredictionContextMergeCache();
+		PredictionContext r = PredictionContext.merge(a(), b(), true, mergeCache.getTable(true));
+		// equal contexts from another prediction find the merge
+		assertSame(r, PredictionContext.merge(a(), b(), true, mergeCache.getTable(true)));
+		assertEquals(1, mergeCache.getHitCount());
+		// the first merge looked up both (a,b) and (b,a)
+		assertEquals(2, mergeCache.getMissCount());
+
+		// $ is a wildcard only for SLL merges
+		PredictionContext sll = PredictionContext.merge(a(), PredictionContext.EMPTY, true, mergeCache.getTable(true));
+		PredictionContext ll = PredictionContext.merge(a(), PredictionContext.EMPTY, false, mergeCache.getTable(false));
+		assertSame(PredictionContext.EMPTY, sll);
+		assertEquals(2, ll.size());
+		assertEquals(3, mergeCache.size());
+	}
+
+	@Test public void testMergeCacheSizeWithConcurrentEviction() throws Exception {
+		final PredictionContextMergeCache mergeCache = new PredictionContextMergeCache(4);
+		Thread[] workers = new Thread[8];
+		for (int t = 0; t < workers.length; t++) {
+			final int thread = t;
+			workers[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 5000; i++) {
+						PredictionContext x = createSingleton(PredictionContext.EMPTY, i % 4);
+						PredictionContext y = createSingleton(PredictionContext.EMPTY, 4 + thread);
+						PredictionContext.merge(x, y, true, mergeCache.getTable(true));
+					}
+				}
+			};
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		assertTrue(mergeCache.getEvictionCount() > 0);
+		// merges lost with a removed row must not be counted forever
+		mergeCache.clear();
+		assertEquals(0, mergeCache.size());
+	}
+
+
 	// ------------ SUPPORT -------------------------
 
 	protected SingletonPredictionContext a() {
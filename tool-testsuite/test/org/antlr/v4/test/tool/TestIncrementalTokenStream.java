@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.IncrementalTokenStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestIncrementalTokenStream extends TestBufferedTokenStream {
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+	}
+
+	@Override
+	protected TokenStream createTokenStream(TokenSource src) {
+		return new IncrementalTokenStream((Lexer)src);
+	}
+
+	@Test public void testRelex() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"QUOTE : '\"' -> pushMode(STR) ;\n" +
+			"WS : [ \\n]+ -> skip ;\n" +
+			"mode STR;\n" +
+			"TEXT : ~[\"]+ ;\n" +
+			"END : '\"' -> popMode ;\n");
+		String input = "a \"b c\" d\ne";
+		IncrementalTokenStream tokens = new IncrementalTokenStream(lg.createLexerInterpreter(CharStreams.fromString(input)));
+		tokens.fill();
+
+		// replace c inside the string; lexing restarts in mode STR
+		input = "a \"b cc\" d\ne";
+		List<Token> relexed = tokens.relex(CharStreams.fromString(input), 5, 1, 2);
+		assertEquals(Interval.of(2, 2), tokens.getRelexedInterval());
+		assertEquals("b cc", relexed.get(2).getText());
+		assertEquals(lex(lg, input), relexed.toString());
+		assertEquals("d", tokens.LT(5).getText());
+		assertEquals(9, tokens.LT(5).getStartIndex());
+
+		// insert a line in front
+		input = "\n" + input;
+		relexed = tokens.relex(CharStreams.fromString(input), 0, 0, 1);
+		assertEquals(Interval.of(0, 0), tokens.getRelexedInterval());
+		assertEquals(lex(lg, input), relexed.toString());
+		assertEquals(3, relexed.get(5).getLine());
+		assertEquals(0, relexed.get(5).getCharPositionInLine());
+
+		// open a string which now runs to the end of the input
+		input = input.substring(0, 9) + "\"" + input.substring(10);
+		relexed = tokens.relex(CharStreams.fromString(input), 9, 1, 1);
+		assertEquals(lex(lg, input), relexed.toString());
+		assertEquals(Token.EOF, relexed.get(relexed.size() - 1).getType());
+	}
+
+	private static String lex(LexerGrammar lg, String input) {
+		IncrementalTokenStream tokens = new IncrementalTokenStream(lg.createLexerInterpreter(CharStreams.fromString(input)));
+		tokens.fill();
+		return tokens.getTokens().toString();
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.test.tool;
+
+import org.antlr.v4.analysis.LookaheadTree;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LexerGrammar;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestLLkPrediction extends BaseJavaToolTest {
+	public static final String lexerText =
+		"lexer grammar L;\n" +
+		"DOT  : '.' ;\n" +
+		"SEMI : ';' ;\n" +
+		"LPAREN : '(' ;\n" +
+		"RPAREN : ')' ;\n" +
+		"ID : [a-z]+ ;\n" +
+		"INT : [0-9]+ ;\n";
+
+	@Before
+	@Override
+	public void testSetUp() throws Exception {
+		super.testSetUp();
+	}
+
+	@Test public void testLL2() throws Exception {
+		LexerGrammar lg = new LexerGrammar(lexerText);
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"e : ID DOT ID\n" +
+			"  | ID LPAREN RPAREN\n" +
+			"  ;\n",
+			lg);
+		LookaheadTree tree = g.decisionLLk.get(0);
+		assertEquals("5=>(1=>1, 3=>2)", tree.toString());
+		assertEquals(2, tree.predict(new int[] {5, 3, 4}));
+		assertEquals(0, tree.predict(new int[] {6, 3, 4}));
+	}
+
+	@Test public void testLL3ThroughRules() throws Exception {
+		LexerGrammar lg = new LexerGrammar(lexerText);
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : a | b ;\n" +
+			"a : ID DOT ID ;\n" +
+			"b : ID DOT INT ;\n",
+			lg);
+		assertEquals("5=>(1=>(5=>1, 6=>2))", g.decisionLLk.get(0).toString());
+	}
+
+	@Test public void testLL1HasNoTree() throws Exception {
+		LexerGrammar lg = new LexerGrammar(lexerText);
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"e : ID | INT ;\n",
+			lg);
+		assertNull(g.decisionLLk.get(0));
+	}
+
+	@Test public void testLL5HasNoTree() throws Exception {
+		LexerGrammar lg = new LexerGrammar(lexerText);
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"e : ID DOT ID DOT ID\n" +
+			"  | ID DOT ID DOT INT\n" +
+			"  ;\n",
+			lg);
+		assertNull(g.decisionLLk.get(0));
+	}
+
+	@Test public void testPredicateHasNoTree() throws Exception {
+		LexerGrammar lg = new LexerGrammar(lexerText);
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"e : {true}? ID DOT ID\n" +
+			"  | ID LPAREN RPAREN\n" +
+			"  ;\n",
+			lg);
+		assertNull(g.decisionLLk.get(0));
+	}
+
+	@Test public void testGeneratedParser() throws Exception {
+		String grammar =
+			"grammar T;\n" +
+			"s : e+ EOF ;\n" +
+			"e : ID '=' ID ';' {System.out.println(\"copy\");}\n" +
+			"  | ID '=' INT ';' {System.out.println(\"init\");}\n" +
+			"  | ID ';' {System.out.println(\"use\");}\n" +
+			"  ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : [ \\n]+ -> skip ;\n";
+		String found = execParser("T.g4", grammar, "TParser", "TLexer", null, null, "s",
+								  "a = b; c = 1; a;", false);
+		assertEquals("copy\ninit\nuse\n", found);
+		assertNull(stderrDuringParse);
+
+		String parser = new String(Files.readAllBytes(new File(tmpdir, "TParser.java").toPath()), StandardCharsets.UTF_8);
+		assertTrue(parser.contains("private int _predict"));
+	}
+}
@@ -9,7 +9,13 @@ package org.antlr.v4.test.tool;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.antlr.v4.test.runtime.BaseRuntimeTest.writeFile;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class TestLexerActions extends BaseJavaToolTest {
 
@@ -294,4 +300,58 @@ public class TestLexerActions extends BaseJavaToolTest {
 		assertEquals(expecting, found);
 	}
 
+	@Test public void testDirectLexer() throws Exception {
+		String grammar =
+			"lexer grammar L;\n"+
+			"I : '0'..'9'+ {System.out.println(\"I\");} ;\n"+
+			"ID : [a-z\\u00E9]+ ;\n"+
+			"QUOTE : '\"' -> pushMode(STR) ;\n"+
+			"WS : (' '|'\\n') -> skip ;\n"+
+			"mode STR;\n"+
+			// the predicate leaves this mode to the ATN simulator
+			"TEXT : {true}? ~[\"]+ ;\n"+
+			"END : '\"' -> popMode ;\n";
+		boolean success = rawGenerateAndBuildRecognizer("L.g4", grammar, null, "L", "-direct-lexer");
+		assertTrue(success);
+		writeFile(tmpdir, "input", "34 abc\n\"a b\" x");
+		writeLexerTestFile("L", false);
+		compile("Test.java");
+		String found = execClass("Test");
+		String expecting =
+			"I\n" +
+			"[@0,0:1='34',<1>,1:0]\n" +
+			"[@1,3:5='abc',<2>,1:3]\n" +
+			"[@2,7:7='\"',<3>,2:0]\n" +
+			"[@3,8:10='a b',<5>,2:1]\n" +
+			"[@4,11:11='\"',<6>,2:4]\n" +
+			"[@5,13:13='x',<2>,2:6]\n" +
+			"[@6,14:13='<EOF>',<-1>,2:7]\n";
+		assertEquals(expecting, found);
+	}
+
+	@Test public void testDirectLexerUnicodeIdentifiers() throws Exception {
+		// hundreds of ranges above U+007F, searched in tables
+		String grammar =
+			"lexer grammar L;\n"+
+			"ID : [\\p{L}_] [\\p{L}\\p{Nd}_]* ;\n"+
+			"WS : ' '+ -> skip ;\n";
+		boolean success = rawGenerateAndBuildRecognizer("L.g4", grammar, null, "L", "-direct-lexer");
+		assertTrue(success);
+		String lexer = new String(Files.readAllBytes(new File(tmpdir, "L.java").toPath()), StandardCharsets.UTF_8);
+		assertTrue(lexer.contains("getRangeTarget(mode0Ranges"));
+
+		writeFile(tmpdir, "input", "x \u03B1\u03B2\u03B3 \u4E2D\u6587 _a1 \uD835\uDC00b");
+		writeLexerTestFile("L", false);
+		compile("Test.java");
+		String found = execClass("Test");
+		String expecting =
+			"[@0,0:0='x',<1>,1:0]\n" +
+			"[@1,2:4='\u03B1\u03B2\u03B3',<1>,1:2]\n" +
+			"[@2,6:7='\u4E2D\u6587',<1>,1:6]\n" +
+			"[@3,9:11='_a1',<1>,1:9]\n" +
+			"[@4,13:14='\uD835\uDC00b',<1>,1:13]\n" +
+			"[@5,15:14='<EOF>',<-1>,1:15]\n";
+		assertEquals(expecting, found);
+	}
+
 }
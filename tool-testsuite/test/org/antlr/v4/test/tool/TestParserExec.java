@@ -10,7 +10,12 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -160,4 +165,44 @@ public class TestParserExec extends BaseJavaToolTest {
 		assertEquals("6\n", found);
 		assertNull(stderrDuringParse);
 	}
+
+	@Test public void testTerminalFreeParseReusesContexts() throws Exception {
+		String grammar =
+			"grammar T;\n" +
+			"@members {\n" +
+			"static class Events implements org.antlr.v4.runtime.tree.TerminalFreeParseListener {\n" +
+			"  public void enterRule(int ruleIndex, int startTokenIndex) { }\n" +
+			"  public void enterAlt(int ruleIndex, int altNumber) { }\n" +
+			"  public void exitRule(int ruleIndex, int stopTokenIndex) { }\n" +
+			"  public void visitTerminal(Token token) { }\n" +
+			"  public void visitErrorToken(Token token) { }\n" +
+			"}\n" +
+			"java.util.Set<Object> rContexts = java.util.Collections.newSetFromMap(new java.util.IdentityHashMap<Object, Boolean>());\n" +
+			"int rCalls;\n" +
+			"@Override\n" +
+			"public void enterRule(ParserRuleContext localctx, int state, int ruleIndex) {\n" +
+			"  super.enterRule(localctx, state, ruleIndex);\n" +
+			"  if ( ruleIndex==RULE_r ) { rCalls++; rContexts.add(localctx); }\n" +
+			"}\n" +
+			"}\n" +
+			"s @init {setBuildParseTree(false); setTerminalFreeParseListener(new Events());}\n" +
+			"  @after {System.out.println(rCalls + \" \" + rContexts.size());}\n" +
+			"  : r+ EOF ;\n" +
+			"r : ID | '(' r+ ')' ;\n" +
+			"t : x=ID r y=u ;\n" +
+			"u : ID ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"WS : [ \\n]+ -> skip ;\n";
+		String found = execParser("T.g4", grammar, "TParser", "TLexer", null, null, "s",
+								  "a b (c (d e)) f", false);
+		// one context per level of nesting, not one per invocation
+		assertEquals("8 3\n", found);
+		assertNull(stderrDuringParse);
+
+		String parser = new String(Files.readAllBytes(new File(tmpdir, "TParser.java").toPath()), StandardCharsets.UTF_8);
+		assertTrue(parser.contains("reuseContext(RULE_r,"));
+		assertFalse(parser.contains("reuseContext(RULE_s,"));
+		assertFalse(parser.contains("reuseContext(RULE_t,"));
+		assertFalse(parser.contains("reuseContext(RULE_u,"));
+	}
 }
@@ -7,16 +7,45 @@
 package org.antlr.v4.test.tool;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.IncrementalParseDriver;
+import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.LexerInterpreter;
+import org.antlr.v4.runtime.ParallelParseDriver;
+import org.antlr.v4.runtime.ParseTreeArena;
+import org.antlr.v4.runtime.Parser;
 import org.antlr.v4.runtime.ParserInterpreter;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.UnbufferedTokenStream;
+import org.antlr.v4.runtime.atn.AdaptivePredictionPolicy;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.runtime.atn.FullContextPredictionCache;
+import org.antlr.v4.runtime.atn.ProfilingATNSimulator;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeSink;
+import org.antlr.v4.runtime.tree.TerminalFreeParseListener;
 import org.antlr.v4.tool.Grammar;
 import org.antlr.v4.tool.LexerGrammar;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 
 public class TestParserInterpreter extends BaseJavaToolTest {
@@ -330,6 +359,505 @@ public class TestParserInterpreter extends BaseJavaToolTest {
 		testInterp(lg, g, "e", "a+a*a", "(e (e a) + (e (e a) * (e a)))");
 	}
 
+	@Test public void testStreamingRule() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"SEMI : ';' ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : r* EOF ;\n" +
+			"r : ID+ SEMI ;\n",
+			lg);
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream("a b; c; d e f;"));
+		final ParserInterpreter parser = g.createParserInterpreter(new UnbufferedTokenStream<Token>(lexEngine));
+		final List<String> records = new ArrayList<String>();
+		parser.setStreamingRule(g.rules.get("r").index, new ParseTreeSink() {
+			@Override
+			public void emit(ParserRuleContext ctx) {
+				records.add(ctx.toStringTree(parser));
+			}
+		});
+
+		ParseTree t = parser.parse(g.rules.get("s").index);
+		assertEquals("[(r a b ;), (r c ;), (r d e f ;)]", records.toString());
+		assertEquals("(s <EOF>)", t.toStringTree(parser));
+	}
+
+	@Test public void testStreamingRuleKeepsMemoryBounded() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"SEMI : ';' ;\n" +
+			"COLON : ':' ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : h r* EOF ;\n" +
+			"h : ID COLON ;\n" +
+			"r : ID+ SEMI ;\n",
+			lg);
+
+		StringBuilder input = new StringBuilder("head:");
+		for (int i = 0; i < 1000; i++) {
+			input.append(" a b;");
+		}
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream(input.toString()));
+		final int[] maxBuffered = new int[1];
+		UnbufferedTokenStream<Token> tokens = new UnbufferedTokenStream<Token>(lexEngine) {
+			@Override
+			protected void add(Token t) {
+				super.add(t);
+				maxBuffered[0] = Math.max(maxBuffered[0], n);
+			}
+		};
+		final ParserInterpreter parser = g.createParserInterpreter(tokens);
+		final int[] records = new int[1];
+		final int[] maxSiblings = new int[1];
+		parser.setStreamingRule(g.rules.get("r").index, new ParseTreeSink() {
+			@Override
+			public void emit(ParserRuleContext ctx) {
+				records[0]++;
+				maxSiblings[0] = Math.max(maxSiblings[0], ctx.getParent().getChildCount());
+			}
+		});
+
+		ParseTree t = parser.parse(g.rules.get("s").index);
+		assertEquals(1000, records[0]);
+		// the header and the record being emitted
+		assertEquals(2, maxSiblings[0]);
+		assertTrue(maxBuffered[0] < 10);
+		// the header is not a record, so it stays in the tree
+		assertEquals("(s (h head :) <EOF>)", t.toStringTree(parser));
+	}
+
+	@Test public void testStreamingRuleDropsSeparators() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"COMMA : ',' ;\n" +
+			"COLON : ':' ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : h r (COMMA r)* EOF ;\n" +
+			"h : ID COLON ;\n" +
+			"r : ID ID ;\n",
+			lg);
+
+		StringBuilder input = new StringBuilder("head: a b");
+		for (int i = 0; i < 1000; i++) {
+			input.append(", a b");
+		}
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream(input.toString()));
+		final ParserInterpreter parser = g.createParserInterpreter(new UnbufferedTokenStream<Token>(lexEngine));
+		final int[] records = new int[1];
+		final int[] maxSiblings = new int[1];
+		parser.setStreamingRule(g.rules.get("r").index, new ParseTreeSink() {
+			@Override
+			public void emit(ParserRuleContext ctx) {
+				records[0]++;
+				maxSiblings[0] = Math.max(maxSiblings[0], ctx.getParent().getChildCount());
+			}
+		});
+
+		ParseTree t = parser.parse(g.rules.get("s").index);
+		assertEquals(1001, records[0]);
+		// the header, a separator and the record being emitted
+		assertEquals(3, maxSiblings[0]);
+		assertEquals("(s (h head :) <EOF>)", t.toStringTree(parser));
+	}
+
+	@Test public void testParallelParseDriver() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"SEMI : ';' ;\n" +
+			"LP : '(' ;\n" +
+			"RP : ')' ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		final Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"r : ID+ SEMI\n" +
+			"  | LP (ID | SEMI)* RP SEMI\n" +
+			"  ;\n",
+			lg);
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream("a b; (c; d); e f;"));
+		CommonTokenStream tokens = new CommonTokenStream(lexEngine);
+		final List<ParserInterpreter> parsers = new ArrayList<ParserInterpreter>();
+		ParallelParseDriver<ParserInterpreter> driver = new ParallelParseDriver<ParserInterpreter>(lg.getTokenType("SEMI")) {
+			@Override
+			protected ParserInterpreter createParser(TokenStream input) {
+				ParserInterpreter parser = g.createParserInterpreter(input);
+				synchronized (parsers) {
+					parsers.add(parser);
+				}
+				return parser;
+			}
+
+			@Override
+			protected ParserRuleContext parseChunk(ParserInterpreter parser) {
+				return parser.parse(g.rules.get("r").index);
+			}
+		};
+		driver.addNestingTokens(lg.getTokenType("LP"), lg.getTokenType("RP"));
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			ParserRuleContext tree = driver.parse(tokens, executor);
+			assertEquals(3, tree.getChildCount());
+			assertEquals("(r a b ;)", tree.getChild(0).toStringTree(parsers.get(0)));
+			assertEquals("(r ( c ; d ) ;)", tree.getChild(1).toStringTree(parsers.get(0)));
+			assertEquals("(r e f ;)", tree.getChild(2).toStringTree(parsers.get(0)));
+			assertEquals(tokens.get(3), ((ParserRuleContext)tree.getChild(1)).start);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test public void testParallelParseDriverReportsErrorsOfEachChunk() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"SEMI : ';' ;\n" +
+			"LP : '(' ;\n" +
+			"RP : ')' ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		final Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"r : ID+ SEMI\n" +
+			"  | LP (ID | SEMI)* RP SEMI\n" +
+			"  ;\n",
+			lg);
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream("a b; c ( ; d;"));
+		CommonTokenStream tokens = new CommonTokenStream(lexEngine);
+		final List<String> errors = new ArrayList<String>();
+		ParallelParseDriver<ParserInterpreter> driver = new ParallelParseDriver<ParserInterpreter>(lg.getTokenType("SEMI")) {
+			@Override
+			protected ParserInterpreter createParser(TokenStream input) {
+				ParserInterpreter parser = g.createParserInterpreter(input);
+				parser.removeErrorListeners();
+				parser.addErrorListener(new BaseErrorListener() {
+					@Override
+					public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol,
+											int line, int charPositionInLine,
+											String msg, RecognitionException e)
+					{
+						Parser p = (Parser)recognizer;
+						errors.add(p.getRuleInvocationStack() + " " + p.getTokenStream().getText());
+					}
+				});
+				return parser;
+			}
+
+			@Override
+			protected ParserRuleContext parseChunk(ParserInterpreter parser) {
+				return parser.parse(g.rules.get("r").index);
+			}
+		};
+
+		// one thread, so the parser of the second chunk also parses the third
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			ParserRuleContext tree = driver.parse(tokens, executor);
+			assertEquals(3, tree.getChildCount());
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		assertEquals("[[r] c(;]", errors.toString());
+		assertEquals(1, driver.getNumberOfSyntaxErrors());
+	}
+
+	@Test public void testIncrementalReparse() throws Exception {
+		final LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"ID : [a-z]+ ;\n" +
+			"SEMI : ';' ;\n" +
+			"LP : '(' ;\n" +
+			"RP : ')' ;\n" +
+			"WS : [ \\n]+ -> skip ;\n");
+		final Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"r : ID+ SEMI\n" +
+			"  | LP (ID | SEMI)* RP SEMI\n" +
+			"  ;\n",
+			lg);
+
+		final List<ParserInterpreter> parsers = new ArrayList<ParserInterpreter>();
+		IncrementalParseDriver<ParserInterpreter> driver = new IncrementalParseDriver<ParserInterpreter>(lg.getTokenType("SEMI")) {
+			@Override
+			protected Lexer createLexer(CharStream input) {
+				return lg.createLexerInterpreter(input);
+			}
+
+			@Override
+			protected ParserInterpreter createParser(TokenStream input) {
+				ParserInterpreter parser = g.createParserInterpreter(input);
+				parsers.add(parser);
+				return parser;
+			}
+
+			@Override
+			protected ParserRuleContext parseChunk(ParserInterpreter parser) {
+				return parser.parse(g.rules.get("r").index);
+			}
+		};
+		driver.addNestingTokens(lg.getTokenType("LP"), lg.getTokenType("RP"));
+
+		IncrementalParseDriver.Result result = driver.parse("a b;\n(c; d);\ne f;");
+		assertEquals(3, result.getReparsedChunkCount());
+		ParserRuleContext first = (ParserRuleContext)result.getTree().getChild(0);
+		ParserRuleContext last = (ParserRuleContext)result.getTree().getChild(2);
+
+		// replace d by dd
+		result = driver.reparse(result, 9, 1, "dd");
+		assertEquals("a b;\n(c; dd);\ne f;", result.getText());
+		assertEquals(1, result.getRelexedTokenCount());
+		assertEquals(1, result.getReparsedChunkCount());
+		assertEquals(2, result.getReusedChunkCount());
+
+		ParserRuleContext tree = result.getTree();
+		assertEquals(3, tree.getChildCount());
+		assertEquals(first, tree.getChild(0));
+		assertEquals("(r ( c ; dd ) ;)", tree.getChild(1).toStringTree(parsers.get(0)));
+		assertEquals(last, tree.getChild(2));
+		assertEquals("(r e f ;)", last.toStringTree(parsers.get(0)));
+
+		// the reused tokens are shifted
+		Token e = last.start;
+		assertEquals(9, e.getTokenIndex());
+		assertEquals(14, e.getStartIndex());
+		assertEquals(3, e.getLine());
+		assertEquals("e", e.getText());
+		assertEquals(driver.parse(result.getText()).getTokens().toString(), result.getTokens().toString());
+	}
+
+	@Test public void testTwoStage() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"DOLLAR : '$' ;\n" +
+			"AT : '@' ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		// SLL prediction for e cannot tell the calls from a and b apart
+		// and always chooses INT
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : DOLLAR a | AT b ;\n" +
+			"a : e ID ;\n" +
+			"b : e INT ID ;\n" +
+			"e : INT | ;\n",
+			lg);
+
+		ParserInterpreter parser = createParser(lg, g, "$ 34 abc");
+		assertEquals("(s $ (a (e 34) abc))", parseTwoStage(parser, g, "s"));
+		assertFalse(parser.isTwoStageFallback());
+
+		parser = createParser(lg, g, "@ 34 abc");
+		assertEquals("(s @ (b e 34 abc))", parseTwoStage(parser, g, "s"));
+		assertTrue(parser.isTwoStageFallback());
+		assertEquals(1, parser.getTwoStageFallbackCount());
+		assertEquals(0, parser.getNumberOfSyntaxErrors());
+
+		// errors are reported by the second stage
+		parser = createParser(lg, g, "@ abc");
+		parseTwoStage(parser, g, "s");
+		assertTrue(parser.isTwoStageFallback());
+		assertTrue(parser.getNumberOfSyntaxErrors() > 0);
+	}
+
+	@Test public void testParseTreeArena() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n" +
+			"C : 'c' ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : x+ EOF ;\n" +
+			"x : A y | B ;\n" +
+			"y : C | ;\n",
+			lg);
+
+		ParseTreeArena arena = new ParseTreeArena();
+		ParserInterpreter parser = createParser(lg, g, "a c b a");
+		parser.setParseTreeArena(arena);
+		ParserRuleContext tree = parser.parse(g.rules.get("s").index);
+		assertEquals("(s (x a (y c)) (x b) (x a y) <EOF>)", tree.toStringTree(parser));
+		// 6 contexts, 5 terminal nodes and the children of all but the empty y
+		assertEquals(16, arena.size());
+
+		// the next parse reuses the released nodes
+		arena.release();
+		parser = createParser(lg, g, "b a c a");
+		parser.setParseTreeArena(arena);
+		tree = parser.parse(g.rules.get("s").index);
+		assertEquals("(s (x b) (x a (y c)) (x a y) <EOF>)", tree.toStringTree(parser));
+		assertEquals(16, arena.getCapacity());
+	}
+
+	@Test public void testTerminalFreeParseListener() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"A : 'a' ;\n" +
+			"B : 'b' ;\n" +
+			"C : 'c' ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : x+ EOF ;\n" +
+			"x : A y | B ;\n" +
+			"y : C | ;\n",
+			lg);
+
+		final StringBuilder events = new StringBuilder();
+		final ParserInterpreter parser = createParser(lg, g, "a c b a");
+		parser.setBuildParseTree(false);
+		parser.setTerminalFreeParseListener(new TerminalFreeParseListener() {
+			@Override
+			public void enterRule(int ruleIndex, int startTokenIndex) {
+				events.append("(").append(parser.getRuleNames()[ruleIndex]).append(startTokenIndex).append(" ");
+			}
+
+			@Override
+			public void enterAlt(int ruleIndex, int altNumber) {
+			}
+
+			@Override
+			public void exitRule(int ruleIndex, int stopTokenIndex) {
+				events.append(stopTokenIndex).append(") ");
+			}
+
+			@Override
+			public void visitTerminal(Token token) {
+				events.append(token.getText()).append(" ");
+			}
+
+			@Override
+			public void visitErrorToken(Token token) {
+				events.append("!").append(token.getText()).append(" ");
+			}
+		});
+		ParserRuleContext tree = parser.parse(g.rules.get("s").index);
+		assertEquals("(s0 (x0 a (y1 c 1) 1) (x2 b 2) (x3 a (y4 3) 3) <EOF> 4) ", events.toString());
+		// no nodes were created
+		assertEquals(0, tree.getChildCount());
+	}
+
+	@Test public void testFullContextPredictionCache() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"DOLLAR : '$' ;\n" +
+			"AT : '@' ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		// SLL cannot tell whether e matches INT; the invoking rule can
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : DOLLAR a | AT b ;\n" +
+			"a : e ID ;\n" +
+			"b : e INT ID ;\n" +
+			"e : INT | ;\n",
+			lg);
+
+		FullContextPredictionCache cache = new FullContextPredictionCache();
+		String[] inputs = {"$ 34 abc", "@ 34 abc", "$ 34 abc", "@ 34 abc"};
+		String[] trees = {"(s $ (a (e 34) abc))", "(s @ (b e 34 abc))", "(s $ (a (e 34) abc))", "(s @ (b e 34 abc))"};
+		for (int i = 0; i < inputs.length; i++) {
+			// each interpreter starts with an empty DFA
+			ParserInterpreter parser = createParser(lg, g, inputs[i]);
+			parser.getInterpreter().setFullContextCache(cache);
+			ParserRuleContext tree = parser.parse(g.rules.get("s").index);
+			assertEquals(trees[i], tree.toStringTree(parser));
+		}
+
+		assertEquals(2, cache.getMissCount());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(2, cache.size());
+	}
+
+	@Test public void testAdaptivePredictionPolicy() throws Exception {
+		LexerGrammar lg = new LexerGrammar(
+			"lexer grammar L;\n" +
+			"DOLLAR : '$' ;\n" +
+			"AT : '@' ;\n" +
+			"ID : [a-z]+ ;\n" +
+			"INT : [0-9]+ ;\n" +
+			"WS : ' '+ -> skip ;\n");
+		// SLL prediction of e always falls back to LL
+		Grammar g = new Grammar(
+			"parser grammar T;\n" +
+			"s : DOLLAR a | AT b ;\n" +
+			"a : e ID ;\n" +
+			"b : e INT ID ;\n" +
+			"e : INT | ;\n",
+			lg);
+		int decision = ((DecisionState)g.atn.ruleToStartState[g.rules.get("e").index].transition(0).target).decision;
+
+		AdaptivePredictionPolicy policy = new AdaptivePredictionPolicy(g.atn.getNumberOfDecisions());
+		policy.setMinPredictions(2);
+		String[] inputs = {"$ 34 abc", "@ 34 abc", "$ 34 abc", "@ 34 abc"};
+		String[] trees = {"(s $ (a (e 34) abc))", "(s @ (b e 34 abc))", "(s $ (a (e 34) abc))", "(s @ (b e 34 abc))"};
+		for (int i = 0; i < inputs.length; i++) {
+			ParserInterpreter parser = createParser(lg, g, inputs[i]);
+			parser.getInterpreter().setAdaptivePolicy(policy);
+			ParserRuleContext tree = parser.parse(g.rules.get("s").index);
+			assertEquals(trees[i], tree.toStringTree(parser));
+		}
+
+		assertEquals(2, policy.getPredictions(decision));
+		assertEquals(2, policy.getFallbacks(decision));
+		assertEquals(2, policy.getFullContextPredictions(decision));
+		assertTrue(policy.isFullContextDecision(decision));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		policy.write(g.atn, out);
+		AdaptivePredictionPolicy loaded = AdaptivePredictionPolicy.read(g.atn, new ByteArrayInputStream(out.toByteArray()));
+		assertEquals(2, loaded.getPredictions(decision));
+		assertEquals(2, loaded.getFallbacks(decision));
+		assertTrue(loaded.isFullContextDecision(decision));
+
+		// the profiler counts predictions which skipped SLL separately
+		ParserInterpreter parser = createParser(lg, g, "@ 34 abc");
+		parser.setProfile(true);
+		parser.getInterpreter().setAdaptivePolicy(loaded);
+		ParserRuleContext tree = parser.parse(g.rules.get("s").index);
+		assertEquals("(s @ (b e 34 abc))", tree.toStringTree(parser));
+		DecisionInfo info = ((ProfilingATNSimulator)parser.getInterpreter()).getDecisionInfo()[decision];
+		assertEquals(1, info.LL_Direct);
+		assertEquals(0, info.LL_Fallback);
+	}
+
+	private static ParserInterpreter createParser(LexerGrammar lg, Grammar g, String input) {
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(new ANTLRInputStream(input));
+		ParserInterpreter parser = g.createParserInterpreter(new CommonTokenStream(lexEngine));
+		parser.removeErrorListeners();
+		return parser;
+	}
+
+	private static String parseTwoStage(final ParserInterpreter parser, Grammar g, String startRule) {
+		final int startRuleIndex = g.rules.get(startRule).index;
+		ParserRuleContext tree = parser.parseTwoStage(new Parser.StartRule<ParserRuleContext>() {
+			@Override
+			public ParserRuleContext invoke() {
+				return parser.parse(startRuleIndex);
+			}
+		});
+		return tree.toStringTree(parser);
+	}
+
 	ParseTree testInterp(LexerGrammar lg, Grammar g,
 					String startRule, String input,
 					String expectedParseTree)
@@ -12,6 +12,7 @@ import org.antlr.v4.runtime.LexerInterpreter;
 import org.antlr.v4.runtime.ParserInterpreter;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.PredictionMetrics;
 import org.antlr.v4.tool.Grammar;
 import org.antlr.v4.tool.LexerGrammar;
 import org.antlr.v4.tool.Rule;
@@ -21,7 +22,9 @@ import org.junit.Test;
 
 import java.util.Arrays;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @SuppressWarnings("unused")
 public class TestParserProfiler extends BaseJavaToolTest {
@@ -226,6 +229,42 @@ public class TestParserProfiler extends BaseJavaToolTest {
 		assertEquals(null, stderrDuringParse);
 	}
 
+	@Test public void testPredictionMetrics() throws Exception {
+		Grammar g = new Grammar(
+				"parser grammar T;\n" +
+				"s : ID ';'{}\n" +
+				"  | ID '.'\n" +
+				"  ;\n",
+				lg);
+
+		LexerInterpreter lexEngine = lg.createLexerInterpreter(null);
+		ParserInterpreter parser = g.createParserInterpreter(null);
+		PredictionMetrics lexerMetrics = new PredictionMetrics(1);
+		PredictionMetrics parserMetrics = new PredictionMetrics(1);
+		lexEngine.getInterpreter().setMetrics(lexerMetrics);
+		parser.getInterpreter().setMetrics(parserMetrics);
+		for (int i = 0; i < 2; i++) {
+			lexEngine.setInputStream(new ANTLRInputStream("xyz;"));
+			parser.setInputStream(new CommonTokenStream(lexEngine));
+			parser.parse(g.rules.get("s").index);
+		}
+
+		// the first parse computes the DFA, the second one uses it
+		assertEquals(2, parserMetrics.get(0, PredictionMetrics.Counter.PREDICTIONS));
+		assertEquals(2, parserMetrics.get(0, PredictionMetrics.Counter.ATN_TRANSITIONS));
+		assertEquals(2, parserMetrics.get(0, PredictionMetrics.Counter.DFA_TRANSITIONS));
+		assertEquals(3, parserMetrics.get(PredictionMetrics.Counter.DFA_STATES));
+		assertEquals(0, parserMetrics.get(PredictionMetrics.Counter.FULL_CONTEXT_PREDICTIONS));
+		assertArrayEquals(new long[] {0, 2, 0, 0, 0, 0, 0, 0}, parserMetrics.getLookaheadHistogram(0));
+
+		// "xyz", ";" and EOF, twice
+		assertEquals(6, lexerMetrics.get(0, PredictionMetrics.Counter.PREDICTIONS));
+		assertTrue(lexerMetrics.get(0, PredictionMetrics.Counter.ATN_TRANSITIONS) > 0);
+
+		parserMetrics.reset();
+		assertEquals(0, parserMetrics.get(PredictionMetrics.Counter.PREDICTIONS));
+	}
+
 	public DecisionInfo[] interpAndGetDecisionInfo(
 			LexerGrammar lg, Grammar g,
 			String startRule, String... input)
@@ -113,6 +113,8 @@ public class Tool {
 	public boolean gen_listener = true;
 	public boolean gen_visitor = false;
 	public boolean gen_dependencies = false;
+	public boolean precompute_lexer_dfa = false;
+	public boolean gen_direct_lexer = false;
 	public String genPackage = null;
 	public Map<String, String> grammarOptions = null;
 	public boolean warnings_are_errors = false;
@@ -132,6 +134,8 @@ public class Tool {
 		new Option("gen_visitor",                 "-no-visitor", "don't generate parse tree visitor (default)"),
 		new Option("genPackage",                  "-package", OptionArgType.STRING, "specify a package/namespace for the generated code"),
 		new Option("gen_dependencies",            "-depend", "generate file dependencies"),
+		new Option("precompute_lexer_dfa",        "-precompute-lexer-dfa", "build the lexer DFA at tool time and embed it in the generated lexer (Java only)"),
+		new Option("gen_direct_lexer",            "-direct-lexer", "generate a lexer which runs its DFA as code; implies -precompute-lexer-dfa (Java only)"),
 		new Option("",                            "-D<option>=value", "set/override a grammar-level option"),
 		new Option("warnings_are_errors",         "-Werror", "treat warnings as errors"),
 		new Option("launch_ST_inspector",         "-XdbgST", "launch StringTemplate visualizer on generated code"),
@@ -58,6 +58,7 @@ public class AnalysisPipeline {
 
 	protected void processParser() {
 		g.decisionLOOK = new ArrayList<IntervalSet[]>(g.atn.getNumberOfDecisions()+1);
+		g.decisionLLk = new ArrayList<LookaheadTree>(g.atn.getNumberOfDecisions()+1);
 		for (DecisionState s : g.atn.decisionToState) {
             g.tool.log("LL1", "\nDECISION "+s.decision+" in rule "+g.getRule(s.ruleIndex).name);
 			IntervalSet[] look;
@@ -74,6 +75,14 @@ public class AnalysisPipeline {
 			Utils.setSize(g.decisionLOOK, s.decision+1);
 			g.decisionLOOK.set(s.decision, look);
 			g.tool.log("LL1", "LL(1)? " + disjoint(look));
+
+			LookaheadTree tree = null;
+			if ( !disjoint(look) ) {
+				tree = new LLkAnalyzer(g.atn).getDecisionLookahead(s);
+				g.tool.log("LLk", "tree=" + tree);
+			}
+			Utils.setSize(g.decisionLLk, s.decision+1);
+			g.decisionLLk.set(s.decision, tree);
 		}
 	}
 
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.analysis;
+
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.ActionTransition;
+import org.antlr.v4.runtime.atn.DecisionState;
+import org.antlr.v4.runtime.atn.NotSetTransition;
+import org.antlr.v4.runtime.atn.PrecedencePredicateTransition;
+import org.antlr.v4.runtime.atn.PredicateTransition;
+import org.antlr.v4.runtime.atn.RuleStopState;
+import org.antlr.v4.runtime.atn.RuleTransition;
+import org.antlr.v4.runtime.atn.Transition;
+import org.antlr.v4.runtime.atn.WildcardTransition;
+import org.antlr.v4.runtime.misc.IntervalSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Computes a {@link LookaheadTree} for a parser decision: the alternatives
+ *  it predicts from at most {@link #MAX_K} tokens, independent of the
+ *  calling context.
+ *
+ *  <p>The analysis follows the ATN as SLL prediction does: the end of a rule
+ *  reached without a caller continues with everything that follows any call
+ *  of the rule. A branch predicts an alternative only if no other
+ *  alternative can match its tokens, so wherever the tree predicts,
+ *  {@code adaptivePredict} would predict the same alternative. Decisions
+ *  which evaluate a predicate get no tree, and EOF is never tested, since
+ *  prediction treats the end of the input specially.</p>
+ */
+public class LLkAnalyzer {
+	public static final int MAX_K = 3;
+	/** Decisions whose tree tests more token types, in all its branches,
+	 *  are left to {@code adaptivePredict}; this bounds the size of the
+	 *  code generated for a tree.
+	 */
+	public static final int MAX_CASES = 1024;
+	/** Give up on closures which call rules this deep. */
+	public static final int MAX_CALL_DEPTH = 64;
+
+	public final ATN atn;
+
+	private int cases;
+
+	public LLkAnalyzer(ATN atn) {
+		this.atn = atn;
+	}
+
+	/** Return the lookahead tree of {@code s}, or {@code null} if it has
+	 *  none or it predicts nothing.
+	 */
+	public LookaheadTree getDecisionLookahead(DecisionState s) {
+		if ( s.nonGreedy ) return null;
+
+		try {
+			List<Set<Config>> configs = new ArrayList<Set<Config>>(s.getNumberOfTransitions());
+			for (int alt = 0; alt < s.getNumberOfTransitions(); alt++) {
+				Set<Config> closure = new LinkedHashSet<Config>();
+				closure(new Config(s.transition(alt).target, null), closure, new HashSet<Object>(), true, false);
+				configs.add(closure);
+			}
+
+			cases = 0;
+			LookaheadTree tree = build(configs, 1);
+			return tree.isEmpty() ? null : tree;
+		}
+		catch (UnsupportedDecisionException e) {
+			return null;
+		}
+	}
+
+	protected LookaheadTree build(List<Set<Config>> configs, int depth) {
+		int n = configs.size();
+		IntervalSet[] look = new IntervalSet[n];
+		IntervalSet all = new IntervalSet();
+		for (int a = 0; a < n; a++) {
+			look[a] = new IntervalSet();
+			for (Config c : configs.get(a)) {
+				for (int i = 0; i < c.state.getNumberOfTransitions(); i++) {
+					IntervalSet set = getSymbols(c.state.transition(i));
+					if ( set!=null ) look[a].addAll(set);
+				}
+			}
+			look[a].remove(Token.EOF);
+			all.addAll(look[a]);
+		}
+
+		IntervalSet[] unique = new IntervalSet[n];
+		Map<List<Set<Config>>, IntervalSet> next = new LinkedHashMap<List<Set<Config>>, IntervalSet>();
+		for (int t : all.toList()) {
+			int alt = 0;
+			int count = 0;
+			for (int a = 0; a < n; a++) {
+				if ( look[a].contains(t) ) {
+					alt = a;
+					count++;
+				}
+			}
+
+			if ( count==1 ) {
+				if ( unique[alt]==null ) unique[alt] = new IntervalSet();
+				unique[alt].add(t);
+			}
+			else if ( depth<MAX_K ) {
+				List<Set<Config>> reach = new ArrayList<Set<Config>>(n);
+				for (int a = 0; a < n; a++) {
+					reach.add(look[a].contains(t) ? move(configs.get(a), t) : Collections.<Config>emptySet());
+				}
+
+				IntervalSet set = next.get(reach);
+				if ( set==null ) {
+					set = new IntervalSet();
+					next.put(reach, set);
+				}
+				set.add(t);
+			}
+		}
+
+		LookaheadTree tree = new LookaheadTree(depth);
+		for (int a = 0; a < n; a++) {
+			if ( unique[a]!=null ) {
+				addBranch(unique[a]);
+				tree.addAlt(unique[a], a + 1);
+			}
+		}
+
+		for (Map.Entry<List<Set<Config>>, IntervalSet> entry : next.entrySet()) {
+			LookaheadTree child = build(entry.getKey(), depth + 1);
+			if ( !child.isEmpty() ) {
+				addBranch(entry.getValue());
+				tree.addChild(entry.getValue(), child);
+			}
+		}
+
+		return tree;
+	}
+
+	private void addBranch(IntervalSet set) {
+		cases += set.size();
+		if ( cases > MAX_CASES ) {
+			throw new UnsupportedDecisionException();
+		}
+	}
+
+	/** Add the configurations reachable from {@code c} without matching a
+	 *  symbol, which have a transition on a symbol, to {@code closure}.
+	 *
+	 *  <p>Like the start state closure of {@code adaptivePredict}, this
+	 *  collects predicates until it passes an action, and context dependent
+	 *  and precedence predicates only in the rule of the decision; since
+	 *  the tree cannot evaluate them, the analysis gives up on such a
+	 *  predicate. Other predicates are passed as if they were true.</p>
+	 *
+	 *  @param collectPredicates whether predicates are collected
+	 *  @param outer whether the closure fell off the end of the rule of the
+	 *  decision into its callers
+	 */
+	protected void closure(Config c, Set<Config> closure, Set<Object> busy,
+						   boolean collectPredicates, boolean outer)
+	{
+		boolean inContext = !outer && c.stack==null;
+		Object key = collectPredicates ? Arrays.asList(c, inContext) : c;
+		if ( !busy.add(key) ) return;
+
+		if ( c.state instanceof RuleStopState ) {
+			if ( c.stack!=null ) {
+				closure(new Config(c.stack.returnState, c.stack.parent), closure, busy, collectPredicates, outer);
+				return;
+			}
+
+			// without a caller, the transitions of a rule stop state lead to
+			// everything which follows a call of the rule
+			outer = true;
+		}
+
+		for (int i = 0; i < c.state.getNumberOfTransitions(); i++) {
+			Transition t = c.state.transition(i);
+			if ( t instanceof PredicateTransition ) {
+				PredicateTransition pt = (PredicateTransition)t;
+				if ( collectPredicates && (!pt.isCtxDependent || inContext) ) {
+					throw new UnsupportedDecisionException();
+				}
+				closure(new Config(t.target, c.stack), closure, busy, collectPredicates, outer);
+			}
+			else if ( t instanceof PrecedencePredicateTransition ) {
+				if ( collectPredicates && inContext ) {
+					throw new UnsupportedDecisionException();
+				}
+				closure(new Config(t.target, c.stack), closure, busy, collectPredicates, outer);
+			}
+			else if ( t.getClass()==RuleTransition.class ) {
+				if ( c.stack!=null && c.stack.depth>=MAX_CALL_DEPTH ) {
+					throw new UnsupportedDecisionException();
+				}
+				Frame frame = new Frame(((RuleTransition)t).followState, c.stack);
+				closure(new Config(t.target, frame), closure, busy, collectPredicates, outer);
+			}
+			else if ( t.isEpsilon() ) {
+				boolean collect = collectPredicates && !(t instanceof ActionTransition);
+				closure(new Config(t.target, c.stack), closure, busy, collect, outer);
+			}
+			else {
+				closure.add(c);
+			}
+		}
+	}
+
+	protected Set<Config> move(Set<Config> configs, int symbol) {
+		Set<Config> reach = new LinkedHashSet<Config>();
+		Set<Object> busy = new HashSet<Object>();
+		for (Config c : configs) {
+			for (int i = 0; i < c.state.getNumberOfTransitions(); i++) {
+				Transition t = c.state.transition(i);
+				if ( !t.isEpsilon() && t.matches(symbol, Token.MIN_USER_TOKEN_TYPE, atn.maxTokenType) ) {
+					closure(new Config(t.target, c.stack), reach, busy, false, true);
+				}
+			}
+		}
+		return reach;
+	}
+
+	/** Return the symbols matched by {@code t}, or {@code null} if it does
+	 *  not match a symbol.
+	 */
+	protected IntervalSet getSymbols(Transition t) {
+		if ( t.isEpsilon() ) return null;
+		if ( t.getClass()==WildcardTransition.class ) {
+			return IntervalSet.of(Token.MIN_USER_TOKEN_TYPE, atn.maxTokenType);
+		}
+
+		IntervalSet set = t.label();
+		if ( set!=null && t instanceof NotSetTransition ) {
+			set = set.complement(IntervalSet.of(Token.MIN_USER_TOKEN_TYPE, atn.maxTokenType));
+		}
+		return set;
+	}
+
+	/** An ATN state with the stack of states to return to. */
+	protected static final class Config {
+		final ATNState state;
+		final Frame stack;
+
+		Config(ATNState state, Frame stack) {
+			this.state = state;
+			this.stack = stack;
+		}
+
+		@Override
+		public int hashCode() {
+			return state.stateNumber * 31 + (stack!=null ? stack.hashCode() : 0);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if ( !(o instanceof Config) ) return false;
+			Config other = (Config)o;
+			return state==other.state &&
+				(stack==null ? other.stack==null : stack.equals(other.stack));
+		}
+	}
+
+	protected static final class Frame {
+		final ATNState returnState;
+		final Frame parent;
+		final int depth;
+		private final int hashCode;
+
+		Frame(ATNState returnState, Frame parent) {
+			this.returnState = returnState;
+			this.parent = parent;
+			this.depth = parent!=null ? parent.depth + 1 : 1;
+			this.hashCode = returnState.stateNumber * 31 + (parent!=null ? parent.hashCode : 0);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if ( this==o ) return true;
+			if ( !(o instanceof Frame) ) return false;
+			Frame other = (Frame)o;
+			return hashCode==other.hashCode && returnState==other.returnState &&
+				(parent==null ? other.parent==null : parent.equals(other.parent));
+		}
+	}
+
+	private static final class UnsupportedDecisionException extends RuntimeException {
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+}
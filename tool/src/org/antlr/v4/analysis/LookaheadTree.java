@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.analysis;
+
+import org.antlr.v4.runtime.misc.IntervalSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Predicts the alternative of a decision from up to {@link LLkAnalyzer#MAX_K}
+ *  tokens of lookahead. Each node tests the token at {@link #depth}; its
+ *  branches have disjoint token sets and either predict an alternative or
+ *  test the next token. Input which matches no branch is left to
+ *  {@code adaptivePredict}.
+ */
+public class LookaheadTree {
+	/** The lookahead depth tested by this node, from 1. */
+	public final int depth;
+	public final List<IntervalSet> sets = new ArrayList<IntervalSet>();
+	/** The alternative predicted by each branch, or 0 if the branch tests
+	 *  the next token with the node in {@link #children}.
+	 */
+	public final List<Integer> alts = new ArrayList<Integer>();
+	public final List<LookaheadTree> children = new ArrayList<LookaheadTree>();
+
+	public LookaheadTree(int depth) {
+		this.depth = depth;
+	}
+
+	public void addAlt(IntervalSet set, int alt) {
+		sets.add(set);
+		alts.add(alt);
+		children.add(null);
+	}
+
+	public void addChild(IntervalSet set, LookaheadTree child) {
+		sets.add(set);
+		alts.add(0);
+		children.add(child);
+	}
+
+	public boolean isEmpty() {
+		return sets.isEmpty();
+	}
+
+	/** Return the number of branches in this tree. */
+	public int size() {
+		int n = sets.size();
+		for (LookaheadTree child : children) {
+			if ( child!=null ) n += child.size();
+		}
+		return n;
+	}
+
+	/** Return the alternative predicted for the token types in
+	 *  {@code lookahead}, or 0 if this tree does not predict one.
+	 */
+	public int predict(int[] lookahead) {
+		int t = lookahead[depth - 1];
+		for (int i = 0; i < sets.size(); i++) {
+			if ( sets.get(i).contains(t) ) {
+				LookaheadTree child = children.get(i);
+				return child!=null ? child.predict(lookahead) : alts.get(i);
+			}
+		}
+		return 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < sets.size(); i++) {
+			if ( i>0 ) buf.append(", ");
+			buf.append(sets.get(i)).append("=>");
+			if ( children.get(i)!=null ) buf.append('(').append(children.get(i)).append(')');
+			else buf.append(alts.get(i));
+		}
+		return buf.toString();
+	}
+}
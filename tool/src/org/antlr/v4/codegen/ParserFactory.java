@@ -7,6 +7,7 @@
 package org.antlr.v4.codegen;
 
 import org.antlr.v4.analysis.AnalysisPipeline;
+import org.antlr.v4.analysis.LookaheadTree;
 import org.antlr.v4.codegen.model.Action;
 import org.antlr.v4.codegen.model.AddToLabelList;
 import org.antlr.v4.codegen.model.AltBlock;
@@ -19,6 +20,7 @@ import org.antlr.v4.codegen.model.LL1OptionalBlock;
 import org.antlr.v4.codegen.model.LL1OptionalBlockSingleAlt;
 import org.antlr.v4.codegen.model.LL1PlusBlockSingleAlt;
 import org.antlr.v4.codegen.model.LL1StarBlockSingleAlt;
+import org.antlr.v4.codegen.model.LLkPrediction;
 import org.antlr.v4.codegen.model.LabeledOp;
 import org.antlr.v4.codegen.model.LeftRecursiveRuleFunction;
 import org.antlr.v4.codegen.model.MatchNotSet;
@@ -247,7 +249,7 @@ public class ParserFactory extends DefaultOutputModelFactory {
 
 	@Override
 	public Choice getComplexChoiceBlock(BlockAST blkAST, List<CodeBlockForAlt> alts) {
-		return new AltBlock(this, blkAST, alts);
+		return addLLkPrediction(new AltBlock(this, blkAST, alts));
 	}
 
 	@Override
@@ -288,6 +290,20 @@ public class ParserFactory extends DefaultOutputModelFactory {
 				c = new PlusBlock(this, ebnfRoot, alts);
 				break;
 		}
+		return addLLkPrediction(c);
+	}
+
+	/** Attach the LL(k) prediction of the decision of {@code c}, if the
+	 *  analysis found its lookahead tree.
+	 */
+	protected Choice addLLkPrediction(Choice c) {
+		if ( c==null || g.tool.force_atn ) return c;
+
+		LookaheadTree tree = g.decisionLLk.get(c.decision);
+		if ( tree!=null ) {
+			c.llk = new LLkPrediction(this, c.decision, tree);
+			getCurrentRuleFunction().predictions.add(c.llk);
+		}
 		return c;
 	}
 
@@ -583,4 +583,13 @@ public abstract class Target {
 
 	/** @since 4.6 */
 	public boolean needsHeader() { return false; }; // Override in targets that need header files.
+
+	/** Return whether the templates can embed a lexer DFA built at tool
+	 *  time, for {@code -precompute-lexer-dfa} and {@code -direct-lexer}.
+	 *
+	 *  @since 4.9
+	 */
+	public boolean supportsPrecomputedLexerDFA() {
+		return false;
+	}
 }
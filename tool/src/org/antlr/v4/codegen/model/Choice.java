@@ -29,6 +29,10 @@ import java.util.List;
 public abstract class Choice extends RuleElement {
 	public int decision = -1;
 	public Decl label;
+	/** Predicts the alternative without {@code adaptivePredict} where the
+	 *  decision is LL(k), or null.
+	 */
+	public LLkPrediction llk;
 
 	@ModelElement public List<CodeBlockForAlt> alts;
 	@ModelElement public List<SrcOp> preamble = new ArrayList<SrcOp>();
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.codegen.model;
+
+import org.antlr.v4.codegen.OutputModelFactory;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.dfa.SparseEdgeMap;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** The precomputed lexer DFA as code: a method with a {@code switch} on the
+ *  input for each DFA state, which the generated simulator runs instead of
+ *  following the DFA edges. Edges on code points above
+ *  {@link LexerATNSimulator#MAX_DFA_EDGE} become range tables which the
+ *  state method searches, so the size of its code does not depend on the
+ *  number of ranges. Only modes whose DFA is complete, which includes
+ *  having no transition on EOF, get a scanner; the others are left to the
+ *  ATN simulator.
+ */
+public class DirectLexerScanner extends OutputModelObject {
+	/** The number of states dispatched by one method. A block compiles to
+	 *  about 2K of bytecode, well below HotSpot's limit of 8000 bytes for
+	 *  methods it compiles.
+	 */
+	public static final int BLOCK_SIZE = 256;
+
+	public final int blockSize = BLOCK_SIZE;
+
+	/** The number of DFA states of each mode known to the scanner, or 0. */
+	public int[] stateCounts;
+	public List<Mode> modes = new ArrayList<Mode>();
+
+	public DirectLexerScanner(OutputModelFactory factory, SerializedDFA dfa) {
+		super(factory);
+		stateCounts = new int[dfa.complete.length];
+		for (int mode = 0; mode < dfa.complete.length; mode++) {
+			if ( !dfa.complete[mode] ) continue;
+
+			Mode m = new Mode(mode, dfa.decisionToDFA[mode]);
+			stateCounts[mode] = m.states.size();
+			modes.add(m);
+		}
+	}
+
+	public static final class Mode {
+		public final int mode;
+		public final List<State> states = new ArrayList<State>();
+		public final List<List<State>> blocks = new ArrayList<List<State>>();
+		/** The distinct range tables of the states. */
+		public final List<RangeTable> rangeTables = new ArrayList<RangeTable>();
+
+		Mode(int mode, DFA dfa) {
+			this.mode = mode;
+			// the tables number the loaded states by their position
+			List<DFAState> dfaStates = dfa.getStates();
+			Map<DFAState, Integer> numbers = new IdentityHashMap<DFAState, Integer>();
+			for (DFAState s : dfaStates) {
+				numbers.put(s, numbers.size());
+			}
+
+			Map<List<Integer>, RangeTable> tables = new HashMap<List<Integer>, RangeTable>();
+			for (DFAState s : dfaStates) {
+				State state = new State(s, numbers);
+				if ( !state.ranges.isEmpty() ) {
+					List<Integer> key = new ArrayList<Integer>();
+					for (Edge e : state.ranges) {
+						key.add(e.a);
+						key.add(e.b);
+						key.add(e.target);
+					}
+					RangeTable table = tables.get(key);
+					if ( table==null ) {
+						table = new RangeTable(rangeTables.size(), state.ranges);
+						tables.put(key, table);
+						rangeTables.add(table);
+					}
+					state.rangeTable = table;
+				}
+				states.add(state);
+			}
+
+			for (int i = 0; i < states.size(); i += BLOCK_SIZE) {
+				blocks.add(states.subList(i, Math.min(i + BLOCK_SIZE, states.size())));
+			}
+		}
+	}
+
+	public static final class State {
+		public final int number;
+		/** The edges on {@code MIN_DFA_EDGE..MAX_DFA_EDGE}, grouped by target. */
+		public final List<Edge> cases = new ArrayList<Edge>();
+		/** The edges on larger code points, by range. */
+		public final List<Edge> ranges = new ArrayList<Edge>();
+		/** The table holding {@link #ranges}, or {@code null} if there are
+		 *  none.
+		 */
+		public RangeTable rangeTable;
+
+		State(DFAState s, Map<DFAState, Integer> numbers) {
+			number = numbers.get(s);
+			Map<Integer, Edge> byTarget = new LinkedHashMap<Integer, Edge>();
+			if ( s.edges!=null ) {
+				for (int i = 0; i < s.edges.length; i++) {
+					DFAState target = s.edges[i];
+					if ( target==null || target==LexerATNSimulator.ERROR ) continue;
+
+					int n = numbers.get(target);
+					Edge e = byTarget.get(n);
+					if ( e==null ) {
+						e = new Edge(n);
+						byTarget.put(n, e);
+					}
+					e.symbols.add(LexerATNSimulator.MIN_DFA_EDGE + i);
+				}
+			}
+			cases.addAll(byTarget.values());
+
+			SparseEdgeMap sparseEdges = s.sparseEdges;
+			if ( sparseEdges!=null ) {
+				List<Interval> intervals = sparseEdges.getRanges();
+				List<DFAState> targets = sparseEdges.getTargets();
+				for (int i = 0; i < intervals.size(); i++) {
+					DFAState target = targets.get(i);
+					if ( target==LexerATNSimulator.ERROR ) continue;
+
+					Edge e = new Edge(numbers.get(target));
+					e.a = intervals.get(i).a;
+					e.b = intervals.get(i).b;
+					ranges.add(e);
+				}
+			}
+		}
+	}
+
+	/** Ranges sorted by their first symbol, which the generated code stores
+	 *  as the first and last symbol and the target of each range for
+	 *  {@link LexerATNSimulator#getRangeTarget}. States with the same ranges
+	 *  share a table.
+	 */
+	public static final class RangeTable {
+		public final int index;
+		public final List<Edge> ranges;
+
+		RangeTable(int index, List<Edge> ranges) {
+			this.index = index;
+			this.ranges = ranges;
+		}
+	}
+
+	public static final class Edge {
+		public final int target;
+		public final List<Integer> symbols = new ArrayList<Integer>();
+		public int a;
+		public int b;
+
+		Edge(int target) {
+			this.target = target;
+		}
+	}
+}
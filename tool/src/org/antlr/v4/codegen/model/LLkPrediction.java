@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.codegen.model;
+
+import org.antlr.v4.analysis.LookaheadTree;
+import org.antlr.v4.codegen.OutputModelFactory;
+import org.antlr.v4.codegen.Target;
+import org.antlr.v4.tool.Grammar;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** The {@link LookaheadTree} of a decision which is not LL(1) as code: a
+ *  method which predicts the alternative with nested {@code switch}es on
+ *  the next tokens, and calls {@code adaptivePredict} only for input the
+ *  tree does not predict.
+ */
+public class LLkPrediction extends OutputModelObject {
+	public final int decision;
+	public final Node root;
+
+	public LLkPrediction(OutputModelFactory factory, int decision, LookaheadTree tree) {
+		super(factory);
+		this.decision = decision;
+		this.root = new Node(factory.getGenerator().getTarget(), factory.getGrammar(), tree);
+	}
+
+	public static final class Node {
+		public final int depth;
+		public final List<Branch> branches = new ArrayList<Branch>();
+
+		Node(Target target, Grammar g, LookaheadTree tree) {
+			this.depth = tree.depth;
+			for (int i = 0; i < tree.sets.size(); i++) {
+				Branch b = new Branch(target.getTokenTypesAsTargetLabels(g, tree.sets.get(i).toArray()));
+				LookaheadTree child = tree.children.get(i);
+				if ( child!=null ) b.next = new Node(target, g, child);
+				else b.alt = tree.alts.get(i);
+				branches.add(b);
+			}
+		}
+	}
+
+	public static final class Branch {
+		public final String[] ttypes;
+		/** The predicted alternative if {@link #next} is null. */
+		public int alt;
+		public Node next;
+
+		Branch(String[] ttypes) {
+			this.ttypes = ttypes;
+		}
+	}
+}
@@ -7,6 +7,8 @@
 package org.antlr.v4.codegen.model;
 
 import org.antlr.v4.codegen.OutputModelFactory;
+import org.antlr.v4.codegen.Target;
+import org.antlr.v4.tool.ErrorType;
 import org.antlr.v4.tool.Grammar;
 import org.antlr.v4.tool.LexerGrammar;
 import org.antlr.v4.tool.Rule;
@@ -19,6 +21,10 @@ public class Lexer extends Recognizer {
 	public Map<String,Integer> channels;
 	public LexerFile file;
 	public Collection<String> modes;
+	/** The precomputed DFA, or {@code null} if it is built at runtime. */
+	public SerializedDFA dfa;
+	/** The DFA as code, or {@code null} if the DFA is run from its edges. */
+	public DirectLexerScanner scanner;
 
 	@ModelElement public LinkedHashMap<Rule, RuleActionFunction> actionFuncs =
 		new LinkedHashMap<Rule, RuleActionFunction>();
@@ -30,5 +36,18 @@ public class Lexer extends Recognizer {
 		Grammar g = factory.getGrammar();
 		channels = new LinkedHashMap<String, Integer>(g.channelNameToValueMap);
 		modes = ((LexerGrammar)g).modes.keySet();
+		if ( g.tool.precompute_lexer_dfa || g.tool.gen_direct_lexer ) {
+			Target target = factory.getGenerator().getTarget();
+			if ( target.supportsPrecomputedLexerDFA() ) {
+				dfa = new SerializedDFA(factory, g.atn);
+				if ( g.tool.gen_direct_lexer ) {
+					scanner = new DirectLexerScanner(factory, dfa);
+				}
+			}
+			else {
+				String option = g.tool.gen_direct_lexer ? "-direct-lexer" : "-precompute-lexer-dfa";
+				g.tool.errMgr.toolError(ErrorType.OPTION_NOT_SUPPORTED_BY_TARGET, option, target.getLanguage());
+			}
+		}
 	}
 }
@@ -27,8 +27,13 @@ import org.antlr.v4.runtime.atn.ATNState;
 import org.antlr.v4.runtime.misc.IntervalSet;
 import org.antlr.v4.runtime.misc.OrderedHashSet;
 import org.antlr.v4.runtime.misc.Pair;
+import org.antlr.v4.tool.Alternative;
 import org.antlr.v4.tool.Attribute;
 import org.antlr.v4.tool.ErrorType;
+import org.antlr.v4.tool.Grammar;
+import org.antlr.v4.tool.LabelElementPair;
+import org.antlr.v4.tool.LabelType;
+import org.antlr.v4.tool.LeftRecursiveRule;
 import org.antlr.v4.tool.Rule;
 import org.antlr.v4.tool.ast.ActionAST;
 import org.antlr.v4.tool.ast.AltAST;
@@ -60,6 +65,14 @@ public class RuleFunction extends OutputModelObject {
 	public Rule rule;
 	public AltLabelStructDecl[] altToContext;
 	public boolean hasLookaheadBlock;
+	/** Whether the parser may hand this rule a context of an earlier,
+	 *  finished invocation instead of a new one. Only rules whose context
+	 *  holds nothing but the tree, and whose context no other code keeps,
+	 *  qualify.
+	 */
+	public boolean reusableContext;
+	/** The LL(k) predictions of the decisions in this rule. */
+	public List<LLkPrediction> predictions = new ArrayList<LLkPrediction>();
 
 	@ModelElement public List<SrcOp> code;
 	@ModelElement public OrderedHashSet<Decl> locals; // TODO: move into ctx?
@@ -117,6 +130,38 @@ public class RuleFunction extends OutputModelObject {
 		}
 
 		startState = factory.getGrammar().atn.ruleToStartState[r.index];
+		reusableContext = isContextReusable(factory.getGrammar(), r);
+	}
+
+	/** A context can be reused if the rule has no attributes, labels,
+	 *  actions or predicates, and no rule labels it or refers to it in an
+	 *  action, so the context is dropped once the rule returns.
+	 */
+	protected static boolean isContextReusable(Grammar g, Rule r) {
+		if ( r instanceof LeftRecursiveRule ||
+			 r.args!=null || r.retvals!=null || r.locals!=null ||
+			 r.getElementLabelNames()!=null || r.hasAltSpecificContexts() ||
+			 !r.actions.isEmpty() || !r.namedActions.isEmpty() ||
+			 !r.exceptions.isEmpty() || r.finallyAction!=null )
+		{
+			return false;
+		}
+		for (Rule other : g.rules.values()) {
+			for (int i=1; i<=other.numberOfAlts; i++) {
+				Alternative alt = other.alt[i];
+				if ( alt.ruleRefsInActions.containsKey(r.name) ) return false;
+				for (List<LabelElementPair> pairs : alt.labelDefs.values()) {
+					for (LabelElementPair p : pairs) {
+						if ( (p.type==LabelType.RULE_LABEL || p.type==LabelType.RULE_LIST_LABEL) &&
+							 p.element.getText().equals(r.name) )
+						{
+							return false;
+						}
+					}
+				}
+			}
+		}
+		return true;
 	}
 
 	public void addContextGetters(OutputModelFactory factory, Rule r) {
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2012-2017 The ANTLR Project. All rights reserved.
+ * Use of this file is governed by the BSD 3-clause license that
+ * can be found in the LICENSE.txt file in the project root.
+ */
+
+package org.antlr.v4.codegen.model;
+
+import org.antlr.v4.codegen.OutputModelFactory;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNDeserializer;
+import org.antlr.v4.runtime.atn.ATNSerializer;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.LexerDFATables;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.dfa.DFA;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** The lexer DFA, built at tool time and embedded in the generated lexer
+ *  as {@link LexerDFATables}. Only modes whose DFA is complete are
+ *  embedded; the others are built at runtime as usual.
+ */
+public class SerializedDFA extends OutputModelObject {
+	/** Modes whose DFA needs more states are left to the runtime. */
+	public static final int MAX_STATES_PER_MODE = 10000;
+
+	public List<String> serialized;
+
+	/** The DFAs, for {@link DirectLexerScanner}. */
+	final DFA[] decisionToDFA;
+	/** Whether the DFA of each mode has every edge, and is embedded. */
+	final boolean[] complete;
+
+	public SerializedDFA(OutputModelFactory factory, ATN atn) {
+		super(factory);
+		// build the DFA for the ATN the generated lexer deserializes
+		ATN runtimeATN = new ATNDeserializer().deserialize(ATNSerializer.getSerializedAsChars(atn));
+		decisionToDFA = new DFA[runtimeATN.getNumberOfDecisions()];
+		for (int i = 0; i < decisionToDFA.length; i++) {
+			decisionToDFA[i] = new DFA(runtimeATN.getDecisionState(i), i);
+		}
+
+		LexerATNSimulator simulator = new LexerATNSimulator(runtimeATN, decisionToDFA, new PredictionContextCache());
+		complete = new boolean[runtimeATN.modeToStartState.size()];
+		for (int mode = 0; mode < complete.length; mode++) {
+			complete[mode] = simulator.precomputeDFA(mode, MAX_STATES_PER_MODE);
+		}
+
+		String data = LexerDFATables.encode(runtimeATN, decisionToDFA, complete);
+		serialized = new ArrayList<String>(data.length());
+		for (int i = 0; i < data.length(); i++) {
+			serialized.add(factory.getGenerator().getTarget().encodeIntAsCharEscape(data.charAt(i)));
+		}
+	}
+
+	public String[][] getSegments() {
+		List<String[]> segments = new ArrayList<String[]>();
+		int segmentLimit = factory.getGenerator().getTarget().getSerializedATNSegmentLimit();
+		for (int i = 0; i < serialized.size(); i += segmentLimit) {
+			List<String> currentSegment = serialized.subList(i, Math.min(i + segmentLimit, serialized.size()));
+			segments.add(currentSegment.toArray(new String[currentSegment.size()]));
+		}
+
+		return segments.toArray(new String[segments.size()][]);
+	}
+}
@@ -29,7 +29,9 @@ import org.antlr.v4.runtime.atn.StarLoopbackState;
 import org.antlr.v4.runtime.atn.Transition;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.dfa.DFAState;
+import org.antlr.v4.runtime.dfa.SparseEdgeMap;
 import org.antlr.v4.runtime.misc.IntegerList;
+import org.antlr.v4.runtime.misc.Interval;
 import org.stringtemplate.v4.ST;
 import org.stringtemplate.v4.STGroup;
 import org.stringtemplate.v4.STGroupFile;
@@ -102,6 +104,27 @@ public class DOTGenerator {
 					dot.add("edges", st);
 				}
 			}
+
+			SparseEdgeMap sparseEdges = d.sparseEdges;
+			if ( sparseEdges!=null ) {
+				List<Interval> ranges = sparseEdges.getRanges();
+				List<DFAState> targets = sparseEdges.getTargets();
+				for (int i = 0; i < ranges.size(); i++) {
+					DFAState target = targets.get(i);
+					if ( target.stateNumber == Integer.MAX_VALUE ) continue;
+					Interval range = ranges.get(i);
+					String label = "'"+getEdgeLabel(new StringBuilder().appendCodePoint(range.a).toString())+"'";
+					if ( range.b!=range.a ) {
+						label += "..'"+getEdgeLabel(new StringBuilder().appendCodePoint(range.b).toString())+"'";
+					}
+					ST st = stlib.getInstanceOf("edge");
+					st.add("label", label);
+					st.add("src", "s"+d.stateNumber);
+					st.add("target", "s"+target.stateNumber);
+					st.add("arrowhead", arrowhead);
+					dot.add("edges", st);
+				}
+			}
 		}
 
 		String output = dot.render();
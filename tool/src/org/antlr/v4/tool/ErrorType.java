@@ -90,6 +90,15 @@ public enum ErrorType {
 	 * <p>cannot find tokens file <em>filename</em>: <em>reason</em></p>
 	 */
 	ERROR_READING_IMPORTED_GRAMMAR(11, "error reading imported grammar <arg> referenced in <arg2>", ErrorSeverity.ERROR),
+	/**
+	 * Compiler Warning 12.
+	 *
+	 * <p>option <em>option</em> is not supported by the <em>language</em>
+	 * target and is ignored</p>
+	 *
+	 * @since 4.9
+	 */
+	OPTION_NOT_SUPPORTED_BY_TARGET(12, "option <arg> is not supported by the <arg2> target and is ignored", ErrorSeverity.WARNING),
 
 	/**
 	 * Compiler Error 20.
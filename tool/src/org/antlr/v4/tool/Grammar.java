@@ -8,6 +8,7 @@ package org.antlr.v4.tool;
 
 import org.antlr.v4.Tool;
 import org.antlr.v4.analysis.LeftRecursiveRuleTransformer;
+import org.antlr.v4.analysis.LookaheadTree;
 import org.antlr.v4.automata.ParserATNFactory;
 import org.antlr.v4.misc.CharSupport;
 import org.antlr.v4.misc.OrderedHashMap;
@@ -183,6 +184,9 @@ public class Grammar implements AttributeResolver {
 
 	public List<IntervalSet[]> decisionLOOK;
 
+	/** The LL(k) lookahead of each decision which is not LL(1), or null. */
+	public List<LookaheadTree> decisionLLk;
+
 	public final Tool tool;
 
 	/** Token names and literal tokens like "void" are uniquely indexed.